@@ -0,0 +1,183 @@
+package com.codeintelligence.benchmark;
+
+import com.codeintelligence.api.ChatController;
+import com.codeintelligence.core.CodeUnit;
+import com.codeintelligence.core.ContentStore;
+import com.codeintelligence.core.DependencyGraph;
+import com.codeintelligence.core.LexicalIndex;
+import com.codeintelligence.core.Workspace;
+import com.codeintelligence.core.WorkspaceRegistry;
+import com.codeintelligence.service.AnswerCache;
+import com.codeintelligence.service.ContextPacker;
+import com.codeintelligence.service.RetrievalService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ChatController#chat} end to end with the vector store and the chat model stubbed out, which leaves
+ * retrieval fusion, graph expansion, content store reads and prompt assembly as the measured work.
+ * <p>
+ * The workspace is synthetic: {@code classes} services with four methods each, every method calling
+ * four random others. The answer cache is disabled so each operation assembles the context again.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContextAssemblyBenchmark {
+
+    private static final int METHODS_PER_CLASS = 4;
+
+    @Param("5000")
+    public int classes;
+
+    // An identifier question takes the lexical-only path; a prose question also runs the (stubbed) vector search
+    @Param({"Where is handleOrder17 used?", "How are incoming orders validated before they are stored?"})
+    public String query;
+
+    private Path dir;
+    private ContentStore contentStore;
+    private ChatController controller;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("context-benchmark");
+        contentStore = Fields.call(Fields.set(Fields.set(new ContentStore(), "enabled", true),
+                "file", dir.resolve("content.seg")), "open");
+        DependencyGraph graph = new DependencyGraph();
+        LexicalIndex lexicalIndex = Fields.set(new LexicalIndex(contentStore), "enabled", true);
+
+        List<Document> documents = new ArrayList<>();
+        List<String> methodIds = new ArrayList<>();
+        for (int c = 0; c < classes; c++) {
+            String pkg = "com.example.orders" + (c % 31);
+            String classId = pkg + ".OrderService" + c;
+            index(new CodeUnit.ClassUnit(classId, pkg, "OrderService" + c,
+                    "@Service\npublic class OrderService" + c + " {\n    private final OrderRepository repository;\n}",
+                    List.of("Service"), Map.of()), graph, lexicalIndex, documents);
+            for (int m = 0; m < METHODS_PER_CLASS; m++) {
+                String name = "handleOrder" + (c * METHODS_PER_CLASS + m);
+                String id = classId + "#" + name;
+                index(new CodeUnit.MethodUnit(id, classId, name + "(Order)", name, methodBody(name), "void",
+                        List.of("Order"), Map.of()), graph, lexicalIndex, documents);
+                graph.addDependency(classId, id, DependencyGraph.DependencyType.USES);
+                methodIds.add(id);
+            }
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < methodIds.size(); i++) {
+            for (int e = 0; e < 4; e++) {
+                int callee = random.nextInt(methodIds.size() - 1);
+                graph.addDependency(methodIds.get(i), methodIds.get(callee >= i ? callee + 1 : callee),
+                        DependencyGraph.DependencyType.CALLS);
+            }
+        }
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RetrievalService retrievalService = new RetrievalService(new FixedVectorStore(documents), meterRegistry);
+        Fields.set(retrievalService, "topK", 3);
+        Fields.set(retrievalService, "candidates", 20);
+        Fields.set(retrievalService, "rrfK", 60);
+        Fields.call(retrievalService, "init");
+
+        ChatModel echo = (Prompt prompt) -> new ChatResponse(List.of(new Generation(new AssistantMessage(
+                "Answer grounded on " + prompt.getContents().length() + " characters of context"))));
+        WorkspaceRegistry workspaces = new WorkspaceRegistry(graph, contentStore, lexicalIndex, meterRegistry);
+        controller = Fields.call(new ChatController(ChatClient.builder(echo), retrievalService, workspaces,
+                new AnswerCache(null, meterRegistry), meterRegistry, ObservationRegistry.NOOP,
+                Fields.call(new ContextPacker(meterRegistry), "init")), "init");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Fields.call(contentStore, "close");
+        try (var files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+        }
+    }
+
+    @Benchmark
+    public String chat() {
+        return controller.chat(query, Workspace.DEFAULT).getBody();
+    }
+
+    private void index(CodeUnit unit, DependencyGraph graph, LexicalIndex lexicalIndex, List<Document> documents) {
+        graph.addNode(unit.id());
+        contentStore.put(unit);
+        lexicalIndex.add(unit);
+        documents.add(new Document(unit.id(), unit.content(), Map.of("id", unit.id(), "name", unit.name())));
+    }
+
+    private static String methodBody(String name) {
+        return """
+                /**
+                 * Validates the order, applies pricing rules and stores it.
+                 */
+                public void %s(Order order) {
+                    if (order == null || order.lines().isEmpty()) {
+                        throw new IllegalArgumentException("Order must have lines");
+                    }
+                    Price price = pricing.quote(order.customerId(), order.lines());
+                    repository.save(order.withPrice(price));
+                    events.publish(new OrderStored(order.id(), price.total()));
+                }""".formatted(name);
+    }
+
+    /**
+     * Returns the same spread of documents for a query every time, as a real store would for a repeated question.
+     */
+    private record FixedVectorStore(List<Document> documents) implements VectorStore {
+
+        @Override
+        public List<Document> similaritySearch(SearchRequest request) {
+            SplittableRandom random = new SplittableRandom(request.getQuery().hashCode());
+            List<Document> hits = new ArrayList<>(request.getTopK());
+            for (int i = 0; i < request.getTopK(); i++) hits.add(documents.get(random.nextInt(documents.size())));
+            return hits;
+        }
+
+        @Override
+        public void add(List<Document> batch) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Optional<Boolean> delete(List<String> ids) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
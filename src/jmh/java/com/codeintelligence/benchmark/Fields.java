@@ -0,0 +1,47 @@
+package com.codeintelligence.benchmark;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * Stands in for Spring when benchmarks wire components by hand: sets {@code @Value} fields and runs
+ * {@code @PostConstruct} methods, which are not public.
+ */
+final class Fields {
+
+    private Fields() {
+    }
+
+    static <T> T set(T target, String name, Object value) {
+        try {
+            Field field = find(target.getClass(), name);
+            field.setAccessible(true);
+            field.set(target, value);
+            return target;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot set " + name + " on " + target.getClass().getSimpleName(), e);
+        }
+    }
+
+    static <T> T call(T target, String method) {
+        try {
+            Method m = target.getClass().getDeclaredMethod(method);
+            m.setAccessible(true);
+            m.invoke(target);
+            return target;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot call " + method + " on " + target.getClass().getSimpleName(), e);
+        }
+    }
+
+    private static Field find(Class<?> type, String name) throws NoSuchFieldException {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            try {
+                return c.getDeclaredField(name);
+            } catch (NoSuchFieldException ignored) {
+                // keep looking in the superclass
+            }
+        }
+        throw new NoSuchFieldException(name);
+    }
+}
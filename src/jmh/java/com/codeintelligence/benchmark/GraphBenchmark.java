@@ -0,0 +1,183 @@
+package com.codeintelligence.benchmark;
+
+import com.codeintelligence.core.DependencyGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DependencyGraph} reads on a large graph and writes under contention, for each storage engine.
+ * The graph has {@code nodes} units with {@code fanOut} random CALLS edges each, from a fixed seed.
+ * The {@code ingest} group reads one graph while another thread writes to it inside an update, as chat does during
+ * ingestion.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GraphBenchmark {
+
+    @Param({"jgrapht", "compact"})
+    public String engine;
+
+    @Param("200000")
+    public int nodes;
+
+    @Param("6")
+    public int fanOut;
+
+    private static final DependencyGraph.Traversal EXPANSION = new DependencyGraph.Traversal(
+            Set.of(DependencyGraph.DependencyType.CALLS), DependencyGraph.Direction.OUTGOING, 2, 5, 50);
+
+    private String[] ids;
+    private DependencyGraph graph;
+
+    @Setup(Level.Trial)
+    public void build() {
+        ids = new String[nodes];
+        for (int i = 0; i < nodes; i++) {
+            ids[i] = "com.example.module" + (i % 97) + ".Service" + (i / 16) + "#handle" + (i % 16);
+        }
+        graph = new DependencyGraph(engine);
+        fill(graph);
+    }
+
+    private void fill(DependencyGraph target) {
+        SplittableRandom random = new SplittableRandom(42);
+        for (String id : ids) target.addNode(id);
+        for (int i = 0; i < nodes; i++) {
+            for (int e = 0; e < fanOut; e++) {
+                target.addDependency(ids[i], ids[other(i, random.nextInt(nodes - 1))], DependencyGraph.DependencyType.CALLS);
+            }
+        }
+    }
+
+    /**
+     * Per-thread random source of node IDs, so threads do not read the same nodes in lockstep.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private SplittableRandom random;
+
+        @Setup
+        public void seed() {
+            random = new SplittableRandom(Thread.currentThread().threadId());
+        }
+
+        String next(String[] ids) {
+            return ids[random.nextInt(ids.length)];
+        }
+
+        /**
+         * Two distinct IDs; the JGraphT engine rejects self-loops.
+         */
+        String[] nextPair(String[] ids) {
+            int from = random.nextInt(ids.length);
+            return new String[]{ids[from], ids[other(from, random.nextInt(ids.length - 1))]};
+        }
+    }
+
+    /**
+     * A graph with every node but no edges, recreated per iteration so contended writes never see a full graph.
+     */
+    @State(Scope.Benchmark)
+    public static class WriteTarget {
+        private DependencyGraph graph;
+
+        @Setup(Level.Iteration)
+        public void reset(GraphBenchmark benchmark) {
+            graph = new DependencyGraph(benchmark.engine);
+            for (String id : benchmark.ids) graph.addNode(id);
+        }
+    }
+
+    /**
+     * The full graph with an update open, recreated per iteration, for reads racing writes to the same graph.
+     */
+    @State(Scope.Group)
+    public static class IngestTarget {
+        private DependencyGraph graph;
+
+        @Setup(Level.Iteration)
+        public void reset(GraphBenchmark benchmark) {
+            graph = new DependencyGraph(benchmark.engine);
+            benchmark.fill(graph);
+            graph.getOutgoing(benchmark.ids[0]);
+            graph.beginUpdate();
+        }
+
+        @TearDown(Level.Iteration)
+        public void close() {
+            graph.endUpdate();
+        }
+    }
+
+    @Benchmark
+    public List<String> getOutgoing(Cursor cursor) {
+        return graph.getOutgoing(cursor.next(ids));
+    }
+
+    @Benchmark
+    public List<String> getIncoming(Cursor cursor) {
+        return graph.getIncoming(cursor.next(ids));
+    }
+
+    // Three seeds, as chat expands its top matches, two hops of calls out
+    @Benchmark
+    public List<DependencyGraph.Reached> traverse(Cursor cursor) {
+        return graph.traverse(List.of(cursor.next(ids), cursor.next(ids), cursor.next(ids)), EXPANSION);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public List<String> getOutgoingContended(Cursor cursor) {
+        return graph.getOutgoing(cursor.next(ids));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void addDependencyContended(WriteTarget target, Cursor cursor) {
+        String[] pair = cursor.nextPair(ids);
+        target.graph.addDependency(pair[0], pair[1], DependencyGraph.DependencyType.CALLS);
+    }
+
+    @Benchmark
+    @Group("ingest")
+    @GroupThreads(3)
+    public List<String> readDuringIngest(IngestTarget target, Cursor cursor) {
+        return target.graph.getOutgoing(cursor.next(ids));
+    }
+
+    @Benchmark
+    @Group("ingest")
+    @GroupThreads(1)
+    public void writeDuringIngest(IngestTarget target, Cursor cursor) {
+        String[] pair = cursor.nextPair(ids);
+        target.graph.addDependency(pair[0], pair[1], DependencyGraph.DependencyType.CALLS);
+    }
+
+    // Maps a draw from [0, n - 1) onto [0, n) without hitting index
+    private static int other(int index, int draw) {
+        return draw >= index ? draw + 1 : draw;
+    }
+}
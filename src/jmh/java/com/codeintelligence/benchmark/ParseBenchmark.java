@@ -0,0 +1,63 @@
+package com.codeintelligence.benchmark;
+
+import com.codeintelligence.config.ParserConfig;
+import com.codeintelligence.ingestion.JavaParserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * {@link JavaParserService#parse} over a fixed corpus, by default this project's own main sources.
+ * One operation parses every file of the corpus and extracts its code units.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+    // Relative to the working directory, which is the project root under ./gradlew jmh
+    @Param("src/main/java")
+    public String corpus;
+
+    @Param({"true", "false"})
+    public boolean elideMethodBodies;
+
+    private JavaParserService parser;
+    private List<Path> files;
+
+    @Setup
+    public void setUp() throws IOException {
+        parser = new JavaParserService(new ParserConfig().javaParser());
+        Fields.set(parser, "elideMethodBodies", elideMethodBodies);
+        try (Stream<Path> walk = Files.walk(Path.of(corpus))) {
+            files = walk.filter(p -> p.toString().endsWith(".java")).sorted().toList();
+        }
+        if (files.isEmpty()) throw new IllegalStateException("No Java files under " + Path.of(corpus).toAbsolutePath());
+    }
+
+    @Benchmark
+    public void parseCorpus(Blackhole blackhole) throws IOException {
+        for (Path file : files) {
+            blackhole.consume(parser.parse(file));
+        }
+    }
+}
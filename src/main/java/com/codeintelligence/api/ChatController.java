@@ -1,17 +1,31 @@
 package com.codeintelligence.api;
 
-import com.codeintelligence.core.DependencyGraph;
+import com.codeintelligence.core.Workspace;
+import com.codeintelligence.core.WorkspaceRegistry;
+import com.codeintelligence.service.AnswerCache;
+import com.codeintelligence.service.ContextPacker;
+import com.codeintelligence.service.RetrievalService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.SearchRequest;
-import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 @RestController
 @RequestMapping("/api/chat")
@@ -20,47 +34,18 @@ import java.util.stream.Collectors;
 public class ChatController {
 
     private final ChatClient.Builder chatClientBuilder;
-    private final VectorStore vectorStore;
-    private final DependencyGraph dependencyGraph;
+    private final RetrievalService retrievalService;
+    private final WorkspaceRegistry workspaceRegistry;
+    private final AnswerCache answerCache;
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observationRegistry;
+    private final ContextPacker contextPacker;
 
-    @PostMapping
-    public String chat(@RequestBody String query) {
-        log.info("Received chat query: {}", query);
-
-        // 1. Semantic Search (Find relevant entry points)
-        List<Document> semanticHits = vectorStore.similaritySearch(
-                SearchRequest.builder().query(query).topK(3).build()
-        );
+    public static final String PROMPT_TOKENS = "X-Prompt-Tokens";
 
-        if (semanticHits.isEmpty()) {
-            return "No relevant code found in the workspace to answer this question.";
-        }
-
-        StringBuilder contextBuilder = new StringBuilder();
-        contextBuilder.append("Context from Source Code:\n");
-
-        // 2. Graph Expansion (Traverse dependencies)
-        for (Document doc : semanticHits) {
-            String nodeId = (String) doc.getMetadata().get("id");
-            contextBuilder.append("\n--- Found Match: ").append(nodeId).append(" ---\n");
-            contextBuilder.append(doc.getContent()).append("\n");
-
-            // Look up connected nodes in the graph
-            List<String> dependencies = dependencyGraph.getOutgoing(nodeId);
-            if (!dependencies.isEmpty()) {
-                contextBuilder.append("\n  [Dependencies]: ").append(String.join(", ", dependencies)).append("\n");
-                // In a real app, we would fetch the content of these dependencies too.
-                // For now, we list them to give the LLM structural awareness.
-            }
-            
-            List<String> callers = dependencyGraph.getIncoming(nodeId);
-            if (!callers.isEmpty()) {
-                contextBuilder.append("\n  [Called By]: ").append(String.join(", ", callers)).append("\n");
-            }
-        }
+    private static final String NO_MATCH = "No relevant code found in the workspace to answer this question.";
 
-        // 3. Generation (RAG)
-        String systemPrompt = """
+    private static final String SYSTEM_PROMPT = """
             You are a specialized Code Intelligence Agent.
             Your analysis must be based STRICTLY on the provided 'Code Context' (Source Code snippets and Dependency Graph relationships).
             
@@ -71,13 +56,186 @@ public class ChatController {
             4. Keep answers concise and technical.
             """;
 
-        String userPrompt = "Question: " + query + "\n\n" + contextBuilder.toString();
+    /**
+     * Units the answer is grounded on, the user prompt built from them and how big it came out.
+     */
+    private record Retrieval(List<String> matchIds, String userPrompt, ContextPacker.Stats stats) {
+    }
+
+    private DistributionSummary promptSize;
+
+    @PostConstruct
+    void init() {
+        promptSize = DistributionSummary.builder("codeintel.chat.prompt.size")
+                .description("Characters in the user prompt sent to the chat model, context included")
+                .baseUnit("characters")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Answers from the code ingested into {@code workspace}; a workspace nothing was ingested into has no matches.
+     * When this request built a prompt, rather than being answered from the cache, its estimated size in tokens is
+     * returned in the {@value #PROMPT_TOKENS} header.
+     */
+    @PostMapping
+    public ResponseEntity<String> chat(@RequestBody String query,
+                                       @RequestParam(defaultValue = Workspace.DEFAULT) String workspace) {
+        log.info("Received chat query for workspace {}: {}", workspace, query);
+        Workspace target = workspaceRegistry.find(workspace).orElse(null);
+        if (target == null) return ResponseEntity.ok(NO_MATCH);
+        AtomicReference<ContextPacker.Stats> stats = new AtomicReference<>();
+        String text = answerCache.get(target.id(), query, () -> generate(target, query, stats::set)).text();
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (stats.get() != null) response.header(PROMPT_TOKENS, String.valueOf(stats.get().tokens()));
+        return response.body(text);
+    }
+
+    /**
+     * Streams the answer as Server-Sent Events: one {@code context} event with the matched unit IDs, a {@code prompt}
+     * event with the size of the prompt sent to the model, a {@code token} event per generated chunk, then
+     * {@code done}. Cached answers arrive as a single token, without a {@code prompt} event.
+     * <p>
+     * The servlet thread is released as soon as the stream is set up; retrieval runs on a worker and tokens are
+     * written as the model produces them. If the client disconnects, the subscription is cancelled, which
+     * closes the upstream model request.
+     */
+    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> stream(@RequestBody String query,
+                                                @RequestParam(defaultValue = Workspace.DEFAULT) String workspace) {
+        log.info("Received streaming chat query for workspace {}: {}", workspace, query);
+        long start = System.nanoTime();
+        Workspace target = workspaceRegistry.find(workspace).orElse(null);
+        if (target == null) {
+            return replay(new AnswerCache.Answer(List.of(), NO_MATCH));
+        }
+
+        return Mono.fromCallable(() -> answerCache.lookup(target.id(), query))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(cached -> {
+                    if (cached.isPresent()) {
+                        return replay(cached.get());
+                    }
+                    AnswerCache.Flight flight = answerCache.begin(target.id(), query);
+                    if (flight.leader()) {
+                        return generateStream(target, query, flight, start);
+                    }
+                    // Someone is generating this answer right now; wait for it, or generate it ourselves if they give up
+                    // or take longer than the cache lets followers wait
+                    return Mono.fromFuture(answerCache.follow(flight))
+                            .flatMapMany(this::replay)
+                            .onErrorResume(e -> generateStream(target, query, null, start));
+                })
+                .doOnCancel(() -> log.info("Chat stream cancelled by client after {} ms", (System.nanoTime() - start) / 1_000_000))
+                .doOnComplete(() -> log.info("Chat stream completed in {} ms", (System.nanoTime() - start) / 1_000_000));
+    }
+
+    private AnswerCache.Answer generate(Workspace workspace, String query, Consumer<ContextPacker.Stats> packed) {
+        Retrieval retrieval = retrieve(workspace, query);
+        if (retrieval.stats() != null) packed.accept(retrieval.stats());
+        if (retrieval.matchIds().isEmpty()) {
+            return new AnswerCache.Answer(List.of(), NO_MATCH);
+        }
 
-        return chatClientBuilder.build()
+        // 3. Generation (RAG)
+        String text = generation("call").observe(() -> chatClientBuilder.build()
                 .prompt()
-                .system(systemPrompt)
-                .user(userPrompt)
+                .system(SYSTEM_PROMPT)
+                .user(retrieval.userPrompt())
                 .call()
-                .content();
+                .content());
+        return new AnswerCache.Answer(retrieval.matchIds(), text);
+    }
+
+    /**
+     * Generates on the calling worker thread. {@code flight} is null when this request is not the one
+     * other requests for the same query are waiting on.
+     */
+    private Flux<ServerSentEvent<Object>> generateStream(Workspace workspace, String query, AnswerCache.Flight flight,
+                                                         long start) {
+        Retrieval retrieval;
+        try {
+            retrieval = retrieve(workspace, query);
+        } catch (RuntimeException e) {
+            if (flight != null) answerCache.fail(flight, e);
+            return Flux.error(e);
+        }
+
+        ServerSentEvent<Object> context = event("context", retrieval.matchIds());
+        if (retrieval.matchIds().isEmpty()) {
+            if (flight != null) answerCache.complete(flight, new AnswerCache.Answer(List.of(), NO_MATCH), 0);
+            return Flux.just(context, event("token", NO_MATCH), event("done", ""));
+        }
+
+        AtomicBoolean firstToken = new AtomicBoolean(true);
+        StringBuilder text = new StringBuilder();
+        AtomicReference<AnswerCache.Answer> generated = new AtomicReference<>();
+        Observation generation = generation("stream");
+        Flux<ServerSentEvent<Object>> tokens = chatClientBuilder.build()
+                .prompt()
+                .system(SYSTEM_PROMPT)
+                .user(retrieval.userPrompt())
+                .stream()
+                .content()
+                .doOnNext(token -> {
+                    if (firstToken.compareAndSet(true, false)) {
+                        log.info("Chat stream first token after {} ms", (System.nanoTime() - start) / 1_000_000);
+                    }
+                    text.append(token);
+                })
+                .doOnComplete(() -> generated.set(new AnswerCache.Answer(retrieval.matchIds(), text.toString())))
+                .doOnSubscribe(subscription -> generation.start())
+                .doOnError(generation::error)
+                .doFinally(signal -> generation.stop())
+                .map(token -> event("token", token));
+        Flux<ServerSentEvent<Object>> events = Flux.concat(
+                Flux.just(context, event("prompt", retrieval.stats())), tokens, Flux.just(event("done", "")));
+        if (flight == null) return events;
+
+        // However the stream ends, including a disconnect before the tokens were subscribed, the flight ends with it
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        return events
+                .doOnError(error::set)
+                .doFinally(signal -> {
+                    AnswerCache.Answer answer = generated.get();
+                    if (answer != null) {
+                        answerCache.complete(flight, answer, (System.nanoTime() - start) / 1_000_000);
+                    } else {
+                        answerCache.fail(flight, error.get() != null ? error.get()
+                                : new CancellationException("Stream ended with " + signal + " before the answer was generated"));
+                    }
+                });
+    }
+
+    private Flux<ServerSentEvent<Object>> replay(AnswerCache.Answer answer) {
+        return Flux.just(event("context", answer.matchIds()), event("token", answer.text()), event("done", ""));
+    }
+
+    private Retrieval retrieve(Workspace workspace, String query) {
+        // 1. Hybrid lexical + semantic search (Find relevant entry points)
+        List<RetrievalService.Match> hits = Observation.createNotStarted("codeintel.chat.retrieval", observationRegistry)
+                .observe(() -> retrievalService.retrieve(workspace, query));
+
+        if (hits.isEmpty()) {
+            return new Retrieval(List.of(), "", null);
+        }
+
+        // 2. Graph Expansion (Traverse dependencies), packed into the token budget
+        ContextPacker.Packed packed = Observation.createNotStarted("codeintel.chat.expansion", observationRegistry)
+                .observe(() -> contextPacker.pack(workspace, query, hits));
+        promptSize.record(packed.prompt().length());
+        ContextPacker.Stats stats = packed.stats();
+        log.info("Prompt of ~{} tokens (budget {}): {} units, {} left out", stats.tokens(), stats.budget(),
+                stats.units(), stats.omitted());
+        return new Retrieval(packed.matchIds(), packed.prompt(), stats);
+    }
+
+    private Observation generation(String mode) {
+        return Observation.createNotStarted("codeintel.chat.generation", observationRegistry)
+                .lowCardinalityKeyValue("mode", mode);
+    }
+
+    private static ServerSentEvent<Object> event(String name, Object data) {
+        return ServerSentEvent.builder(data).event(name).build();
     }
 }
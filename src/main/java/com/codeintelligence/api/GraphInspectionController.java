@@ -0,0 +1,29 @@
+package com.codeintelligence.api;
+
+import com.codeintelligence.core.DependencyGraph;
+import com.codeintelligence.core.Workspace;
+import com.codeintelligence.core.WorkspaceRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/graph")
+@RequiredArgsConstructor
+public class GraphInspectionController {
+
+    private final WorkspaceRegistry workspaceRegistry;
+
+    /**
+     * Node/edge counts and memory per node of a workspace's graph, with the JGraphT figure for comparison.
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<DependencyGraph.GraphStats> getStats(@RequestParam(defaultValue = Workspace.DEFAULT) String workspace) {
+        return workspaceRegistry.find(workspace)
+                .map(found -> ResponseEntity.ok(found.graph().stats()))
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
@@ -1,15 +1,27 @@
 package com.codeintelligence.api;
 
-import com.codeintelligence.ingestion.FileDiscoveryService;
+import com.codeintelligence.core.Workspace;
+import com.codeintelligence.core.WorkspaceRegistry;
+import com.codeintelligence.ingestion.ArchiveReader;
+import com.codeintelligence.ingestion.IncrementalIngestionService;
+import com.codeintelligence.ingestion.IngestionInProgressException;
+import com.codeintelligence.ingestion.IngestionJob;
+import com.codeintelligence.ingestion.IngestionPipeline;
+import com.codeintelligence.ingestion.IngestionReport;
+import com.codeintelligence.ingestion.ManifestStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.FileSystemUtils;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.InputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.Files;
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/ingest")
@@ -17,14 +29,29 @@ import java.io.IOException;
 @Slf4j
 public class IngestionController {
 
-    private final FileDiscoveryService fileDiscoveryService;
-    private final com.codeintelligence.core.DependencyGraph dependencyGraph;
+    private final IngestionPipeline ingestionPipeline;
+    private final IncrementalIngestionService incrementalIngestionService;
+    private final ArchiveReader archiveReader;
+    private final WorkspaceRegistry workspaceRegistry;
+    private final ManifestStore manifestStore;
 
+    /**
+     * Re-ingests only files that changed since the last run over this path into {@code workspace}, which is created
+     * on first use, unless {@code full} is set. Answers 409 while the workspace's previous ingest is still running.
+     */
     @PostMapping
-    public ResponseEntity<String> ingestProject(@RequestBody String path) {
+    public ResponseEntity<?> ingestProject(@RequestBody String path, @RequestParam(defaultValue = "false") boolean full,
+                                           @RequestParam(defaultValue = Workspace.DEFAULT) String workspace) {
         // Strip quotes if present
         String cleanPath = path.replace("\"", "").trim();
-        log.info("Received ingestion request for path: {}", cleanPath);
+        log.info("Received ingestion request for path: {} (workspace {})", cleanPath, workspace);
+
+        Workspace target;
+        try {
+            target = workspaceRegistry.get(workspace);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
 
         try {
             Path directory = Paths.get(cleanPath);
@@ -32,52 +59,126 @@ public class IngestionController {
                 return ResponseEntity.badRequest().body("Invalid directory path: " + cleanPath);
             }
 
-            // Clear previous project graph to ensure fresh context
-            dependencyGraph.clear();
-            log.info("Dependency Graph cleared for new project.");
-
-            int count = fileDiscoveryService.scanDirectory(directory);
-            return ResponseEntity.ok("Ingestion started for " + count + " files in: " + cleanPath);
+            IngestionJob job = incrementalIngestionService.ingest(target, directory, full);
+            return ResponseEntity.accepted().body(job.report());
 
+        } catch (IngestionInProgressException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
         } catch (Exception e) {
             log.error("Ingestion failed", e);
             return ResponseEntity.internalServerError().body("Error triggering ingestion: " + e.getMessage());
         }
     }
 
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<IngestionReport> getJob(@PathVariable String jobId) {
+        return ingestionPipeline.find(jobId)
+                .map(job -> ResponseEntity.ok(job.report()))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Completes once the job has drained every stage; the servlet thread is released while waiting.
+     */
+    @GetMapping("/jobs/{jobId}/completion")
+    public CompletableFuture<ResponseEntity<IngestionReport>> awaitJob(@PathVariable String jobId) {
+        return ingestionPipeline.find(jobId)
+                .map(job -> job.completion()
+                        .handle((report, error) -> ResponseEntity.ok(job.report())))
+                .orElse(CompletableFuture.completedFuture(ResponseEntity.notFound().build()));
+    }
+
+    /**
+     * Ingests a zip or tar.gz sent as the raw request body. Java entries are parsed straight off the stream, so nothing
+     * is written to disk; {@code name} labels the job and prefixes the entries' paths. Returns once the body is read.
+     */
+    @PostMapping("/archive")
+    public ResponseEntity<?> ingestArchive(InputStream body, @RequestParam(defaultValue = "archive") String name,
+                                           @RequestParam(defaultValue = Workspace.DEFAULT) String workspace) {
+        log.info("Received archive ingestion request: {} (workspace {})", name, workspace);
+        try {
+            Workspace target = workspaceRegistry.get(workspace);
+            Path root = Path.of("archive", name).normalize();
+            IngestionJob job = incrementalIngestionService.ingest(target, root, archiveReader.open(root, body));
+            if (job.state() == IngestionJob.State.FAILED) {
+                return ResponseEntity.badRequest().body("Could not read archive: " + job.completion().exceptionNow().getMessage());
+            }
+            return ResponseEntity.accepted().body(job.report());
+        } catch (IngestionInProgressException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            log.error("Archive ingestion failed", e);
+            return ResponseEntity.internalServerError().body("Error reading archive: " + e.getMessage());
+        }
+    }
+
     @PostMapping("/upload")
-    public ResponseEntity<String> ingestUploadedProject(@RequestParam("files") org.springframework.web.multipart.MultipartFile[] files) {
+    public CompletableFuture<ResponseEntity<String>> ingestUploadedProject(@RequestParam("files") org.springframework.web.multipart.MultipartFile[] files,
+                                                                           @RequestParam(defaultValue = Workspace.DEFAULT) String workspace) {
         if (files == null || files.length == 0) {
-            return ResponseEntity.badRequest().body("No files uploaded.");
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("No files uploaded."));
+        }
+        Workspace target;
+        try {
+            target = workspaceRegistry.get(workspace);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(e.getMessage()));
         }
-        
+
         try {
             // Create a temp directory for this upload
             Path tempDir = Files.createTempDirectory("ingest-" + System.currentTimeMillis());
             log.info("Created temp dir for upload: {}", tempDir);
-            
+
             for (org.springframework.web.multipart.MultipartFile file : files) {
                 String originalName = file.getOriginalFilename();
                 if (originalName == null || originalName.isEmpty()) continue;
-                
+
                 // Handle relative paths (e.g., project/src/Main.java)
                 Path targetPath = tempDir.resolve(originalName);
                 Files.createDirectories(targetPath.getParent());
-                
+
                 file.transferTo(targetPath);
             }
-            
-            // Clear graph and scan
-            dependencyGraph.clear();
+
+            // Every upload lands in a fresh directory, so there is nothing to diff against
             log.info("Scanning uploaded files in: {}", tempDir);
-            
-            int count = fileDiscoveryService.scanDirectory(tempDir);
-            
-            return ResponseEntity.ok("Successfully uploaded and ingested " + count + " files from project.");
-            
+
+            IngestionJob job;
+            try {
+                job = incrementalIngestionService.ingest(target, tempDir, true);
+            } catch (IngestionInProgressException e) {
+                deleteQuietly(tempDir);
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage()));
+            }
+            // No later upload reuses this directory, so its manifest would never be read again
+            return job.completion()
+                    .whenComplete((report, error) -> discard(target, tempDir))
+                    .thenApply(report -> ResponseEntity.ok("Successfully uploaded and ingested " + report.filesParsed() + " files from project."))
+                    .exceptionally(e -> ResponseEntity.internalServerError().body("Ingestion failed: " + e.getMessage()));
+
         } catch (IOException e) {
             log.error("Upload failed", e);
-            return ResponseEntity.internalServerError().body("Upload failed: " + e.getMessage());
+            return CompletableFuture.completedFuture(ResponseEntity.internalServerError().body("Upload failed: " + e.getMessage()));
+        }
+    }
+
+    private void discard(Workspace workspace, Path dir) {
+        deleteQuietly(dir);
+        try {
+            manifestStore.delete(workspace.id(), dir);
+        } catch (IOException e) {
+            log.warn("Could not delete manifest of upload directory {}", dir, e);
+        }
+    }
+
+    private static void deleteQuietly(Path dir) {
+        try {
+            FileSystemUtils.deleteRecursively(dir);
+        } catch (IOException e) {
+            log.warn("Could not delete upload directory {}", dir, e);
         }
     }
 }
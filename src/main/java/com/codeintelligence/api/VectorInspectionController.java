@@ -1,11 +1,14 @@
 package com.codeintelligence.api;
 
+import com.codeintelligence.service.HnswVectorStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.client.RestClient;
 
@@ -24,6 +27,21 @@ public class VectorInspectionController {
     private int chromaPort;
 
     private final RestClient.Builder restClientBuilder;
+    private final ObjectProvider<HnswVectorStore> hnswVectorStore;
+
+    /**
+     * Recall@k and mean search latency of the in-process HNSW store against an exact scan of the same corpus.
+     * 404 unless {@code codeintel.vector.store=hnsw}.
+     */
+    @GetMapping("/hnsw/evaluate")
+    public ResponseEntity<HnswVectorStore.Evaluation> evaluateHnsw(@RequestParam(defaultValue = "100") int queries,
+                                                                   @RequestParam(defaultValue = "10") int k) {
+        HnswVectorStore store = hnswVectorStore.getIfAvailable();
+        if (store == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(store.evaluate(queries, k));
+    }
 
     @GetMapping
     public ResponseEntity<?> getAllVectors() {
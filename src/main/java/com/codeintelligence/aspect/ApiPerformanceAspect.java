@@ -1,25 +1,84 @@
 package com.codeintelligence.aspect;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
 
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every API call into {@code codeintel.api.latency}, tagged by endpoint and outcome, and offers it to the
+ * {@link SlowRequestLog}. Streaming endpoints are timed until their stream terminates, not until the method returns.
+ */
 @Aspect
 @Component
 @Slf4j
 public class ApiPerformanceAspect {
 
+    private final MeterRegistry meterRegistry;
+    private final SlowRequestLog slowRequestLog;
+    private final Duration[] slos;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public ApiPerformanceAspect(MeterRegistry meterRegistry, SlowRequestLog slowRequestLog,
+                                @Value("${codeintel.api.metrics.slo:50ms,200ms,1s,5s,30s}") Duration[] slos) {
+        this.meterRegistry = meterRegistry;
+        this.slowRequestLog = slowRequestLog;
+        this.slos = slos;
+    }
+
     @Around("execution(* com.codeintelligence.api..*(..))")
-    public Object logExecutionTime(ProceedingJoinPoint joinPoint) throws Throwable {
-        long start = System.currentTimeMillis();
-        
-        Object proceed = joinPoint.proceed();
-        
-        long executionTime = System.currentTimeMillis() - start;
-        
-        log.info("API Call: {} executed in {} ms", joinPoint.getSignature(), executionTime);
-        return proceed;
+    public Object recordExecutionTime(ProceedingJoinPoint joinPoint) throws Throwable {
+        String endpoint = joinPoint.getSignature().getDeclaringType().getSimpleName() + "." + joinPoint.getSignature().getName();
+        long start = System.nanoTime();
+
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            record(endpoint, "error", start, joinPoint.getArgs());
+            throw e;
+        }
+
+        if (result instanceof Flux<?> flux) {
+            return flux.doFinally(signal -> record(endpoint, outcome(signal), start, joinPoint.getArgs()));
+        }
+        record(endpoint, "success", start, joinPoint.getArgs());
+        return result;
+    }
+
+    private void record(String endpoint, String outcome, long start, Object[] args) {
+        long elapsed = System.nanoTime() - start;
+        timer(endpoint, outcome).record(elapsed, TimeUnit.NANOSECONDS);
+        slowRequestLog.offer(endpoint, outcome, elapsed, args);
+        log.debug("API Call: {} {} in {} ms", endpoint, outcome, elapsed / 1_000_000);
+    }
+
+    private Timer timer(String endpoint, String outcome) {
+        return timers.computeIfAbsent(endpoint + ' ' + outcome, key -> Timer.builder("codeintel.api.latency")
+                .description("Latency of API calls, until the last event for streaming endpoints")
+                .tag("endpoint", endpoint)
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .serviceLevelObjectives(slos)
+                .register(meterRegistry));
+    }
+
+    private static String outcome(SignalType signal) {
+        return switch (signal) {
+            case ON_ERROR -> "error";
+            case CANCEL -> "cancelled";
+            default -> "success";
+        };
     }
 }
@@ -0,0 +1,100 @@
+package com.codeintelligence.aspect;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * The slowest API calls since startup (or the last reset), served at {@code /actuator/slowrequests}.
+ * <p>
+ * Only the {@code capacity} slowest are kept: a min-heap on duration evicts the fastest entry when a slower call
+ * arrives. Once the heap is full, calls faster than its minimum are rejected without taking the lock.
+ */
+@Component
+@Endpoint(id = "slowrequests")
+public class SlowRequestLog {
+
+    /**
+     * Type of one argument and its size: characters, elements or bytes. Size is null for other types.
+     */
+    public record Argument(String type, Long size) {
+    }
+
+    public record SlowRequest(String endpoint, String outcome, double durationMillis, Instant at, List<Argument> arguments) {
+    }
+
+    private static final Comparator<SlowRequest> BY_DURATION = Comparator.comparingDouble(SlowRequest::durationMillis);
+
+    private final int capacity;
+    private final PriorityQueue<SlowRequest> slowest = new PriorityQueue<>(BY_DURATION);
+    // Duration a call must beat to get in; 0 until the heap is full
+    private volatile double thresholdMillis;
+
+    public SlowRequestLog(@Value("${codeintel.api.slow-requests.capacity:50}") int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Records a finished call if it is among the slowest seen. Arguments are only inspected when it is.
+     */
+    public void offer(String endpoint, String outcome, long durationNanos, Object[] args) {
+        double millis = durationNanos / 1_000_000.0;
+        if (capacity <= 0 || millis <= thresholdMillis) return;
+        SlowRequest request = new SlowRequest(endpoint, outcome, millis, Instant.now(), describe(args));
+        synchronized (slowest) {
+            slowest.add(request);
+            if (slowest.size() > capacity) slowest.poll();
+            if (slowest.size() == capacity) thresholdMillis = slowest.peek().durationMillis();
+        }
+    }
+
+    /**
+     * Slowest first.
+     */
+    @ReadOperation
+    public List<SlowRequest> slowest() {
+        List<SlowRequest> copy;
+        synchronized (slowest) {
+            copy = new ArrayList<>(slowest);
+        }
+        copy.sort(BY_DURATION.reversed());
+        return copy;
+    }
+
+    @DeleteOperation
+    public void reset() {
+        synchronized (slowest) {
+            slowest.clear();
+            thresholdMillis = 0;
+        }
+    }
+
+    private static List<Argument> describe(Object[] args) {
+        List<Argument> arguments = new ArrayList<>(args.length);
+        for (Object arg : args) {
+            if (arg == null) {
+                arguments.add(new Argument("null", null));
+                continue;
+            }
+            Long size = switch (arg) {
+                case CharSequence s -> (long) s.length();
+                case Collection<?> c -> (long) c.size();
+                case Map<?, ?> m -> (long) m.size();
+                case byte[] b -> (long) b.length;
+                default -> null;
+            };
+            arguments.add(new Argument(arg.getClass().getSimpleName(), size));
+        }
+        return arguments;
+    }
+}
@@ -0,0 +1,28 @@
+package com.codeintelligence.config;
+
+import com.codeintelligence.service.CachingEmbeddingModel;
+import com.codeintelligence.service.EmbeddingCache;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.ollama.OllamaEmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+@Configuration
+public class EmbeddingConfig {
+
+    /**
+     * Puts the on-disk embedding cache in front of Ollama. Being primary, this is what the vector store embeds with.
+     */
+    @Bean
+    @Primary
+    public EmbeddingModel cachingEmbeddingModel(OllamaEmbeddingModel ollamaEmbeddingModel,
+                                                EmbeddingCache embeddingCache,
+                                                @Value("${spring.ai.ollama.embedding.model:nomic-embed-text}") String modelName) {
+        if (!embeddingCache.isEnabled()) {
+            return ollamaEmbeddingModel;
+        }
+        return new CachingEmbeddingModel(ollamaEmbeddingModel, embeddingCache, modelName);
+    }
+}
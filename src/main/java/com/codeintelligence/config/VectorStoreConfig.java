@@ -0,0 +1,32 @@
+package com.codeintelligence.config;
+
+import com.codeintelligence.service.HnswVectorStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.nio.file.Path;
+
+@Configuration
+public class VectorStoreConfig {
+
+    /**
+     * In-process HNSW store instead of Chroma. Activate the {@code hnsw} profile, which also switches off
+     * Chroma's auto-configuration so startup does not need a Chroma server.
+     */
+    @Bean(initMethod = "open", destroyMethod = "close")
+    @Primary
+    @ConditionalOnProperty(name = "codeintel.vector.store", havingValue = "hnsw")
+    public HnswVectorStore hnswVectorStore(EmbeddingModel embeddingModel,
+                                           ObjectMapper objectMapper,
+                                           @Value("${codeintel.vector.hnsw.dir:${user.home}/.code-intelligence/hnsw}") Path directory,
+                                           @Value("${codeintel.vector.hnsw.m:16}") int m,
+                                           @Value("${codeintel.vector.hnsw.ef-construction:200}") int efConstruction,
+                                           @Value("${codeintel.vector.hnsw.ef-search:64}") int efSearch) {
+        return new HnswVectorStore(embeddingModel, objectMapper, directory, m, efConstruction, efSearch);
+    }
+}
@@ -0,0 +1,316 @@
+package com.codeintelligence.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Graph engine on primitive arrays.
+ * <p>
+ * Node IDs are interned to ints by a {@link StringDictionary}. Edges live in two layers:
+ * <ul>
+ *   <li>a compressed sparse row (CSR) base: per-node offsets into flat target/source arrays, in both directions;</li>
+ *   <li>a delta layer for appends: parallel edge arrays threaded into per-node linked lists by int "next" pointers.</li>
+ * </ul>
+ * The delta is merged into the CSR base once it grows past a quarter of it. Edge types are stored as one byte.
+ * Removals are rare (incremental re-ingest) and simply rebuild the CSR without the dropped edges.
+ */
+final class CompactGraphEngine implements GraphEngine {
+
+    private static final int NONE = -1;
+    private static final int MIN_DELTA_BEFORE_COMPACT = 4096;
+    private static final DependencyGraph.DependencyType[] TYPES = DependencyGraph.DependencyType.values();
+
+    private final StringDictionary dictionary = new StringDictionary();
+    // Removed nodes keep their dictionary ID; this marks which IDs are currently in the graph
+    private final BitSet live = new BitSet();
+    private int liveCount;
+    private long idBytes;
+
+    // CSR base, covering node IDs [0, csrNodes)
+    private int csrNodes;
+    private int[] outOffsets = {0};
+    private int[] outTargets = new int[0];
+    private byte[] outTypes = new byte[0];
+    private int[] inOffsets = {0};
+    private int[] inSources = new int[0];
+    private byte[] inTypes = new byte[0];
+
+    // Delta layer
+    private int deltaSize;
+    private int[] deltaFrom = new int[64];
+    private int[] deltaTo = new int[64];
+    private byte[] deltaTypes = new byte[64];
+    private int[] deltaNextOut = new int[64];
+    private int[] deltaNextIn = new int[64];
+    // Per-node heads/tails of the delta lists, indexed by node ID
+    private int[] outHead = filled(64);
+    private int[] outTail = filled(64);
+    private int[] inHead = filled(64);
+    private int[] inTail = filled(64);
+
+    @FunctionalInterface
+    private interface EdgeVisitor {
+        void visit(int from, int to, byte type);
+    }
+
+    @Override
+    public void addNode(String id) {
+        intern(id);
+    }
+
+    @Override
+    public void addEdge(String fromId, String toId, DependencyGraph.DependencyType type) {
+        int from = intern(fromId);
+        int to = intern(toId);
+
+        if (deltaSize == deltaFrom.length) growDelta();
+        int e = deltaSize++;
+        deltaFrom[e] = from;
+        deltaTo[e] = to;
+        deltaTypes[e] = (byte) type.ordinal();
+        deltaNextOut[e] = NONE;
+        deltaNextIn[e] = NONE;
+
+        if (outTail[from] == NONE) outHead[from] = e; else deltaNextOut[outTail[from]] = e;
+        outTail[from] = e;
+        if (inTail[to] == NONE) inHead[to] = e; else deltaNextIn[inTail[to]] = e;
+        inTail[to] = e;
+
+        if (deltaSize >= Math.max(MIN_DELTA_BEFORE_COMPACT, outTargets.length / 4)) {
+            rebuild((f, t) -> true);
+        }
+    }
+
+    @Override
+    public void removeNodes(Collection<String> ids) {
+        boolean changed = false;
+        for (String id : ids) {
+            int node = dictionary.idOf(id);
+            if (node != NONE && live.get(node)) {
+                live.clear(node);
+                liveCount--;
+                idBytes -= GraphEngine.stringBytes(id);
+                changed = true;
+            }
+        }
+        if (changed) rebuild((f, t) -> live.get(f) && live.get(t));
+    }
+
+    @Override
+    public void removeOutgoing(Collection<String> ids) {
+        BitSet sources = new BitSet();
+        for (String id : ids) {
+            int node = dictionary.idOf(id);
+            if (node != NONE) sources.set(node);
+        }
+        if (!sources.isEmpty()) rebuild((f, t) -> !sources.get(f));
+    }
+
+    @Override
+    public List<String> incoming(String id) {
+        int node = liveId(id);
+        if (node == NONE) return List.of();
+        List<String> result = new ArrayList<>();
+        if (node < csrNodes) {
+            for (int i = inOffsets[node]; i < inOffsets[node + 1]; i++) result.add(dictionary.name(inSources[i]));
+        }
+        for (int e = inHead[node]; e != NONE; e = deltaNextIn[e]) result.add(dictionary.name(deltaFrom[e]));
+        return result;
+    }
+
+    @Override
+    public List<String> outgoing(String id) {
+        int node = liveId(id);
+        if (node == NONE) return List.of();
+        List<String> result = new ArrayList<>();
+        if (node < csrNodes) {
+            for (int i = outOffsets[node]; i < outOffsets[node + 1]; i++) result.add(dictionary.name(outTargets[i]));
+        }
+        for (int e = outHead[node]; e != NONE; e = deltaNextOut[e]) result.add(dictionary.name(deltaTo[e]));
+        return result;
+    }
+
+    @Override
+    public List<DependencyGraph.DependencyType> incomingTypes(String id) {
+        int node = liveId(id);
+        if (node == NONE) return List.of();
+        List<DependencyGraph.DependencyType> result = new ArrayList<>();
+        if (node < csrNodes) {
+            for (int i = inOffsets[node]; i < inOffsets[node + 1]; i++) result.add(TYPES[inTypes[i]]);
+        }
+        for (int e = inHead[node]; e != NONE; e = deltaNextIn[e]) result.add(TYPES[deltaTypes[e]]);
+        return result;
+    }
+
+    @Override
+    public List<DependencyGraph.DependencyType> outgoingTypes(String id) {
+        int node = liveId(id);
+        if (node == NONE) return List.of();
+        List<DependencyGraph.DependencyType> result = new ArrayList<>();
+        if (node < csrNodes) {
+            for (int i = outOffsets[node]; i < outOffsets[node + 1]; i++) result.add(TYPES[outTypes[i]]);
+        }
+        for (int e = outHead[node]; e != NONE; e = deltaNextOut[e]) result.add(TYPES[deltaTypes[e]]);
+        return result;
+    }
+
+    @Override
+    public boolean containsNode(String id) {
+        return liveId(id) != NONE;
+    }
+
+    @Override
+    public void forEachNode(Consumer<String> consumer) {
+        for (int node = live.nextSetBit(0); node >= 0; node = live.nextSetBit(node + 1)) {
+            consumer.accept(dictionary.name(node));
+        }
+    }
+
+    @Override
+    public void forEachEdge(EdgeConsumer consumer) {
+        forEachEdgeId((f, t, type) -> consumer.accept(dictionary.name(f), dictionary.name(t), TYPES[type]));
+    }
+
+    @Override
+    public int nodeCount() {
+        return liveCount;
+    }
+
+    @Override
+    public long edgeCount() {
+        return outTargets.length + (long) deltaSize;
+    }
+
+    @Override
+    public long estimatedBytes() {
+        long arrays = 4L * (outOffsets.length + outTargets.length + inOffsets.length + inSources.length)
+                + outTypes.length + inTypes.length
+                + 4L * (deltaFrom.length + deltaTo.length + deltaNextOut.length + deltaNextIn.length) + deltaTypes.length
+                + 4L * (outHead.length + outTail.length + inHead.length + inTail.length)
+                + live.size() / 8
+                + 16 * 15; // array headers
+        return arrays + dictionary.estimatedBytes(idBytes);
+    }
+
+    @Override
+    public long idBytes() {
+        return idBytes;
+    }
+
+    private int intern(String id) {
+        int node = dictionary.intern(id);
+        if (!live.get(node)) {
+            live.set(node);
+            liveCount++;
+            idBytes += GraphEngine.stringBytes(id);
+        }
+        if (node >= outHead.length) {
+            int capacity = Math.max(node + 1, outHead.length + (outHead.length >> 1));
+            outHead = grow(outHead, capacity);
+            outTail = grow(outTail, capacity);
+            inHead = grow(inHead, capacity);
+            inTail = grow(inTail, capacity);
+        }
+        return node;
+    }
+
+    private int liveId(String id) {
+        int node = dictionary.idOf(id);
+        return node != NONE && live.get(node) ? node : NONE;
+    }
+
+    private void forEachEdgeId(EdgeVisitor visitor) {
+        int nodes = dictionary.size();
+        for (int u = 0; u < nodes; u++) {
+            if (u < csrNodes) {
+                for (int i = outOffsets[u]; i < outOffsets[u + 1]; i++) visitor.visit(u, outTargets[i], outTypes[i]);
+            }
+            for (int e = outHead[u]; e != NONE; e = deltaNextOut[e]) visitor.visit(u, deltaTo[e], deltaTypes[e]);
+        }
+    }
+
+    @FunctionalInterface
+    private interface EdgeFilter {
+        boolean keep(int from, int to);
+    }
+
+    /**
+     * Merges base and delta into a fresh CSR base, dropping edges the filter rejects.
+     */
+    private void rebuild(EdgeFilter filter) {
+        int nodes = dictionary.size();
+        int[] newOutOffsets = new int[nodes + 1];
+        int[] newInOffsets = new int[nodes + 1];
+        int[] kept = {0};
+
+        forEachEdgeId((f, t, type) -> {
+            if (filter.keep(f, t)) {
+                newOutOffsets[f + 1]++;
+                newInOffsets[t + 1]++;
+                kept[0]++;
+            }
+        });
+        for (int i = 0; i < nodes; i++) {
+            newOutOffsets[i + 1] += newOutOffsets[i];
+            newInOffsets[i + 1] += newInOffsets[i];
+        }
+
+        int[] newOutTargets = new int[kept[0]];
+        byte[] newOutTypes = new byte[kept[0]];
+        int[] newInSources = new int[kept[0]];
+        byte[] newInTypes = new byte[kept[0]];
+        int[] outCursor = Arrays.copyOf(newOutOffsets, nodes);
+        int[] inCursor = Arrays.copyOf(newInOffsets, nodes);
+
+        forEachEdgeId((f, t, type) -> {
+            if (filter.keep(f, t)) {
+                int o = outCursor[f]++;
+                newOutTargets[o] = t;
+                newOutTypes[o] = type;
+                int i = inCursor[t]++;
+                newInSources[i] = f;
+                newInTypes[i] = type;
+            }
+        });
+
+        outOffsets = newOutOffsets;
+        outTargets = newOutTargets;
+        outTypes = newOutTypes;
+        inOffsets = newInOffsets;
+        inSources = newInSources;
+        inTypes = newInTypes;
+        csrNodes = nodes;
+
+        deltaSize = 0;
+        Arrays.fill(outHead, NONE);
+        Arrays.fill(outTail, NONE);
+        Arrays.fill(inHead, NONE);
+        Arrays.fill(inTail, NONE);
+    }
+
+    private void growDelta() {
+        int capacity = deltaFrom.length + (deltaFrom.length >> 1);
+        deltaFrom = Arrays.copyOf(deltaFrom, capacity);
+        deltaTo = Arrays.copyOf(deltaTo, capacity);
+        deltaTypes = Arrays.copyOf(deltaTypes, capacity);
+        deltaNextOut = Arrays.copyOf(deltaNextOut, capacity);
+        deltaNextIn = Arrays.copyOf(deltaNextIn, capacity);
+    }
+
+    private static int[] grow(int[] array, int capacity) {
+        int old = array.length;
+        int[] grown = Arrays.copyOf(array, capacity);
+        Arrays.fill(grown, old, capacity, NONE);
+        return grown;
+    }
+
+    private static int[] filled(int capacity) {
+        int[] array = new int[capacity];
+        Arrays.fill(array, NONE);
+        return array;
+    }
+}
@@ -0,0 +1,420 @@
+package com.codeintelligence.core;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Source text of every indexed {@link CodeUnit}, kept off-heap in an append-only segment file.
+ * <pre>
+ * per record: int payload length, int CRC32 of payload, payload
+ * payload:    byte op (PUT or DELETE), string id, and for PUT: byte kind, string package, string name, string content
+ * </pre>
+ * Strings are an int byte length followed by UTF-8 bytes. The heap only holds an ID -> offset index with interned
+ * package names; content is read from a read-only mapping of the file on demand. The index is rebuilt by scanning
+ * the file on startup, and a torn record at the tail (crash mid-append) is truncated away.
+ * Superseded and deleted records are dropped by {@link #compactIfNeeded()}.
+ */
+@Component
+@Slf4j
+public class ContentStore {
+
+    public enum Kind { CLASS, INTERFACE, RECORD, METHOD }
+
+    public record StoredUnit(String id, Kind kind, String packageName, String name, String content) {
+    }
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final int RECORD_HEADER = 2 * Integer.BYTES;
+    private static final Kind[] KINDS = Kind.values();
+    // Compaction is not worth a rewrite below this much garbage
+    private static final long MIN_COMPACT_GARBAGE = 16L << 20;
+
+    private record Entry(long contentOffset, int contentLength, int recordLength, Kind kind, String packageName, String name) {
+    }
+
+    @Value("${codeintel.content.enabled:true}")
+    private boolean enabled;
+
+    @Value("${codeintel.content.path:${user.home}/.code-intelligence/content.seg}")
+    private Path file;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Entry> index = new HashMap<>();
+    private final Map<String, String> packages = new HashMap<>();
+    private FileChannel channel;
+    private volatile MappedByteBuffer mapped;
+    private long size;
+    private long garbage;
+
+    @PostConstruct
+    void open() throws IOException {
+        if (!enabled) return;
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            load();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Opened content store {} ({} units, {} KB, {} KB reclaimable) in {} ms",
+                file, index.size(), size >> 10, garbage >> 10, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (channel != null) channel.close();
+            channel = null;
+            mapped = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * An open store with this one's settings over another file, e.g. for another workspace. The caller closes it.
+     */
+    ContentStore sibling(Path otherFile) throws IOException {
+        ContentStore store = new ContentStore();
+        store.enabled = enabled;
+        store.file = otherFile;
+        store.open();
+        return store;
+    }
+
+    /**
+     * Appends {@code unit}'s content; a unit stored earlier under the same ID is superseded.
+     */
+    public void put(CodeUnit unit) {
+        if (!enabled) return;
+        Kind kind = switch (unit) {
+            case CodeUnit.ClassUnit c -> Kind.CLASS;
+            case CodeUnit.InterfaceUnit i -> Kind.INTERFACE;
+            case CodeUnit.RecordUnit r -> Kind.RECORD;
+            case CodeUnit.MethodUnit m -> Kind.METHOD;
+        };
+        String packageName = switch (unit) {
+            case CodeUnit.ClassUnit c -> c.packageName();
+            case CodeUnit.InterfaceUnit i -> i.packageName();
+            case CodeUnit.RecordUnit r -> r.packageName();
+            case CodeUnit.MethodUnit m -> packageOf(m.parentClassId());
+        };
+
+        byte[] id = utf8(unit.id());
+        byte[] pkg = utf8(packageName);
+        byte[] name = utf8(unit.name());
+        byte[] content = utf8(unit.content());
+        ByteBuffer record = record(1 + 4 + id.length + 1 + 4 + pkg.length + 4 + name.length + 4 + content.length);
+        record.put(PUT);
+        putString(record, id);
+        record.put((byte) kind.ordinal());
+        putString(record, pkg);
+        putString(record, name);
+        record.putInt(content.length);
+        int contentPosition = record.position();
+        record.put(content);
+
+        lock.writeLock().lock();
+        try {
+            long offset = append(record);
+            Entry previous = index.put(unit.id(), new Entry(offset + contentPosition, content.length,
+                    record.capacity(), kind, intern(packageName), unit.name()));
+            if (previous != null) garbage += previous.recordLength();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Collection<String> ids) {
+        if (!enabled || ids.isEmpty()) return;
+        lock.writeLock().lock();
+        try {
+            for (String id : ids) {
+                Entry previous = index.remove(id);
+                if (previous == null) continue;
+                byte[] bytes = utf8(id);
+                ByteBuffer record = record(1 + 4 + bytes.length);
+                record.put(DELETE);
+                putString(record, bytes);
+                append(record);
+                // The tombstone only matters until the next compaction drops both records
+                garbage += previous.recordLength() + record.capacity();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Source text of {@code id}, decoded straight from the mapped segment.
+     */
+    public Optional<String> content(String id) {
+        return get(id).map(StoredUnit::content);
+    }
+
+    public Optional<StoredUnit> get(String id) {
+        if (!enabled) return Optional.empty();
+        lock.readLock().lock();
+        try {
+            Entry entry = index.get(id);
+            if (entry == null) return Optional.empty();
+            byte[] bytes = new byte[entry.contentLength()];
+            read(entry.contentOffset(), bytes);
+            return Optional.of(new StoredUnit(id, entry.kind(), entry.packageName(), entry.name(),
+                    new String(bytes, StandardCharsets.UTF_8)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Visits every stored unit, e.g. to rebuild an in-memory index on startup. Writers wait until it returns.
+     */
+    public void forEach(Consumer<StoredUnit> action) {
+        if (!enabled) return;
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<String, Entry> e : index.entrySet()) {
+                Entry entry = e.getValue();
+                byte[] bytes = new byte[entry.contentLength()];
+                read(entry.contentOffset(), bytes);
+                action.accept(new StoredUnit(e.getKey(), entry.kind(), entry.packageName(), entry.name(),
+                        new String(bytes, StandardCharsets.UTF_8)));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Drops every unit, e.g. before a full rebuild.
+     */
+    public void clear() {
+        if (!enabled) return;
+        lock.writeLock().lock();
+        try {
+            channel.truncate(0);
+            index.clear();
+            packages.clear();
+            size = 0;
+            garbage = 0;
+            mapped = null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrites the segment with only live records once at least half of it is superseded or deleted.
+     * Readers wait while this runs.
+     */
+    public void compactIfNeeded() {
+        if (!enabled) return;
+        lock.writeLock().lock();
+        try {
+            if (garbage < MIN_COMPACT_GARBAGE || garbage * 2 < size) return;
+            long start = System.nanoTime();
+            long before = size;
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Map<String, Entry> rewritten = new HashMap<>(index.size() * 2);
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                long position = 0;
+                for (Map.Entry<String, Entry> e : index.entrySet()) {
+                    Entry entry = e.getValue();
+                    long recordStart = entry.contentOffset() - (entry.recordLength() - entry.contentLength());
+                    ByteBuffer record = ByteBuffer.allocate(entry.recordLength());
+                    readFully(recordStart, record);
+                    record.flip();
+                    while (record.hasRemaining()) position += out.write(record, position);
+                    rewritten.put(e.getKey(), new Entry(position - entry.contentLength(), entry.contentLength(),
+                            entry.recordLength(), entry.kind(), entry.packageName(), entry.name()));
+                }
+                out.force(false);
+                size = position;
+            }
+            channel.close();
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            index.clear();
+            index.putAll(rewritten);
+            garbage = 0;
+            mapped = null;
+            log.info("Compacted content store {} from {} KB to {} KB in {} ms",
+                    file, before >> 10, size >> 10, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void load() throws IOException {
+        long fileSize = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        CRC32 crc = new CRC32();
+        while (position + RECORD_HEADER <= fileSize) {
+            header.clear();
+            readFully(position, header);
+            int length = header.getInt(0);
+            int checksum = header.getInt(4);
+            if (length <= 0 || position + RECORD_HEADER + length > fileSize) break;
+
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(position + RECORD_HEADER, payload);
+            crc.reset();
+            crc.update(payload.array());
+            if ((int) crc.getValue() != checksum) break;
+
+            payload.flip();
+            byte op = payload.get();
+            String id = getString(payload);
+            int recordLength = RECORD_HEADER + length;
+            Entry previous;
+            if (op == PUT) {
+                Kind kind = KINDS[payload.get()];
+                String packageName = intern(getString(payload));
+                String name = getString(payload);
+                int contentLength = payload.getInt();
+                long contentOffset = position + RECORD_HEADER + payload.position();
+                previous = index.put(id, new Entry(contentOffset, contentLength, recordLength, kind, packageName, name));
+            } else {
+                previous = index.remove(id);
+                garbage += recordLength;
+            }
+            if (previous != null) garbage += previous.recordLength();
+            position += recordLength;
+        }
+        if (position < fileSize) {
+            log.warn("Truncating {} bytes of incomplete records at the end of {}", fileSize - position, file);
+            channel.truncate(position);
+        }
+        size = position;
+    }
+
+    private long append(ByteBuffer record) {
+        record.putInt(0, record.capacity() - RECORD_HEADER);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_HEADER, record.capacity() - RECORD_HEADER);
+        record.putInt(4, (int) crc.getValue());
+        record.flip();
+        long offset = size;
+        try {
+            while (record.hasRemaining()) size += channel.write(record, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return offset;
+    }
+
+    /**
+     * Reads through the mapping, re-mapping when the file has grown past it. Files beyond 2 GiB fall back
+     * to positional reads for the part that cannot be mapped in one buffer.
+     */
+    private void read(long offset, byte[] into) {
+        long end = offset + into.length;
+        if (end <= Integer.MAX_VALUE) {
+            MappedByteBuffer view = mapping(end);
+            view.get((int) offset, into);
+            return;
+        }
+        try {
+            readFully(offset, ByteBuffer.wrap(into));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private MappedByteBuffer mapping(long needed) {
+        MappedByteBuffer current = mapped;
+        if (current != null && current.capacity() >= needed) return current;
+        synchronized (this) {
+            if (mapped == null || mapped.capacity() < needed) {
+                try {
+                    mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, Integer.MAX_VALUE));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return mapped;
+        }
+    }
+
+    private void readFully(long position, ByteBuffer into) throws IOException {
+        while (into.hasRemaining()) {
+            if (channel.read(into, position + into.position()) < 0) throw new IOException("Unexpected end of " + file);
+        }
+    }
+
+    private String intern(String packageName) {
+        return packages.computeIfAbsent(packageName, p -> p);
+    }
+
+    private static String packageOf(String typeId) {
+        int lastDot = typeId.lastIndexOf('.');
+        return lastDot < 0 ? "" : typeId.substring(0, lastDot);
+    }
+
+    private static ByteBuffer record(int payloadLength) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + payloadLength);
+        record.position(RECORD_HEADER);
+        return record;
+    }
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -1,82 +1,561 @@
 package com.codeintelligence.core;
 
-import org.jgrapht.Graph;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.jgrapht.graph.DefaultEdge;
-import org.jgrapht.graph.DirectedMultigraph;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 /**
- * Thread-safe wrapper around JGraphT directed graph.
- * Nodes are CodeUnit IDs (String) to save memory, lookup map is separate.
+ * Thread-safe dependency graph over CodeUnit IDs.
+ * Storage is pluggable via {@code codeintel.graph.engine}: {@code jgrapht} (default) or {@code compact},
+ * a primitive-array engine that needs a fraction of the heap on large graphs.
+ * <p>
+ * Writers mutate the engine under a lock; readers never touch it. They read an immutable, versioned view that is
+ * published from the engine, so a query never waits for a writer. A publish copies only the nodes written since the
+ * previous one, into a new layer over the unchanged older ones; small layers are folded into the ones below, so a
+ * lookup checks a handful of maps at most. Outside an update every write is published as it completes. Between
+ * {@link #beginUpdate()} and {@link #endUpdate()}, e.g. while ingestion runs, reads keep the last published view and
+ * writers republish it at most every {@code codeintel.graph.publish-interval}. Readers never publish.
  */
 @Component
 public class DependencyGraph {
 
-    // Edge types could be enriched later (e.g. "CALLS", "IMPLEMENTS").
-    private Graph<String, DependencyEdge> graph;
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private static final DependencyType[] TYPES = DependencyType.values();
+    // A new view layer is folded into the one below while it is at least this fraction of its size
+    private static final int MERGE_RATIO = 4;
+
+    private final Supplier<GraphEngine> engineFactory;
+    private final String engineName;
+    private final MeterRegistry meterRegistry;
+    // Guarded by lock
+    private GraphEngine graph;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Timer writeLockWait;
+    private final Timer publishTime;
+
+    private volatile View view = View.EMPTY;
+    // Whether the engine has changes the view does not; only set and cleared under lock
+    private volatile boolean dirty;
+    private final AtomicInteger updates = new AtomicInteger();
+    // Guarded by lock: nodes written since the last publish, and whether the engine was replaced outright
+    private final Set<String> touched = new HashSet<>();
+    private boolean replaced;
+    private long nextPublishNanos;
+
+    @Value("${codeintel.graph.publish-interval:1s}")
+    private Duration publishInterval = Duration.ofSeconds(1);
 
     public DependencyGraph() {
-        this.graph = new DirectedMultigraph<>(DependencyEdge.class);
+        this("jgrapht");
+    }
+
+    public DependencyGraph(String engine) {
+        this(engine, new SimpleMeterRegistry());
+    }
+
+    @Autowired
+    public DependencyGraph(@Value("${codeintel.graph.engine:jgrapht}") String engine, MeterRegistry meterRegistry) {
+        this.engineName = engine;
+        this.meterRegistry = meterRegistry;
+        this.writeLockWait = Timer.builder("codeintel.graph.lock.wait")
+                .description("Time spent waiting for the graph write lock")
+                .tag("mode", "write")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.publishTime = Timer.builder("codeintel.graph.publish")
+                .description("Time spent building a read view of the graph")
+                .register(meterRegistry);
+        this.engineFactory = switch (engine) {
+            case "jgrapht" -> JGraphTEngine::new;
+            case "compact" -> CompactGraphEngine::new;
+            default -> throw new IllegalArgumentException("Unknown graph engine: " + engine);
+        };
+        this.graph = engineFactory.get();
+        this.nextPublishNanos = System.nanoTime();
+    }
+
+    /**
+     * An empty graph with this one's engine, meters and publish interval, e.g. for another workspace.
+     */
+    DependencyGraph sibling() {
+        DependencyGraph graph = new DependencyGraph(engineName, meterRegistry);
+        graph.publishInterval = publishInterval;
+        return graph;
     }
 
     public void addNode(String id) {
-        lock.writeLock().lock();
+        lockForWrite();
         try {
-            graph.addVertex(id);
+            graph.addNode(id);
+            touched.add(id);
+            written();
         } finally {
-            lock.writeLock().unlock();
+            lock.unlock();
         }
     }
 
     public void addDependency(String fromId, String toId, DependencyType type) {
-        lock.writeLock().lock();
+        lockForWrite();
         try {
-            graph.addVertex(fromId);
-            graph.addVertex(toId);
-            graph.addEdge(fromId, toId, new DependencyEdge(type));
+            graph.addEdge(fromId, toId, type);
+            touched.add(fromId);
+            touched.add(toId);
+            written();
         } finally {
-            lock.writeLock().unlock();
+            lock.unlock();
         }
     }
 
-    public List<String> getIncoming(String nodeId) {
-        lock.readLock().lock();
+    /**
+     * Adds every node and edge of {@code batch} under a single lock acquisition.
+     */
+    public void apply(Batch batch) {
+        if (batch.isEmpty()) return;
+        lockForWrite();
         try {
-            if (!graph.containsVertex(nodeId)) return List.of();
-            return graph.incomingEdgesOf(nodeId).stream()
-                    .map(graph::getEdgeSource)
-                    .toList();
+            batch.nodes.forEach(graph::addNode);
+            touched.addAll(batch.nodes);
+            for (Edge edge : batch.edges) {
+                graph.addEdge(edge.fromId(), edge.toId(), edge.type());
+                touched.add(edge.fromId());
+                touched.add(edge.toId());
+            }
+            written();
         } finally {
-            lock.readLock().unlock();
+            lock.unlock();
         }
     }
 
+    /**
+     * Removes the given nodes together with every edge touching them.
+     */
+    public void removeNodes(Collection<String> ids) {
+        lockForWrite();
+        try {
+            // Their neighbours lose an edge too
+            for (String id : ids) {
+                if (!graph.containsNode(id)) continue;
+                touched.add(id);
+                touched.addAll(graph.outgoing(id));
+                touched.addAll(graph.incoming(id));
+            }
+            graph.removeNodes(ids);
+            written();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the outgoing edges of the given nodes but keeps the nodes and the edges pointing at them,
+     * so a re-parsed file can re-emit its edges without losing links from unchanged files.
+     */
+    public void removeOutgoing(Collection<String> ids) {
+        lockForWrite();
+        try {
+            for (String id : ids) {
+                if (!graph.containsNode(id)) continue;
+                touched.add(id);
+                touched.addAll(graph.outgoing(id));
+            }
+            graph.removeOutgoing(ids);
+            written();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts a batch of writes whose intermediate states readers need not see. Updates may overlap; each must be
+     * ended with {@link #endUpdate()}.
+     */
+    public void beginUpdate() {
+        updates.incrementAndGet();
+    }
+
+    /**
+     * Ends an update; the last one to end publishes everything written so far.
+     */
+    public void endUpdate() {
+        if (updates.decrementAndGet() <= 0) publish();
+    }
+
+    /**
+     * Makes every completed write visible to readers now, whether or not an update is open.
+     */
+    public void publish() {
+        if (!dirty) return;
+        lockForWrite();
+        try {
+            publishLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Version of the view readers currently see; moves on every publish.
+     */
+    public long version() {
+        return view.version();
+    }
+
+    public int nodeCount() {
+        return view.size();
+    }
+
+    /**
+     * Copy of every node ID currently in the graph.
+     */
+    public List<String> nodeIds() {
+        View current = view;
+        List<String> ids = new ArrayList<>(current.size());
+        Set<String> seen = new HashSet<>();
+        for (Map<String, Adjacency> layer : current.layers()) {
+            layer.forEach((id, adjacency) -> {
+                if (seen.add(id) && adjacency != Adjacency.REMOVED) ids.add(id);
+            });
+        }
+        return ids;
+    }
+
+    public List<String> getIncoming(String nodeId) {
+        return view.get(nodeId).incoming();
+    }
+
     public void clear() {
-        lock.writeLock().lock();
+        lockForWrite();
         try {
             // Create a new graph to clear state safely
-            this.graph = new DirectedMultigraph<>(DependencyEdge.class);
+            this.graph = engineFactory.get();
+            replaced = true;
+            written();
         } finally {
-            lock.writeLock().unlock();
+            lock.unlock();
         }
     }
 
     public List<String> getOutgoing(String nodeId) {
-        lock.readLock().lock();
+        return view.get(nodeId).outgoing();
+    }
+
+    /**
+     * Breadth-first search out from {@code seeds} within the bounds of {@code traversal}. All seeds are expanded
+     * together, one hop at a time over the same view, so a node is reached once, from the nearest seed, and a dense
+     * neighbourhood around one seed cannot starve the others of hops. Returns seeds first, then nodes in the order
+     * they were reached.
+     * <p>
+     * The work done is bounded by the traversal, not the graph: at most {@code maxVisited} nodes are reached, and
+     * filtering an adjacency list for the wanted edge types stops once {@code fanOut} new neighbours are found.
+     */
+    public List<Reached> traverse(Collection<String> seeds, Traversal traversal) {
+        View current = view;
+        Map<String, Reached> visited = new LinkedHashMap<>();
+        List<Reached> frontier = new ArrayList<>();
+        for (String seed : seeds) {
+            if (visited.size() >= traversal.maxVisited()) break;
+            if (visited.containsKey(seed)) continue;
+            Reached reached = new Reached(seed, seed, 0, null, null);
+            visited.put(seed, reached);
+            frontier.add(reached);
+        }
+
+        for (int hop = 1; hop <= traversal.maxHops() && !frontier.isEmpty(); hop++) {
+            List<Reached> next = new ArrayList<>();
+            for (Reached from : frontier) {
+                if (visited.size() >= traversal.maxVisited()) break;
+                Adjacency adjacency = current.get(from.id());
+                int followed = 0;
+                if (traversal.direction() != Direction.INCOMING) {
+                    followed = follow(from, hop, adjacency.outgoing(), adjacency.outgoingTypes(), followed,
+                            traversal, visited, next);
+                }
+                if (traversal.direction() != Direction.OUTGOING) {
+                    follow(from, hop, adjacency.incoming(), adjacency.incomingTypes(), followed,
+                            traversal, visited, next);
+                }
+            }
+            frontier = next;
+        }
+        return List.copyOf(visited.values());
+    }
+
+    private static int follow(Reached from, int hop, List<String> ids, byte[] types, int followed, Traversal traversal,
+                              Map<String, Reached> visited, List<Reached> next) {
+        for (int i = 0; i < ids.size() && followed < traversal.fanOut() && visited.size() < traversal.maxVisited(); i++) {
+            DependencyType type = TYPES[types[i]];
+            String id = ids.get(i);
+            if (!traversal.types().contains(type) || visited.containsKey(id)) continue;
+            Reached reached = new Reached(id, from.seed(), hop, from.id(), type);
+            visited.put(id, reached);
+            next.add(reached);
+            followed++;
+        }
+        return followed;
+    }
+
+    /**
+     * Writes the whole graph to {@code file} in the {@link GraphSnapshot} format. Writers wait while this runs.
+     */
+    public GraphSnapshot.Header saveSnapshot(Path file, String label) throws IOException {
+        lockForWrite();
+        try {
+            return GraphSnapshot.write(graph, label, file);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the graph with the contents of a snapshot and publishes it. Loading happens off-lock.
+     */
+    public GraphSnapshot.Header restoreSnapshot(Path file) throws IOException {
+        GraphSnapshot.Loaded loaded = GraphSnapshot.read(file, engineFactory);
+        lockForWrite();
         try {
-            if (!graph.containsVertex(nodeId)) return List.of();
-            return graph.outgoingEdgesOf(nodeId).stream()
-                    .map(graph::getEdgeTarget)
-                    .toList();
+            this.graph = loaded.engine();
+            replaced = true;
+            dirty = true;
+            publishLocked();
         } finally {
-            lock.readLock().unlock();
+            lock.unlock();
+        }
+        return loaded.header();
+    }
+
+    /**
+     * Size and estimated heap footprint, next to what a JGraphT graph of the same shape would need.
+     * Counts what has been written, published or not; {@code viewBytes} is what the published read view adds on top.
+     */
+    public GraphStats stats() {
+        lockForWrite();
+        try {
+            int nodes = graph.nodeCount();
+            long edges = graph.edgeCount();
+            long bytes = graph.estimatedBytes();
+            long jgraphtBytes = JGraphTEngine.estimate(nodes, edges, graph.idBytes());
+            return new GraphStats(engineName, nodes, edges, bytes,
+                    nodes == 0 ? 0 : bytes / nodes,
+                    nodes == 0 ? 0 : jgraphtBytes / nodes,
+                    view.estimatedBytes());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void lockForWrite() {
+        long start = System.nanoTime();
+        lock.lock();
+        writeLockWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    // Called by writers under lock, once the write is complete
+    private void written() {
+        dirty = true;
+        if (updates.get() <= 0 || System.nanoTime() - nextPublishNanos >= 0) publishLocked();
+    }
+
+    private void publishLocked() {
+        if (!dirty) return;
+        long start = System.nanoTime();
+        View current = view;
+        if (replaced) {
+            Map<String, Adjacency> nodes = HashMap.newHashMap(graph.nodeCount());
+            graph.forEachNode(id -> nodes.put(id, adjacency(id)));
+            view = new View(current.version() + 1, nodes.isEmpty() ? List.of() : List.of(nodes), nodes.size());
+        } else {
+            Map<String, Adjacency> changed = HashMap.newHashMap(touched.size());
+            int size = current.size();
+            for (String id : touched) {
+                boolean published = current.contains(id);
+                if (graph.containsNode(id)) {
+                    changed.put(id, adjacency(id));
+                    if (!published) size++;
+                } else if (published) {
+                    changed.put(id, Adjacency.REMOVED);
+                    size--;
+                }
+            }
+            view = current.stack(changed, size);
+        }
+        touched.clear();
+        replaced = false;
+        dirty = false;
+
+        long took = System.nanoTime() - start;
+        publishTime.record(took, TimeUnit.NANOSECONDS);
+        nextPublishNanos = System.nanoTime() + Math.max(publishInterval.toNanos(), 10 * took);
+    }
+
+    private Adjacency adjacency(String id) {
+        List<String> outgoing = graph.outgoing(id);
+        List<String> incoming = graph.incoming(id);
+        return outgoing.isEmpty() && incoming.isEmpty()
+                ? Adjacency.NONE
+                : new Adjacency(List.copyOf(outgoing), List.copyOf(incoming),
+                        ordinals(graph.outgoingTypes(id)), ordinals(graph.incomingTypes(id)));
+    }
+
+    /**
+     * A published state of the graph: layers of nodes, newest first, where a node's entry in a newer layer shadows
+     * any older one. Neither the layers nor their adjacency are modified once published, so readers need no lock and
+     * successive views share everything that did not change between them.
+     */
+    private record View(long version, List<Map<String, Adjacency>> layers, int size) {
+        static final View EMPTY = new View(0, List.of(), 0);
+
+        Adjacency get(String id) {
+            for (Map<String, Adjacency> layer : layers) {
+                Adjacency adjacency = layer.get(id);
+                if (adjacency != null) return adjacency == Adjacency.REMOVED ? Adjacency.NONE : adjacency;
+            }
+            return Adjacency.NONE;
+        }
+
+        boolean contains(String id) {
+            for (Map<String, Adjacency> layer : layers) {
+                Adjacency adjacency = layer.get(id);
+                if (adjacency != null) return adjacency != Adjacency.REMOVED;
+            }
+            return false;
+        }
+
+        /**
+         * The next version, with {@code changed} over this one. Folding a layer into the one below whenever it has
+         * grown to a quarter of its size keeps the layer count logarithmic and copies each entry a bounded number of
+         * times per level; removed nodes are dropped once they reach the bottom layer.
+         */
+        View stack(Map<String, Adjacency> changed, int size) {
+            Map<String, Adjacency> top = changed;
+            int below = 0;
+            while (below < layers.size() && (long) top.size() * MERGE_RATIO >= layers.get(below).size()) {
+                Map<String, Adjacency> older = layers.get(below++);
+                Map<String, Adjacency> merged = HashMap.newHashMap(older.size() + top.size());
+                merged.putAll(older);
+                merged.putAll(top);
+                if (below == layers.size()) merged.values().removeIf(adjacency -> adjacency == Adjacency.REMOVED);
+                top = merged;
+            }
+            List<Map<String, Adjacency>> stacked = new ArrayList<>(layers.size() - below + 1);
+            if (!top.isEmpty()) stacked.add(top);
+            stacked.addAll(layers.subList(below, layers.size()));
+            return new View(version + 1, List.copyOf(stacked), size);
+        }
+
+        /**
+         * Approximate heap of the layers and the adjacency they hold; ID strings are the engine's and not counted.
+         */
+        long estimatedBytes() {
+            long bytes = 0;
+            for (Map<String, Adjacency> layer : layers) {
+                // HashMap with its table, and a node per entry
+                bytes += 64 + 48L * layer.size();
+                for (Adjacency adjacency : layer.values()) bytes += adjacency.estimatedBytes();
+            }
+            return bytes;
+        }
+    }
+
+    // Edge types as ordinals, parallel to the ID lists
+    private record Adjacency(List<String> outgoing, List<String> incoming, byte[] outgoingTypes, byte[] incomingTypes) {
+        static final Adjacency NONE = new Adjacency(List.of(), List.of(), new byte[0], new byte[0]);
+        // Marks a node removed in a newer layer than the one still holding it
+        static final Adjacency REMOVED = new Adjacency(List.of(), List.of(), new byte[0], new byte[0]);
+
+        long estimatedBytes() {
+            if (this == NONE || this == REMOVED) return 0;
+            // The record, two immutable lists with their arrays and two byte arrays; a reference and a byte per edge
+            int edges = outgoing.size() + incoming.size();
+            return 32 + 2 * 32 + 2 * 16 + 5L * edges;
+        }
+    }
+
+    private static byte[] ordinals(List<DependencyType> types) {
+        byte[] ordinals = new byte[types.size()];
+        for (int i = 0; i < ordinals.length; i++) ordinals[i] = (byte) types.get(i).ordinal();
+        return ordinals;
+    }
+
+    public record GraphStats(
+        String engine,
+        int nodes,
+        long edges,
+        long estimatedBytes,
+        long bytesPerNode,
+        long jgraphtBytesPerNode,
+        long viewBytes
+    ) {}
+
+    public record Edge(String fromId, String toId, DependencyType type) {
+    }
+
+    public enum Direction {
+        OUTGOING, INCOMING, BOTH
+    }
+
+    /**
+     * Bounds of a {@link #traverse} call: the edge types to follow and in which direction, how many hops out from a
+     * seed, how many new neighbours of one node to follow, and how many nodes to reach in total, seeds included.
+     */
+    public record Traversal(Set<DependencyType> types, Direction direction, int maxHops, int fanOut, int maxVisited) {
+        public Traversal {
+            types = Set.copyOf(types);
+        }
+    }
+
+    /**
+     * A node reached by {@link #traverse}, {@code distance} hops from {@code seed}; {@code via} is the node it was
+     * reached from and {@code type} the edge followed. Both are null for seeds.
+     */
+    public record Reached(String id, String seed, int distance, String via, DependencyType type) {
+    }
+
+    /**
+     * Nodes and edges collected for one {@link #apply} call, typically a source file's. A node or edge added twice
+     * is kept once. Not thread-safe.
+     */
+    public static final class Batch {
+
+        private final Set<String> nodes = new LinkedHashSet<>();
+        private final Set<Edge> edges = new LinkedHashSet<>();
+
+        public Batch node(String id) {
+            nodes.add(id);
+            return this;
+        }
+
+        public Batch edge(String fromId, String toId, DependencyType type) {
+            edges.add(new Edge(fromId, toId, type));
+            return this;
+        }
+
+        public boolean isEmpty() {
+            return nodes.isEmpty() && edges.isEmpty();
+        }
+
+        public Collection<Edge> edges() {
+            return Collections.unmodifiableSet(edges);
         }
     }
 
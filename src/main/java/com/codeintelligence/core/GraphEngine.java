@@ -0,0 +1,66 @@
+package com.codeintelligence.core;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Storage behind {@link DependencyGraph}. Implementations are not thread-safe; the graph guards every call with its lock.
+ */
+interface GraphEngine {
+
+    @FunctionalInterface
+    interface EdgeConsumer {
+        void accept(String fromId, String toId, DependencyGraph.DependencyType type);
+    }
+
+    void addNode(String id);
+
+    void addEdge(String fromId, String toId, DependencyGraph.DependencyType type);
+
+    void removeNodes(Collection<String> ids);
+
+    void removeOutgoing(Collection<String> ids);
+
+    List<String> incoming(String id);
+
+    List<String> outgoing(String id);
+
+    /**
+     * Types of the edges {@link #incoming} lists, in the same order.
+     */
+    List<DependencyGraph.DependencyType> incomingTypes(String id);
+
+    /**
+     * Types of the edges {@link #outgoing} lists, in the same order.
+     */
+    List<DependencyGraph.DependencyType> outgoingTypes(String id);
+
+    boolean containsNode(String id);
+
+    void forEachNode(Consumer<String> consumer);
+
+    void forEachEdge(EdgeConsumer consumer);
+
+    int nodeCount();
+
+    long edgeCount();
+
+    /**
+     * Approximate retained heap of the whole structure, ID strings included.
+     */
+    long estimatedBytes();
+
+    /**
+     * Approximate retained heap of the node ID strings alone.
+     */
+    long idBytes();
+
+    /**
+     * Rough heap cost of one {@code String} with compact (Latin-1) storage and compressed oops.
+     */
+    static long stringBytes(String s) {
+        // String header + fields (24) and byte[] header (16), contents padded to 8 bytes
+        return 40 + ((s.length() + 7) & ~7L);
+    }
+}
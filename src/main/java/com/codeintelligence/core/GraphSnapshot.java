@@ -0,0 +1,154 @@
+package com.codeintelligence.core;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary snapshot format for {@link DependencyGraph}.
+ * <pre>
+ * int    magic "CIGS"
+ * short  format version
+ * long   created (epoch millis)
+ * string source label (e.g. the ingested root), empty if none
+ * int    node count, then per node: string ID        -- the string table; edges refer to positions in it
+ * long   edge count, then per edge: int from, int to, byte type ordinal
+ * long   CRC32 of everything above
+ * </pre>
+ * Strings are an int byte length followed by UTF-8 bytes. All numbers are big-endian.
+ * Files are written to a temp sibling and moved into place, so a crash never leaves a torn snapshot.
+ */
+public final class GraphSnapshot {
+
+    static final int MAGIC = 0x43494753;
+    static final short VERSION = 1;
+
+    private static final DependencyGraph.DependencyType[] TYPES = DependencyGraph.DependencyType.values();
+
+    public record Header(short version, long createdMillis, String label, int nodes, long edges) {
+    }
+
+    private GraphSnapshot() {
+    }
+
+    static Header write(GraphEngine engine, String label, Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        long created = System.currentTimeMillis();
+        int nodes = engine.nodeCount();
+        long[] edges = {0};
+
+        try (OutputStream raw = Files.newOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(raw, crc), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(created);
+            writeString(out, label == null ? "" : label);
+
+            Map<String, Integer> positions = new HashMap<>(nodes * 2);
+            out.writeInt(nodes);
+            IOException[] failure = {null};
+            engine.forEachNode(id -> {
+                if (failure[0] != null) return;
+                positions.put(id, positions.size());
+                try {
+                    writeString(out, id);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+
+            out.writeLong(engine.edgeCount());
+            engine.forEachEdge((from, to, type) -> {
+                if (failure[0] != null) return;
+                try {
+                    out.writeInt(positions.get(from));
+                    out.writeInt(positions.get(to));
+                    out.writeByte(type.ordinal());
+                    edges[0]++;
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) throw failure[0];
+
+            out.flush();
+            // The checksum covers everything written so far and is not part of itself
+            out.writeLong(crc.getValue());
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new Header(VERSION, created, label, nodes, edges[0]);
+    }
+
+    /**
+     * Memory-maps {@code file} and loads it into a fresh engine from {@code engineFactory}.
+     */
+    static Loaded read(Path file, Supplier<GraphEngine> engineFactory) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot too large to map: " + size + " bytes");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            CRC32 crc = new CRC32();
+            ByteBuffer body = buffer.slice(0, (int) size - Long.BYTES);
+            crc.update(body);
+            if (crc.getValue() != buffer.getLong((int) size - Long.BYTES)) {
+                throw new IOException("Snapshot checksum mismatch: " + file);
+            }
+
+            if (buffer.getInt() != MAGIC) throw new IOException("Not a graph snapshot: " + file);
+            short version = buffer.getShort();
+            if (version != VERSION) throw new IOException("Unsupported snapshot version " + version + ": " + file);
+            long created = buffer.getLong();
+            String label = readString(buffer);
+
+            GraphEngine engine = engineFactory.get();
+            int nodes = buffer.getInt();
+            String[] ids = new String[nodes];
+            for (int i = 0; i < nodes; i++) {
+                ids[i] = readString(buffer);
+                engine.addNode(ids[i]);
+            }
+
+            long edges = buffer.getLong();
+            for (long e = 0; e < edges; e++) {
+                int from = buffer.getInt();
+                int to = buffer.getInt();
+                engine.addEdge(ids[from], ids[to], TYPES[buffer.get()]);
+            }
+            return new Loaded(engine, new Header(version, created, label, nodes, edges));
+        }
+    }
+
+    record Loaded(GraphEngine engine, Header header) {
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
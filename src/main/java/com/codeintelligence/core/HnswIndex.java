@@ -0,0 +1,454 @@
+package com.codeintelligence.core;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntPredicate;
+
+/**
+ * Hierarchical Navigable Small World graph over unit-length float vectors, scored by inner product (= cosine).
+ * <p>
+ * Vectors live in a memory-mapped file of fixed-size slots, so the heap only carries the link lists.
+ * Inserts may run concurrently with each other and with searches: link lists are immutable arrays swapped in
+ * under their node's monitor, and readers never lock. Deletion only marks a node; it keeps routing searches
+ * until the owner rebuilds the index.
+ */
+public final class HnswIndex implements Closeable {
+
+    static final int MAGIC = 0x484E5357; // "HNSW"
+    static final short VERSION = 1;
+
+    // Slots per mapped chunk; chunks are mapped as the file grows so earlier mappings stay valid
+    private static final int CHUNK_SLOTS = 1 << 14;
+    private static final int[] NO_LINKS = new int[0];
+
+    public record Hit(int node, float score) {
+    }
+
+    private record EntryPoint(int node, int level) {
+    }
+
+    private static final class Node {
+        final int level;
+        final AtomicReferenceArray<int[]> links;
+        volatile boolean deleted;
+
+        Node(int level) {
+            this.level = level;
+            this.links = new AtomicReferenceArray<>(level + 1);
+            for (int l = 0; l <= level; l++) links.set(l, NO_LINKS);
+        }
+    }
+
+    private final int dimensions;
+    private final int m;
+    private final int efConstruction;
+    private final double levelMultiplier;
+
+    private final FileChannel vectorChannel;
+    private volatile MappedByteBuffer[] chunks = new MappedByteBuffer[0];
+
+    private final Object allocationLock = new Object();
+    private volatile Node[] nodes = new Node[1024];
+    private volatile int count;
+    private volatile int deletedCount;
+    private volatile EntryPoint entry;
+
+    private final ThreadLocal<int[]> visitedMarks = ThreadLocal.withInitial(() -> new int[0]);
+    private final ThreadLocal<int[]> visitedEpoch = ThreadLocal.withInitial(() -> new int[1]);
+
+    public HnswIndex(Path vectorFile, int dimensions, int m, int efConstruction) throws IOException {
+        this.dimensions = dimensions;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.vectorChannel = FileChannel.open(vectorFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int deletedCount() {
+        return deletedCount;
+    }
+
+    /**
+     * Inserts a vector, normalizing it first, and returns its node number.
+     */
+    public int add(float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions, got " + vector.length);
+        }
+        float[] query = normalize(vector);
+        int level = randomLevel();
+        Node node = new Node(level);
+        int id;
+        synchronized (allocationLock) {
+            id = count;
+            if (id == nodes.length) nodes = Arrays.copyOf(nodes, id * 2);
+            writeVector(id, query);
+            nodes[id] = node;
+            count = id + 1;
+        }
+        connect(id, node, query);
+        return id;
+    }
+
+    public void markDeleted(int node) {
+        Node n = nodes[node];
+        if (!n.deleted) {
+            n.deleted = true;
+            synchronized (allocationLock) {
+                deletedCount++;
+            }
+        }
+    }
+
+    public boolean isDeleted(int node) {
+        return nodes[node].deleted;
+    }
+
+    public float[] vector(int node) {
+        float[] v = new float[dimensions];
+        MappedByteBuffer chunk = chunks[node / CHUNK_SLOTS];
+        int base = (node % CHUNK_SLOTS) * dimensions * Float.BYTES;
+        for (int i = 0; i < dimensions; i++) v[i] = chunk.getFloat(base + i * Float.BYTES);
+        return v;
+    }
+
+    /**
+     * The {@code k} live nodes closest to {@code vector} among those {@code accept} lets through.
+     * {@code ef} is the beam width at the bottom layer; larger is slower and more accurate.
+     * Rejected nodes are still traversed, so selective filters cost time but not recall.
+     */
+    public List<Hit> search(float[] vector, int k, int ef, IntPredicate accept) {
+        EntryPoint ep = entry;
+        if (ep == null || k <= 0) return List.of();
+        float[] query = normalize(vector);
+
+        int current = ep.node();
+        for (int level = ep.level(); level > 0; level--) {
+            current = greedy(query, current, level);
+        }
+        IntPredicate live = n -> !nodes[n].deleted && accept.test(n);
+        List<Hit> hits = searchLayer(query, current, Math.max(ef, k), 0, live);
+        return hits.size() > k ? hits.subList(0, k) : hits;
+    }
+
+    /**
+     * Exact top-k by scanning every live vector. Ground truth for recall measurements.
+     */
+    public List<Hit> exactSearch(float[] vector, int k, IntPredicate accept) {
+        float[] query = normalize(vector);
+        PriorityQueue<Hit> best = new PriorityQueue<>(Comparator.comparingDouble(Hit::score));
+        int n = count;
+        for (int i = 0; i < n; i++) {
+            if (nodes[i].deleted || !accept.test(i)) continue;
+            best.add(new Hit(i, score(query, i)));
+            if (best.size() > k) best.poll();
+        }
+        List<Hit> hits = new ArrayList<>(best);
+        hits.sort(Comparator.comparingDouble(Hit::score).reversed());
+        return hits;
+    }
+
+    private void connect(int id, Node node, float[] query) {
+        EntryPoint ep;
+        synchronized (allocationLock) {
+            ep = entry;
+            if (ep == null) {
+                entry = new EntryPoint(id, node.level);
+                return;
+            }
+        }
+
+        int current = ep.node();
+        for (int level = ep.level(); level > node.level; level--) {
+            current = greedy(query, current, level);
+        }
+        for (int level = Math.min(node.level, ep.level()); level >= 0; level--) {
+            List<Hit> candidates = searchLayer(query, current, efConstruction, level, n -> n != id);
+            int[] neighbours = selectNeighbours(candidates, maxLinks(level));
+            node.links.set(level, neighbours);
+            for (int neighbour : neighbours) {
+                link(neighbour, id, level);
+            }
+            if (!candidates.isEmpty()) current = candidates.get(0).node();
+        }
+
+        if (node.level > ep.level()) {
+            synchronized (allocationLock) {
+                if (node.level > entry.level()) entry = new EntryPoint(id, node.level);
+            }
+        }
+    }
+
+    /**
+     * Adds {@code target} to {@code from}'s links, pruning back to the cap with the same heuristic as insertion.
+     */
+    private void link(int from, int target, int level) {
+        Node node = nodes[from];
+        synchronized (node) {
+            int[] current = node.links.get(level);
+            int[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = target;
+            if (grown.length > maxLinks(level)) {
+                List<Hit> scored = new ArrayList<>(grown.length);
+                float[] base = vector(from);
+                for (int n : grown) scored.add(new Hit(n, score(base, n)));
+                scored.sort(Comparator.comparingDouble(Hit::score).reversed());
+                grown = selectNeighbours(scored, maxLinks(level));
+            }
+            node.links.set(level, grown);
+        }
+    }
+
+    /**
+     * The HNSW neighbour heuristic: keep a candidate only if it is closer to the base than to every neighbour
+     * kept so far. This spreads links across directions instead of clustering them. Candidates are best first.
+     */
+    private int[] selectNeighbours(List<Hit> candidates, int max) {
+        int[] selected = new int[Math.min(max, candidates.size())];
+        float[][] selectedVectors = new float[selected.length][];
+        int size = 0;
+        for (Hit candidate : candidates) {
+            if (size == selected.length) break;
+            float[] v = vector(candidate.node());
+            boolean keep = true;
+            for (int i = 0; i < size && keep; i++) {
+                keep = dot(v, selectedVectors[i]) < candidate.score();
+            }
+            if (keep) {
+                selectedVectors[size] = v;
+                selected[size++] = candidate.node();
+            }
+        }
+        return size == selected.length ? selected : Arrays.copyOf(selected, size);
+    }
+
+    private int greedy(float[] query, int start, int level) {
+        int current = start;
+        float best = score(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int n : linksOf(current, level)) {
+                float s = score(query, n);
+                if (s > best) {
+                    best = s;
+                    current = n;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Beam search within one layer. Returns up to {@code ef} accepted nodes, best first.
+     */
+    private List<Hit> searchLayer(float[] query, int start, int ef, int level, IntPredicate accept) {
+        Comparator<Hit> byScore = Comparator.comparingDouble(Hit::score);
+        PriorityQueue<Hit> candidates = new PriorityQueue<>(byScore.reversed());
+        PriorityQueue<Hit> results = new PriorityQueue<>(byScore);
+        int[] marks = visited();
+        int epoch = visitedEpoch.get()[0];
+
+        Hit first = new Hit(start, score(query, start));
+        marks[start] = epoch;
+        candidates.add(first);
+        if (accept.test(start)) results.add(first);
+
+        while (!candidates.isEmpty()) {
+            Hit closest = candidates.poll();
+            if (results.size() >= ef && closest.score() < results.peek().score()) break;
+            for (int n : linksOf(closest.node(), level)) {
+                if (n >= marks.length || marks[n] == epoch) continue;
+                marks[n] = epoch;
+                float s = score(query, n);
+                if (results.size() < ef || s > results.peek().score()) {
+                    Hit hit = new Hit(n, s);
+                    candidates.add(hit);
+                    if (accept.test(n)) {
+                        results.add(hit);
+                        if (results.size() > ef) results.poll();
+                    }
+                }
+            }
+        }
+        List<Hit> sorted = new ArrayList<>(results);
+        sorted.sort(byScore.reversed());
+        return sorted;
+    }
+
+    private int[] linksOf(int node, int level) {
+        Node n = nodes[node];
+        return level <= n.level ? n.links.get(level) : NO_LINKS;
+    }
+
+    /**
+     * Per-thread visited marks stamped with an epoch, so a search does not clear or allocate a set.
+     */
+    private int[] visited() {
+        int[] marks = visitedMarks.get();
+        int[] epoch = visitedEpoch.get();
+        int n = count;
+        if (marks.length < n) {
+            marks = new int[Math.max(n, marks.length * 2)];
+            visitedMarks.set(marks);
+            epoch[0] = 0;
+        }
+        if (++epoch[0] == Integer.MAX_VALUE) {
+            Arrays.fill(marks, 0);
+            epoch[0] = 1;
+        }
+        return marks;
+    }
+
+    private int maxLinks(int level) {
+        return level == 0 ? 2 * m : m;
+    }
+
+    private int randomLevel() {
+        double r = ThreadLocalRandom.current().nextDouble();
+        return (int) (-Math.log(1 - r) * levelMultiplier);
+    }
+
+    private float score(float[] query, int node) {
+        MappedByteBuffer chunk = chunks[node / CHUNK_SLOTS];
+        int base = (node % CHUNK_SLOTS) * dimensions * Float.BYTES;
+        float sum = 0;
+        for (int i = 0; i < dimensions; i++) sum += query[i] * chunk.getFloat(base + i * Float.BYTES);
+        return sum;
+    }
+
+    private void writeVector(int node, float[] vector) {
+        int chunkIndex = node / CHUNK_SLOTS;
+        if (chunkIndex >= chunks.length) mapChunk(chunkIndex);
+        MappedByteBuffer chunk = chunks[chunkIndex];
+        int base = (node % CHUNK_SLOTS) * dimensions * Float.BYTES;
+        for (int i = 0; i < dimensions; i++) chunk.putFloat(base + i * Float.BYTES, vector[i]);
+    }
+
+    private void mapChunk(int chunkIndex) {
+        long chunkBytes = (long) CHUNK_SLOTS * dimensions * Float.BYTES;
+        try {
+            MappedByteBuffer chunk = vectorChannel.map(FileChannel.MapMode.READ_WRITE, chunkIndex * chunkBytes, chunkBytes);
+            chunk.order(ByteOrder.LITTLE_ENDIAN);
+            MappedByteBuffer[] grown = Arrays.copyOf(chunks, chunkIndex + 1);
+            grown[chunkIndex] = chunk;
+            chunks = grown;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not map vector chunk " + chunkIndex, e);
+        }
+    }
+
+    /**
+     * Flushes mapped vectors to disk and writes the link structure to {@code out}. Callers must stop inserts first.
+     * <pre>
+     * int magic, short version, int dimensions, int m, int efConstruction, int count, int entry node, int entry level
+     * per node: int level, boolean deleted, per level: int link count, int[] links
+     * </pre>
+     */
+    public void write(DataOutputStream out) throws IOException {
+        for (MappedByteBuffer chunk : chunks) chunk.force();
+        EntryPoint ep = entry;
+        int n = count;
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeInt(dimensions);
+        out.writeInt(m);
+        out.writeInt(efConstruction);
+        out.writeInt(n);
+        out.writeInt(ep == null ? -1 : ep.node());
+        out.writeInt(ep == null ? -1 : ep.level());
+        for (int i = 0; i < n; i++) {
+            Node node = nodes[i];
+            out.writeInt(node.level);
+            out.writeBoolean(node.deleted);
+            for (int l = 0; l <= node.level; l++) {
+                int[] links = node.links.get(l);
+                out.writeInt(links.length);
+                for (int link : links) out.writeInt(link);
+            }
+        }
+    }
+
+    /**
+     * Restores an index written by {@link #write} over the vector file it was built with.
+     */
+    public static HnswIndex read(DataInputStream in, Path vectorFile) throws IOException {
+        if (in.readInt() != MAGIC) throw new IOException("Not an HNSW index");
+        short version = in.readShort();
+        if (version != VERSION) throw new IOException("Unsupported HNSW index version " + version);
+        HnswIndex index = new HnswIndex(vectorFile, in.readInt(), in.readInt(), in.readInt());
+        int n = in.readInt();
+        int entryNode = in.readInt();
+        int entryLevel = in.readInt();
+
+        long needed = (long) n * index.dimensions * Float.BYTES;
+        if (index.vectorChannel.size() < needed) {
+            index.close();
+            throw new IOException("Vector file " + vectorFile + " is shorter than the index expects");
+        }
+        for (int c = 0; c * CHUNK_SLOTS < n; c++) index.mapChunk(c);
+
+        Node[] nodes = new Node[Math.max(1024, Integer.highestOneBit(Math.max(1, n)) * 2)];
+        int deleted = 0;
+        for (int i = 0; i < n; i++) {
+            Node node = new Node(in.readInt());
+            node.deleted = in.readBoolean();
+            if (node.deleted) deleted++;
+            for (int l = 0; l <= node.level; l++) {
+                int[] links = new int[in.readInt()];
+                for (int j = 0; j < links.length; j++) links[j] = in.readInt();
+                node.links.set(l, links);
+            }
+            nodes[i] = node;
+        }
+        index.nodes = nodes;
+        index.count = n;
+        index.deletedCount = deleted;
+        index.entry = entryNode < 0 ? null : new EntryPoint(entryNode, entryLevel);
+        return index;
+    }
+
+    @Override
+    public void close() throws IOException {
+        vectorChannel.close();
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) sum += a[i] * b[i];
+        return sum;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) norm += v * v;
+        if (norm == 0) return vector.clone();
+        float scale = (float) (1 / Math.sqrt(norm));
+        float[] unit = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) unit[i] = vector[i] * scale;
+        return unit;
+    }
+}
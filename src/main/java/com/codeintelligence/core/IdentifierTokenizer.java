@@ -0,0 +1,117 @@
+package com.codeintelligence.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Splits source text and queries into lower-case search terms.
+ * <p>
+ * Every identifier yields itself plus its camelCase / snake_case / digit-boundary parts, so
+ * {@code scanDirectory} matches queries for "scanDirectory", "scan directory" and "directory".
+ */
+public final class IdentifierTokenizer {
+
+    // Words that carry no meaning in a question about code
+    private static final Set<String> QUERY_STOPWORDS = Set.of(
+        "a", "an", "and", "are", "as", "at", "be", "by", "call", "called", "calls", "code", "does", "do", "find",
+        "for", "from", "how", "i", "in", "is", "it", "me", "of", "on", "or", "show", "that", "the", "this", "to",
+        "use", "used", "uses", "what", "when", "where", "which", "who", "why", "with");
+
+    private IdentifierTokenizer() {
+    }
+
+    public static void tokenize(CharSequence text, Consumer<String> sink) {
+        forEachWord(text, (start, end) -> emitIdentifier(text, start, end, sink));
+    }
+
+    /**
+     * Identifiers in {@code text} as written, without splitting them.
+     */
+    public static List<String> words(CharSequence text) {
+        List<String> words = new ArrayList<>();
+        forEachWord(text, (start, end) -> words.add(text.subSequence(start, end).toString()));
+        return words;
+    }
+
+    private static void forEachWord(CharSequence text, WordSink sink) {
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (!Character.isJavaIdentifierStart(c)) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < length && Character.isJavaIdentifierPart(text.charAt(i))) i++;
+            sink.accept(start, i);
+        }
+    }
+
+    /**
+     * Terms of a natural-language question, without stopwords.
+     */
+    public static List<String> queryTerms(String query) {
+        List<String> terms = new ArrayList<>();
+        tokenize(query, term -> {
+            if (!QUERY_STOPWORDS.contains(term)) terms.add(term);
+        });
+        return terms;
+    }
+
+    /**
+     * Whether {@code word} is written like a code identifier rather than an English word:
+     * camelCase, snake_case or containing digits.
+     */
+    public static boolean looksLikeIdentifier(String word) {
+        boolean lower = false;
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c == '_' || Character.isDigit(c)) return word.length() > 1;
+            if (Character.isLowerCase(c)) lower = true;
+            else if (Character.isUpperCase(c) && lower) return true;
+        }
+        return false;
+    }
+
+    @FunctionalInterface
+    private interface WordSink {
+        void accept(int start, int end);
+    }
+
+    private static void emitIdentifier(CharSequence text, int start, int end, Consumer<String> sink) {
+        String whole = text.subSequence(start, end).toString().toLowerCase(Locale.ROOT);
+        sink.accept(whole);
+
+        int partStart = start;
+        for (int i = start + 1; i <= end; i++) {
+            if (i == end || isBoundary(text, i)) {
+                String part = trimUnderscores(text.subSequence(partStart, i).toString()).toLowerCase(Locale.ROOT);
+                if (!part.isEmpty() && !part.equals(whole)) sink.accept(part);
+                partStart = i;
+            }
+        }
+    }
+
+    private static boolean isBoundary(CharSequence text, int i) {
+        char previous = text.charAt(i - 1);
+        char current = text.charAt(i);
+        if (current == '_' || current == '$' || previous == '_' || previous == '$') return current != previous;
+        if (Character.isDigit(current) != Character.isDigit(previous)) return true;
+        if (Character.isUpperCase(current) && Character.isLowerCase(previous)) return true;
+        // "HTTPServer": the boundary is before the last capital of a run
+        return Character.isUpperCase(previous) && Character.isUpperCase(current)
+                && i + 1 < text.length() && Character.isLowerCase(text.charAt(i + 1));
+    }
+
+    private static String trimUnderscores(String s) {
+        int from = 0;
+        int to = s.length();
+        while (from < to && (s.charAt(from) == '_' || s.charAt(from) == '$')) from++;
+        while (to > from && (s.charAt(to - 1) == '_' || s.charAt(to - 1) == '$')) to--;
+        return s.substring(from, to);
+    }
+}
@@ -0,0 +1,127 @@
+package com.codeintelligence.core;
+
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DirectedMultigraph;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The original engine: a JGraphT multigraph with one {@link DependencyGraph.DependencyEdge} object per edge.
+ */
+final class JGraphTEngine implements GraphEngine {
+
+    // Per-object costs with compressed oops, used for the memory estimate:
+    // vertex map entry (LinkedHashMap.Entry 40) + DirectedEdgeContainer (24) + two ArrayUnenforcedSets (2 * 40)
+    private static final long BYTES_PER_NODE = 144;
+    // edge object (24) + edge map entry (40) + a slot in the source's and the target's edge set (2 * 4, amortized 2 * 6)
+    private static final long BYTES_PER_EDGE = 76;
+
+    private final Graph<String, DependencyGraph.DependencyEdge> graph = new DirectedMultigraph<>(DependencyGraph.DependencyEdge.class);
+    private long idBytes;
+
+    @Override
+    public void addNode(String id) {
+        if (graph.addVertex(id)) idBytes += GraphEngine.stringBytes(id);
+    }
+
+    @Override
+    public void addEdge(String fromId, String toId, DependencyGraph.DependencyType type) {
+        addNode(fromId);
+        addNode(toId);
+        graph.addEdge(fromId, toId, new DependencyGraph.DependencyEdge(type));
+    }
+
+    @Override
+    public void removeNodes(Collection<String> ids) {
+        for (String id : ids) {
+            if (graph.removeVertex(id)) idBytes -= GraphEngine.stringBytes(id);
+        }
+    }
+
+    @Override
+    public void removeOutgoing(Collection<String> ids) {
+        for (String id : ids) {
+            if (graph.containsVertex(id)) {
+                graph.removeAllEdges(List.copyOf(graph.outgoingEdgesOf(id)));
+            }
+        }
+    }
+
+    @Override
+    public List<String> incoming(String id) {
+        if (!graph.containsVertex(id)) return List.of();
+        return graph.incomingEdgesOf(id).stream()
+                .map(graph::getEdgeSource)
+                .toList();
+    }
+
+    @Override
+    public List<String> outgoing(String id) {
+        if (!graph.containsVertex(id)) return List.of();
+        return graph.outgoingEdgesOf(id).stream()
+                .map(graph::getEdgeTarget)
+                .toList();
+    }
+
+    @Override
+    public List<DependencyGraph.DependencyType> incomingTypes(String id) {
+        if (!graph.containsVertex(id)) return List.of();
+        return graph.incomingEdgesOf(id).stream()
+                .map(DependencyGraph.DependencyEdge::getType)
+                .toList();
+    }
+
+    @Override
+    public List<DependencyGraph.DependencyType> outgoingTypes(String id) {
+        if (!graph.containsVertex(id)) return List.of();
+        return graph.outgoingEdgesOf(id).stream()
+                .map(DependencyGraph.DependencyEdge::getType)
+                .toList();
+    }
+
+    @Override
+    public boolean containsNode(String id) {
+        return graph.containsVertex(id);
+    }
+
+    @Override
+    public void forEachNode(Consumer<String> consumer) {
+        graph.vertexSet().forEach(consumer);
+    }
+
+    @Override
+    public void forEachEdge(EdgeConsumer consumer) {
+        for (DependencyGraph.DependencyEdge edge : graph.edgeSet()) {
+            consumer.accept(graph.getEdgeSource(edge), graph.getEdgeTarget(edge), edge.getType());
+        }
+    }
+
+    @Override
+    public int nodeCount() {
+        return graph.vertexSet().size();
+    }
+
+    @Override
+    public long edgeCount() {
+        return graph.edgeSet().size();
+    }
+
+    @Override
+    public long estimatedBytes() {
+        return estimate(nodeCount(), edgeCount(), idBytes);
+    }
+
+    @Override
+    public long idBytes() {
+        return idBytes;
+    }
+
+    /**
+     * What a JGraphT graph of this shape would retain; lets the compact engine report its saving.
+     */
+    static long estimate(long nodes, long edges, long idBytes) {
+        return idBytes + nodes * BYTES_PER_NODE + edges * BYTES_PER_EDGE;
+    }
+}
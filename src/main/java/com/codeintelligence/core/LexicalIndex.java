@@ -0,0 +1,322 @@
+package com.codeintelligence.core;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over unit names, signatures and identifiers, scored with BM25.
+ * <p>
+ * Each unit is a document with three weighted fields: its simple name, its header (ID plus everything in the content
+ * before the first brace: annotations, modifiers, signature) and the rest of its content. Terms come from
+ * {@link IdentifierTokenizer}. A posting list is a byte array of varint pairs (document gap, weighted term frequency),
+ * so most postings take two bytes. Removed documents are tombstoned and dropped by a compaction once they outnumber
+ * live ones; until then they still count towards document frequencies.
+ * <p>
+ * Nothing is persisted: the index is rebuilt from the {@link ContentStore} on startup.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LexicalIndex {
+
+    public record Hit(String id, String name, double score) {
+    }
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int NAME_WEIGHT = 3;
+    private static final int HEADER_WEIGHT = 2;
+    private static final int BODY_WEIGHT = 1;
+    // Tombstones are cheap; a compaction is not worth it for a handful
+    private static final int MIN_COMPACT_DEAD = 1024;
+
+    private final ContentStore contentStore;
+
+    @Value("${codeintel.lexical.enabled:true}")
+    private boolean enabled;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    // Per ordinal; a null ID marks a removed document
+    private final List<String> ids = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+    private int[] lengths = new int[1024];
+    private long totalLength;
+    private int dead;
+
+    @PostConstruct
+    void init() {
+        if (!enabled) return;
+        long start = System.nanoTime();
+        contentStore.forEach(unit -> add(unit.id(), unit.name(), unit.content()));
+        log.info("Built lexical index over {} units ({} terms) in {} ms",
+                size(), termCount(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * An index with this one's settings over another content store, built from what that store already holds.
+     */
+    LexicalIndex sibling(ContentStore otherStore) {
+        LexicalIndex index = new LexicalIndex(otherStore);
+        index.enabled = enabled;
+        index.init();
+        return index;
+    }
+
+    public void add(CodeUnit unit) {
+        add(unit.id(), unit.name(), unit.content());
+    }
+
+    /**
+     * Indexes a unit; one indexed earlier under the same ID is replaced.
+     */
+    public void add(String id, String name, String content) {
+        if (!enabled) return;
+        Map<String, int[]> frequencies = new HashMap<>();
+        int headerEnd = content.indexOf('{');
+        if (headerEnd < 0) headerEnd = content.length();
+        int length = count(name, NAME_WEIGHT, frequencies)
+                + count(id, HEADER_WEIGHT, frequencies)
+                + count(content.substring(0, headerEnd), HEADER_WEIGHT, frequencies)
+                + count(content.substring(headerEnd), BODY_WEIGHT, frequencies);
+
+        lock.writeLock().lock();
+        try {
+            Integer previous = ordinals.get(id);
+            if (previous != null) tombstone(previous);
+            int ordinal = ids.size();
+            ids.add(id);
+            names.add(name);
+            if (ordinal == lengths.length) lengths = Arrays.copyOf(lengths, ordinal * 2);
+            lengths[ordinal] = length;
+            totalLength += length;
+            ordinals.put(id, ordinal);
+            frequencies.forEach((term, tf) -> postings.computeIfAbsent(term, t -> new Postings()).add(ordinal, tf[0]));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Collection<String> unitIds) {
+        if (!enabled || unitIds.isEmpty()) return;
+        lock.writeLock().lock();
+        try {
+            for (String id : unitIds) {
+                Integer ordinal = ordinals.remove(id);
+                if (ordinal != null) tombstone(ordinal);
+            }
+            if (dead >= MIN_COMPACT_DEAD && dead > ordinals.size()) compact();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drops every unit, e.g. before a full rebuild.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            ordinals.clear();
+            ids.clear();
+            names.clear();
+            lengths = new int[1024];
+            totalLength = 0;
+            dead = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The {@code k} best units for {@code query} by BM25, best first. Stopwords in the query are ignored.
+     */
+    public List<Hit> search(String query, int k) {
+        if (!enabled) return List.of();
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(IdentifierTokenizer.queryTerms(query)));
+        if (terms.isEmpty()) return List.of();
+
+        lock.readLock().lock();
+        try {
+            int documents = ordinals.size();
+            if (documents == 0) return List.of();
+            double averageLength = (double) totalLength / documents;
+            Map<Integer, double[]> scores = new HashMap<>();
+            for (String term : terms) {
+                Postings list = postings.get(term);
+                if (list == null) continue;
+                double idf = Math.log(1 + (documents - list.count + 0.5) / (list.count + 0.5));
+                list.forEach((ordinal, tf) -> {
+                    if (ids.get(ordinal) == null) return;
+                    double norm = K1 * (1 - B + B * lengths[ordinal] / averageLength);
+                    scores.computeIfAbsent(ordinal, o -> new double[1])[0] += idf * tf * (K1 + 1) / (tf + norm);
+                });
+            }
+
+            PriorityQueue<Map.Entry<Integer, double[]>> top = new PriorityQueue<>(
+                    Comparator.comparingDouble((Map.Entry<Integer, double[]> e) -> e.getValue()[0]));
+            for (Map.Entry<Integer, double[]> entry : scores.entrySet()) {
+                top.add(entry);
+                if (top.size() > k) top.poll();
+            }
+            List<Hit> hits = new ArrayList<>(top.size());
+            while (!top.isEmpty()) {
+                Map.Entry<Integer, double[]> entry = top.poll();
+                hits.add(new Hit(ids.get(entry.getKey()), names.get(entry.getKey()), entry.getValue()[0]));
+            }
+            return hits.reversed();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void tombstone(int ordinal) {
+        ids.set(ordinal, null);
+        names.set(ordinal, null);
+        totalLength -= lengths[ordinal];
+        dead++;
+    }
+
+    /**
+     * Renumbers live documents densely and rewrites every posting list without the removed ones.
+     */
+    private void compact() {
+        long start = System.nanoTime();
+        int[] remap = new int[ids.size()];
+        List<String> liveIds = new ArrayList<>(ordinals.size());
+        List<String> liveNames = new ArrayList<>(ordinals.size());
+        int[] liveLengths = new int[Math.max(1024, ordinals.size() * 2)];
+        for (int ordinal = 0; ordinal < ids.size(); ordinal++) {
+            String id = ids.get(ordinal);
+            if (id == null) {
+                remap[ordinal] = -1;
+                continue;
+            }
+            remap[ordinal] = liveIds.size();
+            liveLengths[liveIds.size()] = lengths[ordinal];
+            ordinals.put(id, liveIds.size());
+            liveIds.add(id);
+            liveNames.add(names.get(ordinal));
+        }
+
+        postings.replaceAll((term, list) -> {
+            Postings rewritten = new Postings();
+            list.forEach((ordinal, tf) -> {
+                if (remap[ordinal] >= 0) rewritten.add(remap[ordinal], tf);
+            });
+            return rewritten.count == 0 ? null : rewritten;
+        });
+        postings.values().removeIf(list -> list == null);
+
+        ids.clear();
+        ids.addAll(liveIds);
+        names.clear();
+        names.addAll(liveNames);
+        lengths = liveLengths;
+        dead = 0;
+        log.debug("Compacted lexical index to {} units in {} ms", ids.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static int count(String text, int weight, Map<String, int[]> frequencies) {
+        int[] tokens = {0};
+        IdentifierTokenizer.tokenize(text, term -> {
+            frequencies.computeIfAbsent(term, t -> new int[1])[0] += weight;
+            tokens[0] += weight;
+        });
+        return tokens[0];
+    }
+
+    @FunctionalInterface
+    private interface PostingVisitor {
+        void visit(int ordinal, int frequency);
+    }
+
+    /**
+     * Ascending ordinals, delta-encoded as varints alongside their frequencies.
+     */
+    private static final class Postings {
+        private byte[] data = new byte[8];
+        private int size;
+        private int lastOrdinal;
+        private int count;
+
+        void add(int ordinal, int frequency) {
+            if (data.length - size < 10) data = Arrays.copyOf(data, data.length * 2);
+            writeVarint(count == 0 ? ordinal : ordinal - lastOrdinal);
+            writeVarint(frequency);
+            lastOrdinal = ordinal;
+            count++;
+        }
+
+        void forEach(PostingVisitor visitor) {
+            int position = 0;
+            int ordinal = 0;
+            for (int i = 0; i < count; i++) {
+                int gap = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[position++];
+                    gap |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                int frequency = 0;
+                shift = 0;
+                do {
+                    b = data[position++];
+                    frequency |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                ordinal += gap;
+                visitor.visit(ordinal, frequency);
+            }
+        }
+
+        private void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                data[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.codeintelligence.core;
+
+import java.util.Arrays;
+
+/**
+ * Maps strings to dense int IDs (0, 1, 2, ...) with an open-addressing table of ints,
+ * avoiding the per-entry node objects and boxed integers of a {@code HashMap<String, Integer>}.
+ * IDs are never reused. Not thread-safe.
+ */
+final class StringDictionary {
+
+    private static final int EMPTY = -1;
+
+    private String[] names = new String[64];
+    private int[] table = newTable(128);
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    String name(int id) {
+        return names[id];
+    }
+
+    /**
+     * Returns the ID of {@code s}, or -1 if it was never interned.
+     */
+    int idOf(String s) {
+        int mask = table.length - 1;
+        for (int slot = mix(s.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+            int id = table[slot];
+            if (id == EMPTY) return EMPTY;
+            if (names[id].equals(s)) return id;
+        }
+    }
+
+    int intern(String s) {
+        int mask = table.length - 1;
+        int slot = mix(s.hashCode()) & mask;
+        for (; ; slot = (slot + 1) & mask) {
+            int id = table[slot];
+            if (id == EMPTY) break;
+            if (names[id].equals(s)) return id;
+        }
+
+        if (size == names.length) names = Arrays.copyOf(names, size + (size >> 1));
+        int id = size++;
+        names[id] = s;
+        table[slot] = id;
+        // Keep load factor under 0.5 so probe chains stay short
+        if (size * 2 > table.length) rehash();
+        return id;
+    }
+
+    long estimatedBytes(long idBytes) {
+        return 16 + 4L * table.length + 16 + 4L * names.length + idBytes;
+    }
+
+    private void rehash() {
+        int[] grown = newTable(table.length * 2);
+        int mask = grown.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = mix(names[id].hashCode()) & mask;
+            while (grown[slot] != EMPTY) slot = (slot + 1) & mask;
+            grown[slot] = id;
+        }
+        table = grown;
+    }
+
+    private static int[] newTable(int capacity) {
+        int[] t = new int[capacity];
+        Arrays.fill(t, EMPTY);
+        return t;
+    }
+
+    private static int mix(int h) {
+        // String hashes of similar FQNs cluster; spread them before masking
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,41 @@
+package com.codeintelligence.core;
+
+/**
+ * Estimates how many tokens a BPE tokenizer of the kind embedding and chat models use would turn text into,
+ * without depending on any one model's vocabulary.
+ * <p>
+ * Words cost one token per four characters, numbers one per three digits, each line break and each other
+ * non-blank character one; spaces and tabs are free because tokenizers fold them into the next token. Good enough to
+ * size budgets against, not to bill by.
+ */
+public final class TokenEstimator {
+
+    private TokenEstimator() {
+    }
+
+    public static int count(CharSequence text) {
+        int tokens = 0;
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (Character.isLetter(c) || c == '_' || c == '$') {
+                int start = i;
+                while (i < length && isWordPart(text.charAt(i))) i++;
+                tokens += (i - start + 3) / 4;
+            } else if (Character.isDigit(c)) {
+                int start = i;
+                while (i < length && Character.isDigit(text.charAt(i))) i++;
+                tokens += (i - start + 2) / 3;
+            } else {
+                if (c == '\n' || !Character.isWhitespace(c)) tokens++;
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isWordPart(char c) {
+        return Character.isLetter(c) || c == '_' || c == '$';
+    }
+}
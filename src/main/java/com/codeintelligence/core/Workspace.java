@@ -0,0 +1,17 @@
+package com.codeintelligence.core;
+
+/**
+ * One independently ingested project: its own graph, content store and lexical index, each with its own lock, and
+ * its own slice of the vector store, selected by the {@code workspace} metadata key.
+ */
+public record Workspace(String id, DependencyGraph graph, ContentStore contentStore, LexicalIndex lexicalIndex) {
+
+    /**
+     * The workspace requests without a workspace ID go to; backed by the configured graph and content store files.
+     */
+    public static final String DEFAULT = "default";
+
+    public boolean isDefault() {
+        return DEFAULT.equals(id);
+    }
+}
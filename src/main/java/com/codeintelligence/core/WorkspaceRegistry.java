@@ -0,0 +1,124 @@
+package com.codeintelligence.core;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Named {@link Workspace}s, created on first use. The default workspace wraps the application's own graph, content
+ * store and lexical index beans; every other one gets fresh instances with its files under
+ * {@code codeintel.workspace.dir/<id>/}. Workspaces found there on startup are reopened.
+ */
+@Component
+@Slf4j
+public class WorkspaceRegistry {
+
+    private static final Pattern ID = Pattern.compile("[a-z0-9][a-z0-9_-]{0,63}");
+
+    private final Workspace defaultWorkspace;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Workspace> workspaces = new ConcurrentHashMap<>();
+
+    @Value("${codeintel.workspace.dir:${user.home}/.code-intelligence/workspaces}")
+    private Path directory;
+
+    @Value("${codeintel.workspace.max:64}")
+    private int max;
+
+    public WorkspaceRegistry(DependencyGraph dependencyGraph, ContentStore contentStore, LexicalIndex lexicalIndex,
+                             MeterRegistry meterRegistry) {
+        this.defaultWorkspace = new Workspace(Workspace.DEFAULT, dependencyGraph, contentStore, lexicalIndex);
+        this.meterRegistry = meterRegistry;
+        workspaces.put(Workspace.DEFAULT, defaultWorkspace);
+    }
+
+    @PostConstruct
+    void init() throws IOException {
+        Gauge.builder("codeintel.workspaces", workspaces, Map::size)
+                .description("Workspaces open in this instance, the default one included")
+                .register(meterRegistry);
+        if (!Files.isDirectory(directory)) return;
+        try (Stream<Path> dirs = Files.list(directory)) {
+            for (Path dir : dirs.filter(Files::isDirectory).toList()) {
+                String id = dir.getFileName().toString();
+                if (ID.matcher(id).matches() && !id.equals(Workspace.DEFAULT)) get(id);
+            }
+        }
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        // The default workspace's store is a bean of its own and closed by the container
+        for (Workspace workspace : workspaces.values()) {
+            if (!workspace.isDefault()) workspace.contentStore().close();
+        }
+    }
+
+    public Workspace defaultWorkspace() {
+        return defaultWorkspace;
+    }
+
+    /**
+     * The workspace called {@code id}, created if it does not exist yet. A null or blank ID means the default one.
+     * Throws {@link IllegalArgumentException} for malformed IDs or once {@code codeintel.workspace.max} are open.
+     */
+    public Workspace get(String id) {
+        if (id == null || id.isBlank()) return defaultWorkspace;
+        Workspace existing = workspaces.get(id);
+        if (existing != null) return existing;
+        if (!ID.matcher(id).matches()) {
+            throw new IllegalArgumentException("Invalid workspace ID '" + id + "': use up to 64 of a-z, 0-9, '-' and '_'");
+        }
+        return workspaces.computeIfAbsent(id, this::open);
+    }
+
+    /**
+     * The workspace called {@code id} if it exists; never creates one.
+     */
+    public Optional<Workspace> find(String id) {
+        return Optional.ofNullable(id == null || id.isBlank() ? defaultWorkspace : workspaces.get(id));
+    }
+
+    public Collection<Workspace> all() {
+        return List.copyOf(workspaces.values());
+    }
+
+    /**
+     * Where a non-default workspace keeps its files.
+     */
+    public Path directory(String id) {
+        return directory.resolve(id);
+    }
+
+    private Workspace open(String id) {
+        if (workspaces.size() >= max) {
+            throw new IllegalArgumentException("Workspace limit of " + max + " reached");
+        }
+        try {
+            Path dir = directory(id);
+            Files.createDirectories(dir);
+            ContentStore contentStore = defaultWorkspace.contentStore().sibling(dir.resolve("content.seg"));
+            LexicalIndex lexicalIndex = defaultWorkspace.lexicalIndex().sibling(contentStore);
+            log.info("Opened workspace {} in {}", id, dir);
+            return new Workspace(id, defaultWorkspace.graph().sibling(), contentStore, lexicalIndex);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open workspace " + id, e);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.codeintelligence.ingestion;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Streams source entries out of a zip or tar.gz archive without extracting it.
+ * <p>
+ * Entries that {@link SourceFilter} accepts are decoded one at a time as the stream arrives; everything else is read
+ * past without being kept. Entry names are resolved against a root so parsed files keep their relative paths.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ArchiveReader {
+
+    private static final int BLOCK = 512;
+
+    private final SourceFilter sourceFilter;
+
+    /**
+     * Detects the archive format from its first bytes and returns a feed that reads the archive on demand.
+     * Throws {@link IllegalArgumentException} if the stream is neither zip nor gzip.
+     */
+    public IngestionPipeline.SourceFeed open(Path root, InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, 64 * 1024);
+        buffered.mark(2);
+        int first = buffered.read();
+        int second = buffered.read();
+        buffered.reset();
+
+        if (first == 'P' && second == 'K') {
+            return sink -> readZip(root, new ZipInputStream(buffered, StandardCharsets.UTF_8), sink);
+        }
+        if (first == 0x1f && second == 0x8b) {
+            return sink -> readTar(root, new BufferedInputStream(new GZIPInputStream(buffered, 64 * 1024), 64 * 1024), sink);
+        }
+        throw new IllegalArgumentException("Not a zip or tar.gz archive");
+    }
+
+    private void readZip(Path root, ZipInputStream zip, IngestionPipeline.SourceSink sink)
+            throws IOException, InterruptedException {
+        int count = 0;
+        for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+            // Unread entry data is inflated and discarded by the next getNextEntry()
+            Path file = entry.isDirectory() ? null : source(root, entry.getName(), entry.getSize());
+            if (file == null) continue;
+            String text = readText(zip, entry.getName());
+            if (text != null) {
+                sink.accept(file, text);
+                count++;
+            }
+        }
+        log.info("Read {} Java files from zip archive", count);
+    }
+
+    private void readTar(Path root, InputStream tar, IngestionPipeline.SourceSink sink)
+            throws IOException, InterruptedException {
+        int count = 0;
+        byte[] header = new byte[BLOCK];
+        String longName = null;
+        while (true) {
+            int read = tar.readNBytes(header, 0, BLOCK);
+            // Archives end with two zero blocks, but some writers stop at the first or omit them altogether
+            if (read == 0 || isZero(header)) break;
+            if (read < BLOCK) throw new EOFException("Truncated tar header");
+
+            long size = parseSize(header);
+            long padded = (size + BLOCK - 1) / BLOCK * BLOCK;
+            char type = (char) header[156];
+            String name = longName != null ? longName : headerName(header);
+            longName = null;
+
+            switch (type) {
+                // GNU long name or POSIX extended header: names the entry that follows
+                case 'L' -> {
+                    longName = trimNul(new String(readExactly(tar, size), StandardCharsets.UTF_8));
+                    tar.skipNBytes(padded - size);
+                }
+                case 'x' -> {
+                    longName = paxPath(readExactly(tar, size));
+                    tar.skipNBytes(padded - size);
+                }
+                case '0', '\0' -> {
+                    Path file = source(root, name, size);
+                    BoundedInput data = new BoundedInput(tar, size);
+                    String text = file == null ? null : readText(data, name);
+                    tar.skipNBytes(data.remaining + padded - size);
+                    if (text != null) {
+                        sink.accept(file, text);
+                        count++;
+                    }
+                }
+                default -> tar.skipNBytes(padded);
+            }
+        }
+        log.info("Read {} Java files from tar archive", count);
+    }
+
+    /**
+     * Where {@code name} lands under {@code root}, or null if it is not a source file the filter accepts.
+     */
+    private Path source(Path root, String name, long size) {
+        Path file = root.resolve(name.replace('\\', '/').replaceFirst("^/+", "")).normalize();
+        if (!file.startsWith(root) || file.equals(root)) return null;
+        return sourceFilter.accepts(root.relativize(file).toString().replace('\\', '/'), size) ? file : null;
+    }
+
+    // Null if the entry turns out larger than the filter allows; the caller skips whatever is left of it.
+    // Zip entries need not declare their size up front, and a zip bomb would otherwise inflate into memory here.
+    private String readText(InputStream in, String name) throws IOException {
+        int limit = (int) Math.min(sourceFilter.maxFileSize(), Integer.MAX_VALUE - 8);
+        byte[] bytes = in.readNBytes(limit + 1);
+        if (bytes.length > limit) {
+            log.warn("Skipping {}: larger than {} bytes", name, limit);
+            return null;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readExactly(InputStream in, long size) throws IOException {
+        if (size > 1 << 20) throw new IOException("Tar extended header of " + size + " bytes");
+        byte[] bytes = in.readNBytes((int) size);
+        if (bytes.length < size) throw new EOFException("Truncated tar entry");
+        return bytes;
+    }
+
+    private static String headerName(byte[] header) {
+        String name = field(header, 0, 100);
+        boolean ustar = field(header, 257, 6).startsWith("ustar");
+        String prefix = ustar ? field(header, 345, 155) : "";
+        return prefix.isEmpty() ? name : prefix + "/" + name;
+    }
+
+    private static long parseSize(byte[] header) throws IOException {
+        // GNU base-256 for sizes that do not fit 11 octal digits
+        if ((header[124] & 0x80) != 0) {
+            long size = 0;
+            for (int i = 125; i < 136; i++) size = (size << 8) | (header[i] & 0xff);
+            return size;
+        }
+        String octal = field(header, 124, 12).trim();
+        try {
+            return octal.isEmpty() ? 0 : Long.parseLong(octal, 8);
+        } catch (NumberFormatException e) {
+            throw new IOException("Corrupt tar header size: " + octal, e);
+        }
+    }
+
+    // Records are "<length> <key>=<value>\n"; only the path matters here
+    private static String paxPath(byte[] data) {
+        String path = null;
+        int at = 0;
+        while (at < data.length) {
+            int space = indexOf(data, (byte) ' ', at);
+            if (space < 0) break;
+            int length;
+            try {
+                length = Integer.parseInt(new String(data, at, space - at, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                break;
+            }
+            if (length <= 0 || at + length > data.length) break;
+            String record = new String(data, space + 1, at + length - space - 2, StandardCharsets.UTF_8);
+            if (record.startsWith("path=")) path = record.substring(5);
+            at += length;
+        }
+        return path;
+    }
+
+    private static int indexOf(byte[] data, byte b, int from) {
+        for (int i = from; i < data.length; i++) {
+            if (data[i] == b) return i;
+        }
+        return -1;
+    }
+
+    private static String field(byte[] header, int offset, int length) {
+        return trimNul(new String(header, offset, length, StandardCharsets.UTF_8));
+    }
+
+    private static String trimNul(String s) {
+        int nul = s.indexOf('\0');
+        return nul < 0 ? s : s.substring(0, nul);
+    }
+
+    private static boolean isZero(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * At most {@code remaining} bytes of the underlying stream, which is left open.
+     */
+    private static final class BoundedInput extends InputStream {
+
+        private final InputStream in;
+        private long remaining;
+
+        BoundedInput(InputStream in, long remaining) {
+            this.in = in;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            int b = in.read();
+            if (b >= 0) remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) return -1;
+            int n = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (n > 0) remaining -= n;
+            return n;
+        }
+    }
+}
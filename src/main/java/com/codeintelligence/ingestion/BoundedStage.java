@@ -0,0 +1,141 @@
+package com.codeintelligence.ingestion;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One stage of the ingestion pipeline: a bounded queue drained by a fixed number of workers.
+ * {@link #put(Object)} blocks while the queue is full, which is what propagates back-pressure upstream. Once the stage
+ * is aborted nothing drains the queue any more, so waiting callers are let go instead of blocking for good.
+ */
+@Slf4j
+final class BoundedStage<T> {
+
+    private static final Object END = new Object();
+    // How often a caller waiting on a full queue checks whether the stage was aborted
+    private static final long ABORT_CHECK_MILLIS = 100;
+
+    private final String name;
+    private final BlockingQueue<Object> queue;
+    private final int workers;
+    private final ExecutorService executor;
+    private final Handler<T> handler;
+    private final AtomicInteger running;
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private volatile boolean aborted;
+
+    @FunctionalInterface
+    interface Handler<T> {
+        void handle(T item) throws Exception;
+    }
+
+    BoundedStage(String name, int capacity, int workers, ExecutorService executor, Handler<T> handler) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.workers = workers;
+        this.executor = executor;
+        this.handler = handler;
+        this.running = new AtomicInteger(workers);
+    }
+
+    void start() {
+        for (int i = 0; i < workers; i++) {
+            executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * Hands an item to this stage, blocking while the queue is at capacity.
+     *
+     * @throws CancellationException if the stage is aborted before the item could be queued
+     */
+    void put(T item) throws InterruptedException {
+        if (!offer(item)) throw new CancellationException("Stage " + name + " was aborted");
+    }
+
+    /**
+     * Signals that no more items will arrive. Workers finish what is queued and then exit; after an abort there are
+     * none left to signal.
+     */
+    void close() throws InterruptedException {
+        for (int i = 0; i < workers; i++) {
+            if (!offer(END)) return;
+        }
+    }
+
+    void await() throws InterruptedException {
+        try {
+            completion.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Stage " + name + " failed", e.getCause());
+        }
+    }
+
+    void abort() {
+        aborted = true;
+        executor.shutdownNow();
+        completion.cancel(true);
+    }
+
+    String name() {
+        return name;
+    }
+
+    int depth() {
+        return queue.size();
+    }
+
+    long processed() {
+        return processed.get();
+    }
+
+    long failed() {
+        return failed.get();
+    }
+
+    // False once the stage is aborted, whether or not the queue still has room
+    private boolean offer(Object item) throws InterruptedException {
+        while (!aborted) {
+            if (queue.offer(item, ABORT_CHECK_MILLIS, TimeUnit.MILLISECONDS)) return true;
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void drain() {
+        try {
+            while (true) {
+                Object next = queue.take();
+                if (next == END) break;
+                try {
+                    handler.handle((T) next);
+                    processed.incrementAndGet();
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    // A single bad item must not stall the pipeline
+                    failed.incrementAndGet();
+                    log.warn("Stage {} failed to process item: {}", name, next, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (running.decrementAndGet() == 0) {
+                executor.shutdown();
+                completion.complete(null);
+            }
+        }
+    }
+}
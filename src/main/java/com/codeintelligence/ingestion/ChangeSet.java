@@ -0,0 +1,27 @@
+package com.codeintelligence.ingestion;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Difference between a source root on disk and its last manifest.
+ *
+ * @param current stat and hash of every file now on disk, keyed like the manifest
+ * @param removed manifest entries whose file no longer exists
+ */
+public record ChangeSet(
+    List<Path> added,
+    List<Path> changed,
+    Map<String, FileManifest.Entry> removed,
+    int unchanged,
+    Map<String, FileManifest.Entry> current
+) {
+
+    public record Summary(int added, int changed, int removed, int unchanged) {
+    }
+
+    public Summary summary() {
+        return new Summary(added.size(), changed.size(), removed.size(), unchanged);
+    }
+}
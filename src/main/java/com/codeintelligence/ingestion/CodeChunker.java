@@ -0,0 +1,235 @@
+package com.codeintelligence.ingestion;
+
+import com.codeintelligence.core.CodeUnit;
+import com.codeintelligence.core.TokenEstimator;
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.Statement;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Cuts code units into chunks that fit the embedding model's context, between the graph and embed stages.
+ * <p>
+ * A unit within {@code max-tokens} is a single chunk. A longer method is split between statements, descending into
+ * a block when one statement is too long on its own; anything else, such as the skeleton a class unit is reduced to
+ * by {@code codeintel.ingestion.elide-method-bodies}, is split between lines. Consecutive chunks share up to
+ * {@code overlap-tokens} of source, and every chunk after the first starts with a comment naming its unit.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CodeChunker {
+
+    /**
+     * One piece of a unit's content; {@code index} is its position among the unit's chunks.
+     */
+    public record Chunk(int index, String text, int tokens) {
+    }
+
+    private record Segment(String text, int tokens) {
+    }
+
+    private final JavaParser javaParser;
+    private final MeterRegistry meterRegistry;
+
+    // Only oversized methods are parsed again, on whichever embed worker picked them up
+    private final ThreadLocal<JavaParser> parsers = ThreadLocal.withInitial(this::newParser);
+
+    @Value("${codeintel.chunking.max-tokens:512}")
+    private int maxTokens = 512;
+
+    @Value("${codeintel.chunking.overlap-tokens:64}")
+    private int overlapTokens = 64;
+
+    // Also bounds the vector IDs deleted for a unit whose chunk count was not recorded, e.g. one from an archive
+    @Value("${codeintel.chunking.max-chunks:16}")
+    private int maxChunks = 16;
+
+    private DistributionSummary chunkTokens;
+    private Counter splitUnits;
+    private Counter truncatedUnits;
+
+    @PostConstruct
+    void init() {
+        chunkTokens = DistributionSummary.builder("codeintel.chunking.chunk.tokens")
+                .description("Estimated tokens per embedded chunk")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        splitUnits = Counter.builder("codeintel.chunking.split")
+                .description("Units longer than max-tokens that were embedded as several chunks")
+                .register(meterRegistry);
+        truncatedUnits = Counter.builder("codeintel.chunking.truncated")
+                .description("Units that needed more than max-chunks chunks; the rest of their content is not embedded")
+                .register(meterRegistry);
+    }
+
+    public int maxChunks() {
+        return maxChunks;
+    }
+
+    public List<Chunk> chunk(CodeUnit unit) {
+        String text = unit.content();
+        int tokens = TokenEstimator.count(text);
+        if (tokens <= maxTokens) {
+            chunkTokens.record(tokens);
+            return List.of(new Chunk(0, text, tokens));
+        }
+
+        String header = "// " + label(unit) + "\n";
+        int budget = Math.max(1, maxTokens - TokenEstimator.count(header));
+        String[] lines = text.split("(?<=\n)");
+        List<Segment> segments = new ArrayList<>();
+        MethodDeclaration method = unit instanceof CodeUnit.MethodUnit ? parseMethod(text) : null;
+        if (method != null) {
+            split(method, 1, lines.length, lines, budget, segments);
+        } else {
+            lines(lines, 1, lines.length, budget, segments);
+        }
+
+        List<Chunk> chunks = pack(segments, header, budget);
+        splitUnits.increment();
+        if (chunks.size() > maxChunks) {
+            truncatedUnits.increment();
+            log.debug("{} needs {} chunks; embedding the first {}", unit.id(), chunks.size(), maxChunks);
+            chunks = chunks.subList(0, maxChunks);
+        }
+        chunks.forEach(c -> chunkTokens.record(c.tokens()));
+        return chunks;
+    }
+
+    /**
+     * Splits lines {@code from} to {@code to} (1-based, inclusive) of {@code node} where its inner statements begin.
+     */
+    private void split(Node node, int from, int to, String[] lines, int budget, List<Segment> out) {
+        TreeMap<Integer, Statement> starts = new TreeMap<>();
+        for (Statement statement : innerStatements(node)) {
+            statement.getBegin().ifPresent(p -> {
+                if (p.line > from && p.line <= to) starts.putIfAbsent(p.line, statement);
+            });
+        }
+        if (starts.isEmpty()) {
+            lines(lines, from, to, budget, out);
+            return;
+        }
+        // The first piece is whatever precedes the first statement: the signature, or the head of a loop or try
+        int start = from;
+        Statement statement = null;
+        for (Map.Entry<Integer, Statement> next : starts.entrySet()) {
+            piece(statement, start, next.getKey() - 1, lines, budget, out);
+            start = next.getKey();
+            statement = next.getValue();
+        }
+        piece(statement, start, to, lines, budget, out);
+    }
+
+    private void piece(Statement statement, int from, int to, String[] lines, int budget, List<Segment> out) {
+        Segment segment = segment(lines, from, to);
+        if (segment.tokens() <= budget) {
+            out.add(segment);
+        } else if (statement != null) {
+            split(statement, from, to, lines, budget, out);
+        } else {
+            lines(lines, from, to, budget, out);
+        }
+    }
+
+    private static void lines(String[] lines, int from, int to, int budget, List<Segment> out) {
+        for (int line = from; line <= to; line++) {
+            String text = lines[line - 1];
+            int tokens = TokenEstimator.count(text);
+            if (tokens <= budget) {
+                out.add(new Segment(text, tokens));
+                continue;
+            }
+            // No character is estimated at more than one token, so pieces of budget characters always fit
+            for (int at = 0; at < text.length(); at += budget) {
+                String part = text.substring(at, Math.min(text.length(), at + budget));
+                out.add(new Segment(part, TokenEstimator.count(part)));
+            }
+        }
+    }
+
+    private List<Chunk> pack(List<Segment> segments, String header, int budget) {
+        List<Chunk> chunks = new ArrayList<>();
+        List<Segment> current = new ArrayList<>();
+        int tokens = 0;
+        for (Segment segment : segments) {
+            if (!current.isEmpty() && tokens + segment.tokens() > budget) {
+                chunks.add(chunk(chunks.size(), header, current));
+                // Carry the tail over, so a piece cut off from what precedes it keeps some of that context
+                List<Segment> tail = new ArrayList<>();
+                int carried = 0;
+                for (int i = current.size() - 1; i >= 0; i--) {
+                    int t = current.get(i).tokens();
+                    if (carried + t > overlapTokens || carried + t + segment.tokens() > budget) break;
+                    tail.addFirst(current.get(i));
+                    carried += t;
+                }
+                current = tail;
+                tokens = carried;
+            }
+            current.add(segment);
+            tokens += segment.tokens();
+        }
+        chunks.add(chunk(chunks.size(), header, current));
+        return chunks;
+    }
+
+    private static Chunk chunk(int index, String header, List<Segment> segments) {
+        StringBuilder text = new StringBuilder(index == 0 ? "" : header);
+        segments.forEach(s -> text.append(s.text()));
+        return new Chunk(index, text.toString(), TokenEstimator.count(text));
+    }
+
+    private static Segment segment(String[] lines, int from, int to) {
+        StringBuilder text = new StringBuilder();
+        for (int line = from; line <= to; line++) text.append(lines[line - 1]);
+        return new Segment(text.toString(), TokenEstimator.count(text));
+    }
+
+    /**
+     * Statements directly inside {@code node}: a block's statements, a branch or loop body, and the bodies of
+     * lambdas and anonymous classes in its expressions.
+     */
+    private static List<Statement> innerStatements(Node node) {
+        List<Statement> inner = new ArrayList<>();
+        for (Node child : node.getChildNodes()) {
+            if (child instanceof BlockStmt block) {
+                inner.addAll(block.getStatements());
+            } else if (child instanceof Statement statement) {
+                inner.add(statement);
+            } else {
+                inner.addAll(innerStatements(child));
+            }
+        }
+        return inner;
+    }
+
+    private MethodDeclaration parseMethod(String text) {
+        ParseResult<MethodDeclaration> result = parsers.get().parseMethodDeclaration(text);
+        return result.isSuccessful() ? result.getResult().orElse(null) : null;
+    }
+
+    private JavaParser newParser() {
+        return new JavaParser(javaParser.getParserConfiguration());
+    }
+
+    private static String label(CodeUnit unit) {
+        return unit instanceof CodeUnit.MethodUnit m ? m.parentClassId() + "#" + m.signature() : unit.id();
+    }
+}
@@ -1,6 +0,0 @@
-package com.codeintelligence.ingestion;
-
-import com.codeintelligence.core.CodeUnit;
-
-public record CodeParsedEvent(CodeUnit codeUnit) {
-}
@@ -0,0 +1,508 @@
+package com.codeintelligence.ingestion;
+
+import com.codeintelligence.core.DependencyGraph;
+import com.codeintelligence.core.DependencyGraph.DependencyType;
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.ImportDeclaration;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.expr.ThisExpr;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import com.github.javaparser.ast.type.Type;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.resolution.types.ResolvedType;
+import com.github.javaparser.symbolsolver.JavaSymbolSolver;
+import com.github.javaparser.symbolsolver.javaparsermodel.JavaParserFacade;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.JarTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.JavaParserTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Second ingestion pass that adds CALLS, EXTENDS, IMPLEMENTS and INJECTS edges once every node exists.
+ * <p>
+ * Files are re-parsed in parallel with a project-aware type solver (source roots, jars under the project outside
+ * directories that {@link SourceFilter} skips, jars on {@code codeintel.resolution.classpath}, then the JRE), or
+ * against the sources themselves when they were ingested from memory rather than disk. JavaParser's solvers are not
+ * thread-safe, so each worker gets its own solver stack; what they resolve is memoized in maps shared by all workers
+ * for the run. Only edges whose target is a node of this project are added.
+ * <p>
+ * JavaParser caches a facade per solver in a static map that never lets go of them, so once the last concurrent run
+ * ends the cache is cleared; otherwise every run would keep its jars and parsed sources on the heap for good.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EdgeResolver {
+
+    private static final Set<String> STEREOTYPES = Set.of(
+        "Component", "Service", "Repository", "Controller", "RestController", "Configuration");
+    private static final Set<String> INJECTION_ANNOTATIONS = Set.of("Autowired", "Inject", "Resource");
+    private static final String EXTERNAL = "";
+    // Runs in progress across all workspaces, since the facade cache they fill is static
+    private static final AtomicInteger RUNS = new AtomicInteger();
+
+    private final SourceFilter sourceFilter;
+
+    @Value("${codeintel.resolution.enabled:true}")
+    private boolean enabled;
+
+    // Extra jars or directories of jars to resolve against, e.g. a dependency cache
+    @Value("${codeintel.resolution.classpath:}")
+    private String classpath;
+
+    @Value("${codeintel.resolution.jar-scan-depth:6}")
+    private int jarScanDepth;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Resolves edges for {@code unitsByFile}'s files, which must already be in {@code graph} as nodes.
+     */
+    public ResolutionStats resolve(DependencyGraph graph, Path root, Map<Path, List<String>> unitsByFile, int threads)
+            throws InterruptedException {
+        return resolve(graph, root, unitsByFile, null, threads);
+    }
+
+    /**
+     * Same, for files that are not on disk (e.g. archive entries) when {@code sources} is non-null: files are read
+     * from it and project types are solved from the same texts instead of from source roots under {@code root}.
+     */
+    public ResolutionStats resolve(DependencyGraph graph, Path root, Map<Path, List<String>> unitsByFile,
+                                   Map<Path, String> sources, int threads) throws InterruptedException {
+        long start = System.nanoTime();
+        Run run = sources == null
+                ? new Run(graph, sourceRoots(root, unitsByFile), jars(root), null, Map.of())
+                : new Run(graph, Set.of(), jars(null), sources, filesByType(unitsByFile));
+        log.info("Resolving edges for {} files with {} source roots and {} jars",
+                unitsByFile.size(), run.sourceRoots.size(), run.jars.size());
+
+        BoundedStage<Path> stage = new BoundedStage<>("resolve", 1024, threads,
+            Executors.newFixedThreadPool(threads, Thread.ofPlatform().name("ingest-resolve-", 0).factory()),
+            run::resolveFile);
+        RUNS.incrementAndGet();
+        try {
+            stage.start();
+            for (Path file : unitsByFile.keySet()) {
+                stage.put(file);
+            }
+            stage.close();
+            stage.await();
+        } finally {
+            // Stops the workers if feeding them was interrupted; a no-op once they are done
+            stage.abort();
+            if (RUNS.decrementAndGet() == 0) clearFacades();
+        }
+
+        ResolutionStats stats = new ResolutionStats(
+            stage.processed(),
+            run.attempted.get(),
+            run.unresolved.get(),
+            run.edges.get(DependencyType.CALLS).get(),
+            run.edges.get(DependencyType.EXTENDS).get(),
+            run.edges.get(DependencyType.IMPLEMENTS).get(),
+            run.edges.get(DependencyType.INJECTS).get(),
+            (System.nanoTime() - start) / 1_000_000
+        );
+        log.info("Edge resolution: {} ({} files/s, {}% unresolved)", stats,
+                Math.round(stats.filesPerSecond()), Math.round(stats.unresolvedRate() * 100));
+        return stats;
+    }
+
+    // get() is synchronized on the class but clearInstances() is not, and parsers elsewhere may be resolving
+    private static void clearFacades() {
+        synchronized (JavaParserFacade.class) {
+            JavaParserFacade.clearInstances();
+        }
+    }
+
+    /**
+     * A file's source root is its directory minus the package path; conventional Maven/Gradle roots are added too.
+     */
+    private static Set<Path> sourceRoots(Path root, Map<Path, List<String>> unitsByFile) {
+        Set<Path> roots = new LinkedHashSet<>();
+        unitsByFile.forEach((file, ids) -> {
+            if (ids.isEmpty()) return;
+            String id = ids.get(0);
+            String typeId = id.contains("#") ? id.substring(0, id.indexOf('#')) : id;
+            int lastDot = typeId.lastIndexOf('.');
+            String packagePath = lastDot <= 0 ? "" : typeId.substring(0, lastDot).replace('.', '/');
+            Path dir = file.getParent();
+            if (packagePath.isEmpty()) {
+                roots.add(dir);
+            } else if (dir.toString().replace('\\', '/').endsWith(packagePath)) {
+                Path candidate = dir;
+                for (int i = 0; i < packagePath.split("/").length; i++) candidate = candidate.getParent();
+                roots.add(candidate);
+            }
+        });
+        try (Stream<Path> dirs = Files.walk(root, 4)) {
+            dirs.filter(Files::isDirectory)
+                .filter(d -> d.endsWith(Path.of("src", "main", "java")) || d.endsWith(Path.of("src", "test", "java")))
+                .forEach(roots::add);
+        } catch (IOException e) {
+            log.debug("Could not scan {} for source roots", root, e);
+        }
+        return roots;
+    }
+
+    private static Map<String, Path> filesByType(Map<Path, List<String>> unitsByFile) {
+        Map<String, Path> files = new HashMap<>();
+        unitsByFile.forEach((file, ids) -> ids.stream().filter(id -> !id.contains("#")).forEach(id -> files.put(id, file)));
+        return files;
+    }
+
+    // A null root only scans the configured classpath
+    private List<Path> jars(Path root) {
+        List<Path> jars = new ArrayList<>();
+        List<Path> locations = new ArrayList<>();
+        for (String entry : classpath == null ? new String[0] : classpath.split(",")) {
+            if (!entry.isBlank()) locations.add(Path.of(entry.trim()));
+        }
+        for (Path location : locations) {
+            if (location.toString().endsWith(".jar")) {
+                jars.add(location);
+                continue;
+            }
+            scanJars(location, jar -> true, jars);
+        }
+        // Each worker opens every jar, so skip the project's own build output and anything else discovery skips
+        if (root != null) {
+            scanJars(root, jar -> sourceFilter.acceptsDirectoriesOf(root.relativize(jar).toString().replace('\\', '/')), jars);
+        }
+        return jars;
+    }
+
+    private void scanJars(Path location, Predicate<Path> accept, List<Path> jars) {
+        try (Stream<Path> files = Files.walk(location, jarScanDepth)) {
+            files.filter(f -> f.toString().endsWith(".jar")).filter(accept).forEach(jars::add);
+        } catch (IOException e) {
+            log.debug("Could not scan {} for jars", location, e);
+        }
+    }
+
+    /**
+     * State for one resolution pass. Memo maps are shared by all workers; solver stacks are per worker thread.
+     */
+    private final class Run {
+
+        private final DependencyGraph graph;
+        private final Set<String> nodes;
+        private final Map<String, List<String>> typesBySimpleName;
+        private final Set<Path> sourceRoots;
+        private final List<Path> jars;
+        // In-memory sources and where each project type is declared; null and empty for runs over files on disk
+        private final Map<Path, String> sources;
+        private final Map<String, Path> filesByType;
+
+        // "<package>;<imports>|<type name>" -> project type ID, EXTERNAL, or absent while unresolved
+        private final Map<String, String> typeMemo = new ConcurrentHashMap<>();
+        // "<qualified type>#<method>" -> project type ID declaring it, or EXTERNAL
+        private final Map<String, String> ownerMemo = new ConcurrentHashMap<>();
+
+        private final AtomicLong attempted = new AtomicLong();
+        private final AtomicLong unresolved = new AtomicLong();
+        private final Map<DependencyType, AtomicLong> edges = new HashMap<>();
+
+        private final ThreadLocal<Solver> solvers = ThreadLocal.withInitial(this::newSolver);
+
+        Run(DependencyGraph graph, Set<Path> sourceRoots, List<Path> jars,
+            Map<Path, String> sources, Map<String, Path> filesByType) {
+            List<String> nodeIds = graph.nodeIds();
+            this.graph = graph;
+            this.nodes = Set.copyOf(nodeIds);
+            this.typesBySimpleName = nodeIds.stream()
+                    .filter(id -> !id.contains("#"))
+                    .collect(Collectors.groupingBy(id -> id.substring(id.lastIndexOf('.') + 1)));
+            this.sourceRoots = sourceRoots;
+            this.jars = jars;
+            this.sources = sources;
+            this.filesByType = filesByType;
+            for (DependencyType type : DependencyType.values()) edges.put(type, new AtomicLong());
+        }
+
+        private Solver newSolver() {
+            CombinedTypeSolver typeSolver = new CombinedTypeSolver();
+            typeSolver.add(new ReflectionTypeSolver(true));
+            for (Path sourceRoot : sourceRoots) {
+                typeSolver.add(new JavaParserTypeSolver(sourceRoot));
+            }
+            if (sources != null) {
+                typeSolver.add(new SourceMapTypeSolver(filesByType, sources));
+            }
+            for (Path jar : jars) {
+                try {
+                    typeSolver.add(new JarTypeSolver(jar));
+                } catch (IOException e) {
+                    log.debug("Skipping unreadable jar {}", jar, e);
+                }
+            }
+            ParserConfiguration configuration = new ParserConfiguration();
+            configuration.setSymbolResolver(new JavaSymbolSolver(typeSolver));
+            return new Solver(typeSolver, new JavaParser(configuration), JavaParserFacade.get(typeSolver));
+        }
+
+        void resolveFile(Path file) throws IOException {
+            Solver solver = solvers.get();
+            ParseResult<CompilationUnit> result;
+            if (sources == null) {
+                result = solver.parser().parse(file);
+            } else {
+                String text = sources.get(file);
+                if (text == null) return;
+                result = solver.parser().parse(text);
+            }
+            if (!result.isSuccessful() || result.getResult().isEmpty()) return;
+
+            CompilationUnit cu = result.getResult().get();
+            String packageName = cu.getPackageDeclaration().map(p -> p.getName().asString()).orElse("");
+            Context context = new Context(packageName, cu.getImports());
+            // The file's edges go into the graph in one write once it is resolved
+            DependencyGraph.Batch batch = new DependencyGraph.Batch();
+
+            for (ClassOrInterfaceDeclaration c : cu.findAll(ClassOrInterfaceDeclaration.class)) {
+                String classId = packageName + "." + c.getNameAsString();
+
+                for (ClassOrInterfaceType extended : c.getExtendedTypes()) {
+                    link(batch, classId, resolveType(context, extended.getNameWithScope(), solver), DependencyType.EXTENDS);
+                }
+                for (ClassOrInterfaceType implemented : c.getImplementedTypes()) {
+                    link(batch, classId, resolveType(context, implemented.getNameWithScope(), solver), DependencyType.IMPLEMENTS);
+                }
+                for (String injected : injectedTypes(c)) {
+                    link(batch, classId, resolveType(context, injected, solver), DependencyType.INJECTS);
+                }
+                if (!c.isInterface()) {
+                    for (MethodDeclaration m : c.getMethods()) {
+                        resolveCalls(batch, context, c, classId, m, solver);
+                    }
+                }
+            }
+
+            graph.apply(batch);
+            for (DependencyGraph.Edge edge : batch.edges()) {
+                edges.get(edge.type()).incrementAndGet();
+            }
+        }
+
+        private void resolveCalls(DependencyGraph.Batch batch, Context context, ClassOrInterfaceDeclaration c,
+                                  String classId, MethodDeclaration m, Solver solver) {
+            String callerId = classId + "#" + m.getNameAsString();
+
+            for (MethodCallExpr call : m.findAll(MethodCallExpr.class)) {
+                attempted.incrementAndGet();
+                String name = call.getNameAsString();
+                Optional<Expression> scope = call.getScope();
+                try {
+                    String owner;
+                    if (scope.isEmpty() || scope.get() instanceof ThisExpr) {
+                        owner = nodes.contains(classId + "#" + name)
+                                ? classId
+                                : ownerOf(solver.facade().getTypeDeclaration(c), name);
+                    } else {
+                        owner = ownerOfScope(context, scope.get(), name, solver);
+                    }
+                    if (owner == null) {
+                        unresolved.incrementAndGet();
+                    } else if (!owner.equals(EXTERNAL) && nodes.contains(owner + "#" + name)) {
+                        batch.edge(callerId, owner + "#" + name, DependencyType.CALLS);
+                    }
+                } catch (RuntimeException e) {
+                    // JavaParser signals unsolvable symbols with a variety of unchecked exceptions
+                    unresolved.incrementAndGet();
+                }
+            }
+        }
+
+        private String ownerOfScope(Context context, Expression scope, String method, Solver solver) {
+            // Static calls on a type name: Foo.bar()
+            if (scope instanceof NameExpr nameExpr && Character.isUpperCase(nameExpr.getNameAsString().charAt(0))) {
+                String type = resolveTypeQuietly(context, nameExpr.getNameAsString(), solver);
+                if (type != null && !type.equals(EXTERNAL)) {
+                    return nodes.contains(type + "#" + method) ? type : EXTERNAL;
+                }
+            }
+            ResolvedType type = solver.facade().getType(scope);
+            if (!type.isReferenceType()) return EXTERNAL;
+            Optional<ResolvedReferenceTypeDeclaration> declaration = type.asReferenceType().getTypeDeclaration();
+            return declaration.map(d -> ownerOf(d, method)).orElse(null);
+        }
+
+        /**
+         * Which type declares {@code method} as seen from {@code type}, walking its ancestors. Memoized per run.
+         */
+        private String ownerOf(ResolvedReferenceTypeDeclaration type, String method) {
+            String key = type.getQualifiedName() + "#" + method;
+            String cached = ownerMemo.get(key);
+            if (cached != null) return cached;
+
+            String owner = type.getAllMethods().stream()
+                    .filter(usage -> usage.getName().equals(method))
+                    .map(usage -> projectId(usage.declaringType()))
+                    .filter(id -> nodes.contains(id + "#" + method))
+                    .findFirst()
+                    .orElse(EXTERNAL);
+            ownerMemo.put(key, owner);
+            return owner;
+        }
+
+        private void link(DependencyGraph.Batch batch, String fromId, String toId, DependencyType type) {
+            if (toId != null && !toId.equals(EXTERNAL) && !toId.equals(fromId)) {
+                batch.edge(fromId, toId, type);
+            }
+        }
+
+        private String resolveType(Context context, String name, Solver solver) {
+            attempted.incrementAndGet();
+            String resolved = resolveTypeQuietly(context, name, solver);
+            if (resolved == null) unresolved.incrementAndGet();
+            return resolved;
+        }
+
+        /**
+         * Maps a type name as written in source to a project type ID, {@link #EXTERNAL}, or null if unknown.
+         */
+        private String resolveTypeQuietly(Context context, String name, Solver solver) {
+            String key = context.key() + "|" + name;
+            String cached = typeMemo.get(key);
+            if (cached != null) return cached;
+
+            // Names as written may be qualified by a package or an enclosing type: Outer.Inner scopes on Outer
+            int dot = name.indexOf('.');
+            String first = dot < 0 ? name : name.substring(0, dot);
+            String rest = dot < 0 ? "" : name.substring(dot);
+            // A fully qualified name or a single-type import shadows everything in scope by package or wildcard
+            List<String> explicit = new ArrayList<>();
+            if (dot >= 0) explicit.add(name);
+            List<String> imported = context.imports().stream().filter(i -> i.endsWith("." + first)).toList();
+            imported.forEach(i -> explicit.add(i + rest));
+            List<String> implicit = new ArrayList<>();
+            implicit.add(context.packageName().isEmpty() ? name : context.packageName() + "." + name);
+            context.wildcards().forEach(w -> implicit.add(w + "." + name));
+            implicit.add("java.lang." + name);
+
+            String resolved = firstSolved(explicit, solver);
+            if (resolved == null) resolved = firstSolved(implicit, solver);
+            if (resolved == null && imported.isEmpty()) {
+                // Nested types are indexed as <package>.<Simple>; accept an unambiguous simple-name match unless
+                // an import says the name means something else
+                List<String> bySimple = typesBySimpleName.getOrDefault(name.substring(name.lastIndexOf('.') + 1), List.of());
+                if (bySimple.size() == 1) resolved = bySimple.get(0);
+            }
+            if (resolved != null) typeMemo.put(key, resolved);
+            return resolved;
+        }
+
+        /**
+         * The first candidate that names a project type, or {@link #EXTERNAL} if the solver knows it, in order.
+         */
+        private String firstSolved(List<String> candidates, Solver solver) {
+            for (String candidate : candidates) {
+                String project = projectType(candidate);
+                if (project != null) return project;
+                if (solver.typeSolver().hasType(candidate)) return EXTERNAL;
+            }
+            return null;
+        }
+
+        /**
+         * The project type ID for a qualified name, mapping a nested type's {@code a.b.Outer.Inner} to {@code a.b.Inner}.
+         */
+        private String projectType(String qualified) {
+            if (nodes.contains(qualified)) return qualified;
+            String simple = qualified.substring(qualified.lastIndexOf('.') + 1);
+            for (String id : typesBySimpleName.getOrDefault(simple, List.of())) {
+                String packagePrefix = id.substring(0, id.lastIndexOf('.') + 1);
+                if (qualified.length() > id.length() && qualified.startsWith(packagePrefix)
+                        && Character.isUpperCase(qualified.charAt(packagePrefix.length()))) {
+                    return id;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Type names that Spring (or Lombok-generated constructors) will inject into {@code c}.
+     */
+    private static List<String> injectedTypes(ClassOrInterfaceDeclaration c) {
+        List<String> types = new ArrayList<>();
+        boolean managed = c.getAnnotations().stream().anyMatch(a -> STEREOTYPES.contains(a.getNameAsString()));
+        boolean requiredArgs = c.isAnnotationPresent("RequiredArgsConstructor");
+        boolean allArgs = c.isAnnotationPresent("AllArgsConstructor");
+
+        for (FieldDeclaration field : c.getFields()) {
+            if (field.isStatic()) continue;
+            boolean annotated = field.getAnnotations().stream().anyMatch(a -> INJECTION_ANNOTATIONS.contains(a.getNameAsString()));
+            boolean viaConstructor = managed && (allArgs || (requiredArgs && field.isFinal()));
+            if (annotated || viaConstructor) {
+                field.getVariables().forEach(v -> typeName(v.getType()).ifPresent(types::add));
+            }
+        }
+        if (managed) {
+            for (ConstructorDeclaration constructor : c.getConstructors()) {
+                constructor.getParameters().forEach(p -> typeName(p.getType()).ifPresent(types::add));
+            }
+        }
+        return types;
+    }
+
+    private static Optional<String> typeName(Type type) {
+        return type.isClassOrInterfaceType()
+                ? Optional.of(type.asClassOrInterfaceType().getNameWithScope())
+                : Optional.empty();
+    }
+
+    /**
+     * Same ID strategy as {@link JavaParserService}: package plus simple name, even for nested types.
+     */
+    private static String projectId(ResolvedReferenceTypeDeclaration type) {
+        return type.getPackageName().isEmpty() ? type.getName() : type.getPackageName() + "." + type.getName();
+    }
+
+    private record Solver(CombinedTypeSolver typeSolver, JavaParser parser, JavaParserFacade facade) {
+    }
+
+    private record Context(String packageName, List<String> imports, List<String> wildcards, String key) {
+
+        Context(String packageName, Collection<ImportDeclaration> declarations) {
+            this(packageName,
+                declarations.stream().filter(i -> !i.isAsterisk() && !i.isStatic()).map(ImportDeclaration::getNameAsString).toList(),
+                declarations.stream().filter(i -> i.isAsterisk() && !i.isStatic()).map(ImportDeclaration::getNameAsString).toList(),
+                packageName + ";" + declarations.stream().map(ImportDeclaration::getNameAsString).sorted().collect(Collectors.joining(",")));
+        }
+    }
+}
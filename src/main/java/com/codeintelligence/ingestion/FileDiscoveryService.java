@@ -1,55 +1,180 @@
 package com.codeintelligence.ingestion;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
-import java.nio.file.FileVisitResult;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Walks a source tree in parallel, one fork-join task per directory, and hands each accepted file to the sink as
+ * soon as it is seen. What counts as a source file is up to {@link SourceFilter}, plus any {@code .gitignore}
+ * files inside the tree; ignored directories are not descended into.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class FileDiscoveryService {
 
-    private final ApplicationEventPublisher eventPublisher;
+    private final SourceFilter sourceFilter;
 
-    public int scanDirectory(Path startPath) {
-        log.info("Starting scan of directory: {}", startPath);
-        AtomicInteger count = new AtomicInteger(0);
+    // 0 means one walker thread per available core
+    @Value("${codeintel.discovery.parallelism:0}")
+    private int parallelism;
+
+    private ForkJoinPool pool;
+
+    /**
+     * Receives discovered files. May block, which pauses the walk until downstream catches up.
+     * Called from several walker threads at once.
+     */
+    @FunctionalInterface
+    public interface PathSink {
+        void accept(Path file) throws InterruptedException;
+    }
+
+    @PostConstruct
+    void init() {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        AtomicInteger ids = new AtomicInteger();
+        pool = new ForkJoinPool(threads, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("discover-" + ids.getAndIncrement());
+            return thread;
+        }, null, false);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
 
+    /**
+     * Streams every accepted file under {@code startPath} into {@code sink} and returns how many there were.
+     * Stops early, with the interrupt flag set, if the sink or the caller is interrupted.
+     */
+    public int scanDirectory(Path startPath, PathSink sink) {
+        log.info("Starting scan of directory: {}", startPath);
+        Walk walk = new Walk(startPath, sink);
         try {
-            Files.walkFileTree(startPath, new SimpleFileVisitor<Path>() {
-                @Override
-                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-                    if (file.toString().endsWith(".java")) {
-                        eventPublisher.publishEvent(new SourceFileFoundEvent(file.toFile()));
-                        count.incrementAndGet();
+            pool.submit(walk.new DirectoryTask(startPath, IgnoreRules.NONE)).get();
+        } catch (InterruptedException e) {
+            walk.stopped = true;
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                log.error("Error scanning directory", io.getCause());
+                throw new RuntimeException("Failed to scan directory", io.getCause());
+            }
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            throw new RuntimeException("Failed to scan directory", e.getCause());
+        }
+        if (walk.interrupted) Thread.currentThread().interrupt();
+
+        log.info("Scan complete. Found {} Java files.", walk.count.get());
+        return walk.count.get();
+    }
+
+    /**
+     * State shared by the tasks of one scan.
+     */
+    private final class Walk {
+
+        private final Path root;
+        private final PathSink sink;
+        private final AtomicInteger count = new AtomicInteger();
+        private volatile boolean stopped;
+        private volatile boolean interrupted;
+
+        Walk(Path root, PathSink sink) {
+            this.root = root;
+            this.sink = sink;
+        }
+
+        private final class DirectoryTask extends RecursiveAction {
+
+            private final Path dir;
+            private final IgnoreRules inherited;
+
+            DirectoryTask(Path dir, IgnoreRules inherited) {
+                this.dir = dir;
+                this.inherited = inherited;
+            }
+
+            @Override
+            protected void compute() {
+                String base = relative(dir);
+                IgnoreRules rules = sourceFilter.honoursGitignore() ? withGitignore(base) : inherited;
+                List<DirectoryTask> children = new ArrayList<>();
+                try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                    for (Path entry : entries) {
+                        if (stopped) break;
+                        visit(entry, rules, children);
                     }
-                    return FileVisitResult.CONTINUE;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
+                for (DirectoryTask child : children) {
+                    child.join();
+                }
+            }
 
-                @Override
-                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
-                    // Skip hidden directories like .git
-                    if (dir.getFileName().toString().startsWith(".")) {
-                        return FileVisitResult.SKIP_SUBTREE;
+            private void visit(Path entry, IgnoreRules rules, List<DirectoryTask> children) throws IOException {
+                BasicFileAttributes attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                // Like walkFileTree without FOLLOW_LINKS: linked files count, linked directories are not entered
+                if (attrs.isSymbolicLink()) {
+                    if (!Files.isRegularFile(entry)) return;
+                    attrs = Files.readAttributes(entry, BasicFileAttributes.class);
+                }
+                String path = relative(entry);
+                if (attrs.isDirectory()) {
+                    if (sourceFilter.acceptsDirectory(path) && !rules.ignores(path, true)) {
+                        DirectoryTask child = new DirectoryTask(entry, rules);
+                        child.fork();
+                        children.add(child);
+                    }
+                } else if (attrs.isRegularFile() && sourceFilter.acceptsFile(path, attrs.size()) && !rules.ignores(path, false)) {
+                    try {
+                        sink.accept(entry);
+                        count.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                        stopped = true;
                     }
-                    return FileVisitResult.CONTINUE;
                 }
-            });
-        } catch (IOException e) {
-            log.error("Error scanning directory", e);
-            throw new RuntimeException("Failed to scan directory", e);
+            }
+
+            private IgnoreRules withGitignore(String base) {
+                Path file = dir.resolve(".gitignore");
+                if (!Files.isRegularFile(file)) return inherited;
+                try {
+                    return inherited.with(base, Files.readAllLines(file, StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    log.debug("Could not read {}", file, e);
+                    return inherited;
+                }
+            }
         }
 
-        log.info("Scan complete. Found {} Java files.", count.get());
-        return count.get();
+        private String relative(Path path) {
+            return root.relativize(path).toString().replace('\\', '/');
+        }
     }
 }
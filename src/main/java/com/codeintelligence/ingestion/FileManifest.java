@@ -0,0 +1,38 @@
+package com.codeintelligence.ingestion;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What was ingested from a source root, keyed by path relative to that root.
+ * Size and mtime let unchanged files be skipped without reading them; the hash catches touch-only changes.
+ */
+public record FileManifest(Map<String, Entry> files) {
+
+    /**
+     * {@code chunks} is how many vectors each of {@code unitIds} was embedded as. A unit missing from it, e.g. in a
+     * manifest written before units were chunked, may have any number up to {@code codeintel.chunking.max-chunks}.
+     */
+    public record Entry(long size, long modifiedMillis, String hash, List<String> unitIds, Map<String, Integer> chunks) {
+
+        public Entry {
+            if (chunks == null) chunks = Map.of();
+        }
+
+        /**
+         * How many vectors {@code unitId} was embedded as, or 0 if that was not recorded.
+         */
+        public int chunksOf(String unitId) {
+            return chunks.getOrDefault(unitId, 0);
+        }
+    }
+
+    public static FileManifest empty() {
+        return new FileManifest(new HashMap<>());
+    }
+
+    public boolean isEmpty() {
+        return files.isEmpty();
+    }
+}
@@ -0,0 +1,120 @@
+package com.codeintelligence.ingestion;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Patterns in {@code .gitignore} syntax, matched against {@code /}-separated paths relative to the scan root.
+ * <p>
+ * Supports comments, {@code !} negation, trailing {@code /} for directories only, leading or inner {@code /} anchoring
+ * a pattern to the directory its file is in, and {@code *}, {@code ?}, {@code [...]} and {@code **} globs.
+ * The last matching pattern wins, so rules added for a subdirectory override those of its parents. Immutable.
+ */
+final class IgnoreRules {
+
+    static final IgnoreRules NONE = new IgnoreRules(List.of());
+
+    private record Rule(String base, Pattern pattern, boolean negated, boolean directoryOnly) {
+    }
+
+    private final List<Rule> rules;
+
+    private IgnoreRules(List<Rule> rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * These rules plus {@code lines}, which apply to paths under {@code base} (empty for the root).
+     */
+    IgnoreRules with(String base, List<String> lines) {
+        List<Rule> added = new ArrayList<>(rules);
+        for (String line : lines) {
+            Rule rule = parse(base, line);
+            if (rule != null) added.add(rule);
+        }
+        return added.size() == rules.size() ? this : new IgnoreRules(List.copyOf(added));
+    }
+
+    boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    /**
+     * Whether the last rule matching {@code path} ignores it; false if none matches.
+     */
+    boolean ignores(String path, boolean directory) {
+        for (int i = rules.size() - 1; i >= 0; i--) {
+            Rule rule = rules.get(i);
+            if (rule.directoryOnly() && !directory) continue;
+            String relative;
+            if (rule.base().isEmpty()) {
+                relative = path;
+            } else if (path.startsWith(rule.base()) && path.length() > rule.base().length()
+                    && path.charAt(rule.base().length()) == '/') {
+                relative = path.substring(rule.base().length() + 1);
+            } else {
+                continue;
+            }
+            if (rule.pattern().matcher(relative).matches()) return !rule.negated();
+        }
+        return false;
+    }
+
+    private static Rule parse(String base, String line) {
+        String pattern = line.stripTrailing();
+        if (pattern.isEmpty() || pattern.startsWith("#")) return null;
+        boolean negated = pattern.startsWith("!");
+        if (negated || pattern.startsWith("\\!") || pattern.startsWith("\\#")) pattern = pattern.substring(1);
+        boolean directoryOnly = pattern.endsWith("/");
+        if (directoryOnly) pattern = pattern.substring(0, pattern.length() - 1);
+        if (pattern.isEmpty()) return null;
+
+        // Without a slash (other than a trailing one) a pattern matches at any depth
+        boolean anchored = pattern.contains("/");
+        if (pattern.startsWith("/")) pattern = pattern.substring(1);
+        String regex = (anchored ? "" : "(?:.*/)?") + globToRegex(pattern);
+        return new Rule(base, Pattern.compile(regex), negated, directoryOnly);
+    }
+
+    private static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            switch (c) {
+                case '*' -> {
+                    if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                        boolean slashAfter = i + 2 < glob.length() && glob.charAt(i + 2) == '/';
+                        boolean atSegmentStart = i == 0 || glob.charAt(i - 1) == '/';
+                        if (slashAfter && atSegmentStart) {
+                            regex.append("(?:.*/)?");
+                            i += 2;
+                        } else {
+                            regex.append(".*");
+                            i++;
+                        }
+                    } else {
+                        regex.append("[^/]*");
+                    }
+                }
+                case '?' -> regex.append("[^/]");
+                case '[' -> {
+                    int close = glob.indexOf(']', i + 2);
+                    if (close < 0) {
+                        regex.append("\\[");
+                    } else {
+                        String set = glob.substring(i + 1, close);
+                        if (set.startsWith("!")) set = "^" + set.substring(1);
+                        regex.append('[').append(set.replace("\\", "\\\\")).append(']');
+                        i = close;
+                    }
+                }
+                case '\\' -> {
+                    if (i + 1 < glob.length()) regex.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+                }
+                default -> regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return regex.toString();
+    }
+}
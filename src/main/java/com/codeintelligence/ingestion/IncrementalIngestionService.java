@@ -0,0 +1,301 @@
+package com.codeintelligence.ingestion;
+
+import com.codeintelligence.core.Workspace;
+import com.codeintelligence.core.WorkspaceRegistry;
+import com.codeintelligence.service.VectorService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Re-ingests only what changed since the last run over the same source root.
+ * <p>
+ * Files are compared to the root's {@link FileManifest} by size and mtime first and by content hash only when those
+ * differ. Units of removed files are dropped from the graph, the vector store and the content store; units of changed
+ * files lose their outgoing edges and are re-parsed, and any unit that no longer exists afterwards is dropped too.
+ * Each workspace is tracked separately. Different workspaces ingest in parallel; an ingest into a workspace whose
+ * previous job has not completed yet is rejected with {@link IngestionInProgressException}, since it would clear or
+ * diff state that job is still writing.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IncrementalIngestionService {
+
+    private final FileDiscoveryService fileDiscoveryService;
+    private final IngestionPipeline ingestionPipeline;
+    private final ManifestStore manifestStore;
+    private final WorkspaceRegistry workspaceRegistry;
+    private final VectorService vectorService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Per workspace ID; each session is also the lock its workspace's ingests take
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    private static final class Session {
+        // A workspace's graph holds one project at a time, so switching roots forces a rebuild
+        private Path lastRoot;
+        // The workspace's latest job; the next ingest may only start once its completion has resolved
+        private IngestionJob running;
+
+        void claim(String workspace) {
+            if (running != null && !running.completion().isDone()) {
+                throw new IngestionInProgressException(workspace, running.id());
+            }
+        }
+    }
+
+    /**
+     * Declares that {@code workspace}'s graph already holds {@code root}, e.g. after restoring a snapshot, so the
+     * next ingest of that root can be incremental instead of a full rebuild.
+     */
+    public void resume(Workspace workspace, Path root) {
+        Session session = session(workspace);
+        synchronized (session) {
+            session.lastRoot = root.toAbsolutePath().normalize();
+        }
+    }
+
+    public IngestionJob ingest(Path root, boolean full) {
+        return ingest(workspaceRegistry.defaultWorkspace(), root, full);
+    }
+
+    /**
+     * @throws IngestionInProgressException if {@code workspace}'s previous job is still running
+     */
+    public IngestionJob ingest(Workspace workspace, Path root, boolean full) {
+        Session session = session(workspace);
+        synchronized (session) {
+            session.claim(workspace.id());
+            // What is removed below, before the job even starts, is gone for readers at once
+            eventPublisher.publishEvent(new WorkspaceChangedEvent(workspace.id()));
+            session.running = ingest(workspace, session, root.toAbsolutePath().normalize(), full);
+            return session.running;
+        }
+    }
+
+    private IngestionJob ingest(Workspace workspace, Session session, Path normalized, boolean full) {
+        String id = workspace.id();
+        FileManifest previous = manifestStore.load(id, normalized);
+
+        if (full || !normalized.equals(session.lastRoot) || workspace.graph().nodeCount() == 0) {
+            log.info("Full rebuild of {} in workspace {}", normalized, id);
+            vectorService.remove(id, indexed(workspace, session, normalized, previous));
+            workspace.graph().clear();
+            workspace.contentStore().clear();
+            workspace.lexicalIndex().clear();
+            session.lastRoot = normalized;
+            return rebuild(workspace, normalized);
+        }
+
+        ChangeSet changes = diff(normalized, previous);
+        log.info("Changes in {} in workspace {}: {}", normalized, id, changes.summary());
+
+        // Drop what is gone before the pipeline re-adds what changed
+        remove(workspace, chunksOf(changes.removed().values()));
+        // Changed units are re-embedded, possibly as fewer chunks than before, so none of their old vectors survive
+        Map<String, Integer> changedUnits = chunksOf(entriesOf(normalized, changes.changed(), previous));
+        workspace.graph().removeOutgoing(changedUnits.keySet());
+        vectorService.remove(id, changedUnits);
+
+        List<Path> toParse = new ArrayList<>(changes.added());
+        toParse.addAll(changes.changed());
+
+        IngestionJob job = ingestionPipeline.submit(workspace, normalized, sink -> {
+            for (Path file : toParse) sink.accept(file);
+        }, changes.summary(), drained -> commit(workspace, normalized, previous, changes, drained));
+        session.lastRoot = normalized;
+        return job;
+    }
+
+    /**
+     * A rebuild has nothing to diff, so files stream from the walk straight into the parse stage and the manifest
+     * is collected on the way. Its change summary is only known once the job has drained.
+     */
+    private IngestionJob rebuild(Workspace workspace, Path root) {
+        Map<String, FileManifest.Entry> current = new ConcurrentHashMap<>();
+        List<Path> added = Collections.synchronizedList(new ArrayList<>());
+        return ingestionPipeline.submit(workspace, root, sink -> fileDiscoveryService.scanDirectory(root, file -> {
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                current.put(key(root, file), new FileManifest.Entry(
+                        attrs.size(), attrs.lastModifiedTime().toMillis(), ManifestStore.hash(file), List.of(), Map.of()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            added.add(file);
+            sink.accept(file);
+        }), null, drained -> {
+            ChangeSet changes = new ChangeSet(List.copyOf(added), List.of(), Map.of(), 0, current);
+            drained.changes(changes.summary());
+            commit(workspace, root, FileManifest.empty(), changes, drained);
+        });
+    }
+
+    /**
+     * Rebuilds {@code workspace} from sources that are not on disk, e.g. an archive streamed by {@code feed}, which
+     * runs on the calling thread. Only clearing the workspace and registering the job hold its lock; the feed runs
+     * after, with the job keeping other ingests out. There is no manifest to diff against, so this is always a full
+     * rebuild and the next ingest of a directory is one too.
+     *
+     * @throws IngestionInProgressException if {@code workspace}'s previous job is still running
+     */
+    public IngestionJob ingest(Workspace workspace, Path root, IngestionPipeline.SourceFeed feed) {
+        Session session = session(workspace);
+        IngestionPipeline.OpenJob open;
+        synchronized (session) {
+            session.claim(workspace.id());
+            log.info("Full rebuild from {} in workspace {}", root, workspace.id());
+            eventPublisher.publishEvent(new WorkspaceChangedEvent(workspace.id()));
+            vectorService.remove(workspace.id(), indexed(workspace, session, null, FileManifest.empty()));
+            workspace.graph().clear();
+            workspace.contentStore().clear();
+            workspace.lexicalIndex().clear();
+            session.lastRoot = null;
+            open = ingestionPipeline.open(workspace, root);
+            session.running = open.job();
+        }
+        return open.feed(feed);
+    }
+
+    private Session session(Workspace workspace) {
+        return sessions.computeIfAbsent(workspace.id(), id -> new Session());
+    }
+
+    /**
+     * Every unit {@code workspace} holds, for a rebuild to delete before clearing the graph that lists them: the
+     * graph's nodes, the units of the root it last ingested, and those {@code manifest} of {@code root} records.
+     * Each maps to its recorded chunk count, or 0 where none was recorded, e.g. for units of an archive.
+     */
+    private Map<String, Integer> indexed(Workspace workspace, Session session, Path root, FileManifest manifest) {
+        Map<String, Integer> units = new HashMap<>();
+        workspace.graph().nodeIds().forEach(unitId -> units.put(unitId, 0));
+        if (session.lastRoot != null && !session.lastRoot.equals(root)) {
+            units.putAll(chunksOf(manifestStore.load(workspace.id(), session.lastRoot).files().values()));
+        }
+        units.putAll(chunksOf(manifest.files().values()));
+        return units;
+    }
+
+    private void remove(Workspace workspace, Map<String, Integer> chunksByUnit) {
+        Collection<String> unitIds = chunksByUnit.keySet();
+        workspace.graph().removeNodes(unitIds);
+        vectorService.remove(workspace.id(), chunksByUnit);
+        workspace.contentStore().remove(unitIds);
+        workspace.lexicalIndex().remove(unitIds);
+    }
+
+    private ChangeSet diff(Path root, FileManifest previous) {
+        // The walk calls back from several threads at once
+        List<Path> added = Collections.synchronizedList(new ArrayList<>());
+        List<Path> changed = Collections.synchronizedList(new ArrayList<>());
+        Map<String, FileManifest.Entry> current = new ConcurrentHashMap<>();
+        AtomicInteger unchanged = new AtomicInteger();
+
+        fileDiscoveryService.scanDirectory(root, file -> {
+            try {
+                String key = key(root, file);
+                BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                long size = attrs.size();
+                long modified = attrs.lastModifiedTime().toMillis();
+                FileManifest.Entry old = previous.files().get(key);
+
+                if (old != null && old.size() == size && old.modifiedMillis() == modified) {
+                    current.put(key, old);
+                    unchanged.incrementAndGet();
+                    return;
+                }
+
+                String hash = ManifestStore.hash(file);
+                if (old != null && old.hash().equals(hash)) {
+                    current.put(key, new FileManifest.Entry(size, modified, hash, old.unitIds(), old.chunks()));
+                    unchanged.incrementAndGet();
+                } else {
+                    current.put(key, new FileManifest.Entry(size, modified, hash, List.of(), Map.of()));
+                    (old == null ? added : changed).add(file);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        Map<String, FileManifest.Entry> removed = new HashMap<>(previous.files());
+        removed.keySet().removeAll(current.keySet());
+        return new ChangeSet(List.copyOf(added), List.copyOf(changed), removed, unchanged.get(), current);
+    }
+
+    private void commit(Workspace workspace, Path root, FileManifest previous, ChangeSet changes, IngestionJob job) {
+        Map<String, FileManifest.Entry> files = new HashMap<>();
+        Map<String, Integer> vanished = new HashMap<>();
+        Set<Path> reparsed = new HashSet<>(changes.added());
+        reparsed.addAll(changes.changed());
+
+        changes.current().forEach((key, entry) -> {
+            Path file = root.resolve(key);
+            List<String> parsedIds = job.unitsByFile().get(file);
+            if (parsedIds != null) {
+                Map<String, Integer> chunks = new HashMap<>();
+                parsedIds.forEach(unitId -> {
+                    Integer count = job.chunksByUnit().get(unitId);
+                    if (count != null) chunks.put(unitId, count);
+                });
+                files.put(key, new FileManifest.Entry(entry.size(), entry.modifiedMillis(), entry.hash(), parsedIds, chunks));
+                FileManifest.Entry old = previous.files().get(key);
+                if (old != null) {
+                    vanished.putAll(chunksOf(List.of(old)));
+                }
+            } else if (!reparsed.contains(file)) {
+                files.put(key, entry);
+            }
+            // Otherwise the file failed to read; leaving it out of the manifest retries it next run
+        });
+        files.values().forEach(e -> vanished.keySet().removeAll(e.unitIds()));
+
+        remove(workspace, vanished);
+
+        try {
+            manifestStore.save(workspace.id(), root, new FileManifest(files));
+        } catch (IOException e) {
+            log.error("Failed to save manifest for {}", root, e);
+        }
+    }
+
+    private static List<FileManifest.Entry> entriesOf(Path root, List<Path> files, FileManifest manifest) {
+        return files.stream()
+                .map(f -> manifest.files().get(key(root, f)))
+                .filter(e -> e != null)
+                .toList();
+    }
+
+    /**
+     * The units of {@code entries}, each mapped to how many vectors it was embedded as (0 if not recorded).
+     */
+    private static Map<String, Integer> chunksOf(Collection<FileManifest.Entry> entries) {
+        Map<String, Integer> chunks = new HashMap<>();
+        for (FileManifest.Entry entry : entries) {
+            entry.unitIds().forEach(unitId -> chunks.put(unitId, entry.chunksOf(unitId)));
+        }
+        return chunks;
+    }
+
+    private static String key(Path root, Path file) {
+        return root.relativize(file).toString().replace('\\', '/');
+    }
+}
@@ -0,0 +1,7 @@
+package com.codeintelligence.ingestion;
+
+/**
+ * Published once every stage of an ingestion job has drained.
+ */
+public record IngestionCompletedEvent(IngestionReport report) {
+}
@@ -0,0 +1,18 @@
+package com.codeintelligence.ingestion;
+
+/**
+ * Thrown when an ingest is requested into a workspace that another ingest is still running in.
+ */
+public class IngestionInProgressException extends IllegalStateException {
+
+    private final String jobId;
+
+    public IngestionInProgressException(String workspace, String jobId) {
+        super("Ingestion job " + jobId + " is still running in workspace " + workspace);
+        this.jobId = jobId;
+    }
+
+    public String jobId() {
+        return jobId;
+    }
+}
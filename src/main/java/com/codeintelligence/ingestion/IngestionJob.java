@@ -0,0 +1,164 @@
+package com.codeintelligence.ingestion;
+
+import com.codeintelligence.core.CodeUnit;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A single run of the ingestion pipeline over one source root, into one workspace.
+ * Progress can be polled through {@link #report()}; {@link #completion()} resolves when all stages have drained.
+ */
+public class IngestionJob {
+
+    public enum State { RUNNING, COMPLETED, FAILED, CANCELLED }
+
+    private final String id = UUID.randomUUID().toString();
+    private final String workspace;
+    private final Path root;
+    private final long startNanos = System.nanoTime();
+    private final CompletableFuture<IngestionReport> completion = new CompletableFuture<>();
+    private final AtomicLong filesDiscovered = new AtomicLong();
+    private final AtomicLong unitsIndexed = new AtomicLong();
+    private final AtomicLong tokensEmbedded = new AtomicLong();
+    private final AtomicLong unitsEmbedded = new AtomicLong();
+    private final AtomicLong unitsFailed = new AtomicLong();
+    private final Map<Path, List<String>> unitsByFile = new ConcurrentHashMap<>();
+    private final Map<String, Integer> chunksByUnit = new ConcurrentHashMap<>();
+
+    private volatile State state = State.RUNNING;
+    private volatile long elapsedMillis = -1;
+    private volatile ChangeSet.Summary changes;
+    private volatile ResolutionStats resolution;
+    private volatile BoundedStage<?> parseStage;
+    private volatile BoundedStage<ParsedFile> graphStage;
+    private volatile BoundedStage<CodeUnit> embedStage;
+
+    IngestionJob(String workspace, Path root, ChangeSet.Summary changes) {
+        this.workspace = workspace;
+        this.root = root;
+        this.changes = changes;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public String workspace() {
+        return workspace;
+    }
+
+    public Path root() {
+        return root;
+    }
+
+    public State state() {
+        return state;
+    }
+
+    public CompletableFuture<IngestionReport> completion() {
+        return completion;
+    }
+
+    public IngestionReport report() {
+        BoundedStage<?> parse = parseStage;
+        BoundedStage<CodeUnit> embed = embedStage;
+        long elapsed = elapsedMillis >= 0 ? elapsedMillis : (System.nanoTime() - startNanos) / 1_000_000;
+        return new IngestionReport(
+            id,
+            workspace,
+            root.toString(),
+            state,
+            filesDiscovered.get(),
+            parse == null ? 0 : parse.processed(),
+            parse == null ? 0 : parse.failed(),
+            unitsIndexed.get(),
+            unitsEmbedded.get(),
+            // Units that failed before reaching the vector store, plus those whose batch failed to write
+            unitsFailed.get() + (embed == null ? 0 : embed.failed()),
+            tokensEmbedded.get(),
+            elapsed,
+            changes,
+            resolution
+        );
+    }
+
+    /**
+     * IDs of the units each successfully parsed file produced. Files that failed to read are absent.
+     */
+    public Map<Path, List<String>> unitsByFile() {
+        return unitsByFile;
+    }
+
+    /**
+     * How many vectors each unit that reached the embed stage was embedded as.
+     */
+    public Map<String, Integer> chunksByUnit() {
+        return chunksByUnit;
+    }
+
+    void attach(BoundedStage<?> parse, BoundedStage<ParsedFile> graph, BoundedStage<CodeUnit> embed) {
+        this.parseStage = parse;
+        this.graphStage = graph;
+        this.embedStage = embed;
+    }
+
+    void fileDiscovered() {
+        filesDiscovered.incrementAndGet();
+    }
+
+    void unitIndexed() {
+        unitsIndexed.incrementAndGet();
+    }
+
+    /**
+     * Whether every vector of a unit was stored; called from the embedding batch writer.
+     */
+    void unitWritten(boolean stored) {
+        (stored ? unitsEmbedded : unitsFailed).incrementAndGet();
+    }
+
+    void chunked(String unitId, int chunks) {
+        chunksByUnit.put(unitId, chunks);
+    }
+
+    void tokensEmbedded(int tokens) {
+        tokensEmbedded.addAndGet(tokens);
+    }
+
+    void changes(ChangeSet.Summary changes) {
+        this.changes = changes;
+    }
+
+    void resolved(ResolutionStats stats) {
+        this.resolution = stats;
+    }
+
+    void recordUnits(Path file, List<String> unitIds) {
+        unitsByFile.put(file, unitIds);
+    }
+
+    synchronized void finish(State finalState, Throwable error) {
+        if (state != State.RUNNING) return;
+        this.elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        this.state = finalState;
+        if (error != null) {
+            completion.completeExceptionally(error);
+        } else {
+            completion.complete(report());
+        }
+    }
+
+    void cancel() {
+        for (BoundedStage<?> stage : new BoundedStage<?>[]{parseStage, graphStage, embedStage}) {
+            if (stage != null) stage.abort();
+        }
+        finish(State.CANCELLED, new CancellationException("Ingestion job " + id + " cancelled"));
+    }
+}
@@ -0,0 +1,413 @@
+package com.codeintelligence.ingestion;
+
+import com.codeintelligence.core.CodeUnit;
+import com.codeintelligence.core.Workspace;
+import com.codeintelligence.core.WorkspaceRegistry;
+import com.codeintelligence.service.GraphService;
+import com.codeintelligence.service.VectorService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Staged ingestion: discover -> parse -> graph -> embed, then a second {@link EdgeResolver} pass over the
+ * parsed files once every node is in the graph. The embed stage cuts each unit into chunks with {@link CodeChunker}
+ * first.
+ * <p>
+ * Every stage sits behind a bounded queue, so a slow embedding model throttles parsing and a slow parser
+ * throttles the directory walk, instead of piling up unbounded tasks on the heap.
+ * Parsing is CPU-bound and runs on a fixed platform pool; the other stages are I/O-bound and run on virtual threads.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IngestionPipeline {
+
+    private static final int RETAINED_JOBS = 32;
+
+    private final FileDiscoveryService fileDiscoveryService;
+    private final JavaParserService javaParserService;
+    private final GraphService graphService;
+    private final VectorService vectorService;
+    private final CodeChunker codeChunker;
+    private final EdgeResolver edgeResolver;
+    private final WorkspaceRegistry workspaceRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${codeintel.ingestion.queue-capacity:1024}")
+    private int queueCapacity;
+
+    // 0 means one parser thread per available core
+    @Value("${codeintel.ingestion.parse-threads:0}")
+    private int parseThreads;
+
+    @Value("${codeintel.ingestion.graph-workers:1}")
+    private int graphWorkers;
+
+    @Value("${codeintel.ingestion.embed-workers:4}")
+    private int embedWorkers;
+
+    private final Map<String, IngestionJob> jobs = Collections.synchronizedMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, IngestionJob> eldest) {
+            return size() > RETAINED_JOBS && eldest.getValue().state() != IngestionJob.State.RUNNING;
+        }
+    });
+
+    // Stages of running jobs, summed per stage name by the queue depth gauges
+    private final Set<BoundedStage<?>> activeStages = ConcurrentHashMap.newKeySet();
+
+    private Counter filesDiscovered;
+    private DistributionSummary unitsPerFile;
+    private final Map<String, Timer> stageTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> queueWaitTimers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        filesDiscovered = Counter.builder("codeintel.ingestion.files.discovered")
+                .description("Source files handed to the parse stage")
+                .register(meterRegistry);
+        unitsPerFile = DistributionSummary.builder("codeintel.ingestion.units.per.file")
+                .description("Code units extracted from one source file")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        for (String stage : new String[]{"parse", "graph", "embed"}) {
+            stageTimers.put(stage, Timer.builder("codeintel.ingestion.stage.latency")
+                    .description("Time a stage worker spends on one item, not counting handing it on: a file for parse "
+                            + "and graph, a unit for embed")
+                    .tag("stage", stage)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+            queueWaitTimers.put(stage, Timer.builder("codeintel.ingestion.queue.wait")
+                    .description("Time the stage upstream spends blocked on this stage's full queue, per item handed on")
+                    .tag("stage", stage)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+            Gauge.builder("codeintel.ingestion.queue.depth", activeStages, stages -> queueDepth(stages, stage))
+                    .description("Items waiting in a stage's queue across running jobs")
+                    .tag("stage", stage)
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Feeds source files into the parse stage. Blocking in the sink is how back-pressure reaches the source.
+     */
+    @FunctionalInterface
+    public interface FileSource {
+        void feed(FileDiscoveryService.PathSink sink) throws InterruptedException;
+    }
+
+    /**
+     * Receives sources that are already in memory, e.g. archive entries. {@code file} only names the source.
+     */
+    @FunctionalInterface
+    public interface SourceSink {
+        void accept(Path file, String text) throws InterruptedException;
+    }
+
+    /**
+     * Feeds in-memory sources into the parse stage, blocking in the sink like {@link FileSource}.
+     */
+    @FunctionalInterface
+    public interface SourceFeed {
+        void feed(SourceSink sink) throws IOException, InterruptedException;
+    }
+
+    /**
+     * A registered job for sources that are not on disk, its stages started and waiting for {@link #feed}.
+     */
+    public interface OpenJob {
+
+        IngestionJob job();
+
+        /**
+         * Runs {@code feed} on the calling thread while parsers work through what it has produced so far; returns
+         * once it is exhausted and the later stages drain in the background. If the feed fails the job fails with it.
+         */
+        IngestionJob feed(SourceFeed feed);
+    }
+
+    // Item of the parse stage: read from disk when text is null
+    private record Source(Path file, String text) {
+    }
+
+    /**
+     * Starts ingesting every Java file under {@code root} into the default workspace in the background and returns
+     * immediately.
+     */
+    public IngestionJob submit(Path root) {
+        return submit(workspaceRegistry.defaultWorkspace(), root,
+                sink -> fileDiscoveryService.scanDirectory(root, sink), null, job -> { });
+    }
+
+    /**
+     * Starts ingesting the files produced by {@code source} into {@code workspace}; {@code changes} is reported back
+     * as-is. {@code onDrained} runs after every stage has drained but before the job's completion future resolves.
+     */
+    public IngestionJob submit(Workspace workspace, Path root, FileSource source, ChangeSet.Summary changes,
+                               Consumer<IngestionJob> onDrained) {
+        Run run = new Run(workspace, root, changes, false);
+        Thread.ofVirtual().name("ingest-discover-" + run.job.id()).start(() -> run.complete(() -> {
+            run.feed(sink -> source.feed(file -> sink.accept(file, null)));
+            run.drain(onDrained);
+        }));
+        return run.job;
+    }
+
+    /**
+     * Starts a job for sources that are not on disk, such as entries streamed out of an uploaded archive, which the
+     * caller then hands to {@link OpenJob#feed}. The job is registered and its stages run from here on, so a caller
+     * can claim the workspace for it before the possibly slow feed starts.
+     * Sources are kept in memory until the edge-resolution pass has re-read them.
+     */
+    public OpenJob open(Workspace workspace, Path root) {
+        Run run = new Run(workspace, root, null, edgeResolver.isEnabled());
+        return new OpenJob() {
+            @Override
+            public IngestionJob job() {
+                return run.job;
+            }
+
+            @Override
+            public IngestionJob feed(SourceFeed feed) {
+                if (run.attempt(() -> run.feed(feed))) {
+                    Thread.ofVirtual().name("ingest-drain-" + run.job.id())
+                            .start(() -> run.complete(() -> run.drain(job -> { })));
+                }
+                return run.job;
+            }
+        };
+    }
+
+    public Optional<IngestionJob> find(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    @FunctionalInterface
+    private interface Step {
+        void run() throws Exception;
+    }
+
+    /**
+     * One job's stages. The feed fills the parse queue and {@link #drain} closes the stages in order behind it.
+     */
+    private final class Run {
+
+        private final Workspace workspace;
+        private final IngestionJob job;
+        private final int parsers;
+        private final BoundedStage<Source> parse;
+        private final BoundedStage<ParsedFile> graph;
+        private final BoundedStage<CodeUnit> embed;
+        // Texts of in-memory sources, held for edge resolution; null when sources are on disk or are not needed again
+        private final Map<Path, String> retained;
+
+        Run(Workspace workspace, Path root, ChangeSet.Summary changes, boolean retainSources) {
+            this.workspace = workspace;
+            job = new IngestionJob(workspace.id(), root, changes);
+            jobs.put(job.id(), job);
+            // Stages write as soon as they start, and a job that fails or is cancelled leaves whatever it wrote
+            eventPublisher.publishEvent(new WorkspaceChangedEvent(workspace.id()));
+            job.completion().whenComplete((report, error) ->
+                    eventPublisher.publishEvent(new WorkspaceChangedEvent(workspace.id())));
+            parsers = parseThreads > 0 ? parseThreads : Runtime.getRuntime().availableProcessors();
+            retained = retainSources ? new ConcurrentHashMap<>() : null;
+
+            embed = new BoundedStage<>("embed", queueCapacity, embedWorkers,
+                virtualExecutor("ingest-embed-"), timed("embed", unit -> {
+                    List<CodeChunker.Chunk> chunks = codeChunker.chunk(unit);
+                    job.chunked(unit.id(), chunks.size());
+                    job.tokensEmbedded(vectorService.embed(workspace.id(), unit, chunks, job::unitWritten));
+                }));
+
+            graph = new BoundedStage<>("graph", queueCapacity, graphWorkers,
+                virtualExecutor("ingest-graph-"), parsed -> {
+                    long start = System.nanoTime();
+                    graphService.index(workspace.graph(), parsed.units());
+                    for (CodeUnit unit : parsed.units()) {
+                        workspace.contentStore().put(unit);
+                        workspace.lexicalIndex().add(unit);
+                        job.unitIndexed();
+                    }
+                    stageTimers.get("graph").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    for (CodeUnit unit : parsed.units()) {
+                        enqueue(embed, unit);
+                    }
+                    job.recordUnits(parsed.file(), parsed.units().stream().map(CodeUnit::id).toList());
+                });
+
+            parse = new BoundedStage<>("parse", queueCapacity, parsers,
+                Executors.newFixedThreadPool(parsers, Thread.ofPlatform().name("ingest-parse-", 0).factory()),
+                source -> {
+                    long start = System.nanoTime();
+                    List<CodeUnit> units = source.text() == null
+                            ? javaParserService.parse(source.file())
+                            : javaParserService.parse(source.file(), source.text());
+                    stageTimers.get("parse").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    unitsPerFile.record(units.size());
+                    enqueue(graph, new ParsedFile(source.file(), units));
+                });
+
+            // Readers keep the last published graph until a stage boundary instead of watching every node arrive
+            workspace.graph().beginUpdate();
+            job.attach(parse, graph, embed);
+            activeStages.addAll(List.of(parse, graph, embed));
+            embed.start();
+            graph.start();
+            parse.start();
+            log.info("Ingestion job {} started for {} in workspace {} ({} parser threads)",
+                    job.id(), root, workspace.id(), parsers);
+        }
+
+        // 1. The source feeds the parse queue directly; put() blocks when parsers fall behind
+        void feed(SourceFeed feed) throws IOException, InterruptedException {
+            try {
+                feed.feed((file, text) -> {
+                    if (retained != null) retained.put(file, text);
+                    enqueue(parse, new Source(file, text));
+                    job.fileDiscovered();
+                    filesDiscovered.increment();
+                });
+            } finally {
+                parse.close();
+            }
+        }
+
+        void drain(Consumer<IngestionJob> onDrained) throws InterruptedException {
+            // 2. Drain stages in order so each downstream stage sees every item before it is closed
+            parse.await();
+            graph.close();
+            graph.await();
+            embed.close();
+            // Edge resolution looks nodes up through the published view
+            workspace.graph().publish();
+
+            // 3. Edges that point across files need every node to exist; embedding keeps draining meanwhile
+            if (edgeResolver.isEnabled()) {
+                job.resolved(edgeResolver.resolve(workspace.graph(), job.root(), job.unitsByFile(), retained, parsers));
+            }
+            if (retained != null) retained.clear();
+            embed.await();
+            vectorService.flush();
+            onDrained.accept(job);
+            workspace.contentStore().compactIfNeeded();
+            // Whoever waits on the job sees the finished graph, even before the update is ended on release
+            workspace.graph().publish();
+
+            job.finish(IngestionJob.State.COMPLETED, null);
+            IngestionReport report = job.report();
+            log.info("Ingestion job {} completed: {}", job.id(), report);
+            eventPublisher.publishEvent(new IngestionCompletedEvent(report));
+        }
+
+        /**
+         * Runs {@code step} and releases the job's stages afterwards, whatever the outcome.
+         */
+        void complete(Step step) {
+            if (attempt(step)) release();
+        }
+
+        /**
+         * Runs {@code step}; if it fails the job is failed (or cancelled, on interrupt) and its stages released.
+         */
+        boolean attempt(Step step) {
+            try {
+                step.run();
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                job.cancel();
+            } catch (CancellationException e) {
+                // A stage was aborted under the step, by a cancel or another step's failure that already ended the job
+                job.cancel();
+            } catch (Exception e) {
+                log.error("Ingestion job {} failed", job.id(), e);
+                parse.abort();
+                graph.abort();
+                embed.abort();
+                job.finish(IngestionJob.State.FAILED, e);
+            }
+            release();
+            return false;
+        }
+
+        private void release() {
+            workspace.graph().endUpdate();
+            activeStages.removeAll(List.of(parse, graph, embed));
+            if (retained != null) retained.clear();
+        }
+    }
+
+    public boolean hasRunningJobs() {
+        synchronized (jobs) {
+            return jobs.values().stream().anyMatch(job -> job.state() == IngestionJob.State.RUNNING);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        synchronized (jobs) {
+            jobs.values().stream()
+                .filter(job -> job.state() == IngestionJob.State.RUNNING)
+                .forEach(IngestionJob::cancel);
+        }
+    }
+
+    /**
+     * Wraps {@code handler} so each item it handles is recorded by the stage's latency timer.
+     */
+    private <T> BoundedStage.Handler<T> timed(String stage, BoundedStage.Handler<T> handler) {
+        Timer timer = stageTimers.get(stage);
+        return item -> {
+            long start = System.nanoTime();
+            try {
+                handler.handle(item);
+            } finally {
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        };
+    }
+
+    /**
+     * Hands {@code item} to {@code stage}, recording how long the caller was blocked on its full queue.
+     */
+    private <T> void enqueue(BoundedStage<T> stage, T item) throws InterruptedException {
+        long start = System.nanoTime();
+        stage.put(item);
+        queueWaitTimers.get(stage.name()).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private static double queueDepth(Set<BoundedStage<?>> stages, String name) {
+        return stages.stream().filter(stage -> stage.name().equals(name)).mapToInt(BoundedStage::depth).sum();
+    }
+
+    private static ExecutorService virtualExecutor(String prefix) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 0).factory());
+    }
+}
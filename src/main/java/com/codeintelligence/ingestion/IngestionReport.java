@@ -0,0 +1,25 @@
+package com.codeintelligence.ingestion;
+
+/**
+ * Point-in-time view of an ingestion job. Doubles as the final report once the job completes.
+ * {@code tokensEmbedded} is the estimated size of all chunks sent for embedding, cache hits included.
+ * {@code changes} is null for runs that were not diffed against a manifest, and for a rebuild until it has drained;
+ * {@code resolution} is null until the edge-resolution pass has finished, or when it is disabled.
+ */
+public record IngestionReport(
+    String jobId,
+    String workspace,
+    String root,
+    IngestionJob.State state,
+    long filesDiscovered,
+    long filesParsed,
+    long filesFailed,
+    long unitsIndexed,
+    long unitsEmbedded,
+    long unitsFailed,
+    long tokensEmbedded,
+    long elapsedMillis,
+    ChangeSet.Summary changes,
+    ResolutionStats resolution
+) {
+}
@@ -3,89 +3,117 @@ package com.codeintelligence.ingestion;
 import com.codeintelligence.core.CodeUnit;
 import com.github.javaparser.JavaParser;
 import com.github.javaparser.ParseResult;
-import com.github.javaparser.ParserConfiguration;
 import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
-import com.github.javaparser.symbolsolver.JavaSymbolSolver;
-import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
-import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+import com.github.javaparser.ast.body.TypeDeclaration;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.ApplicationEventPublisher;
-import org.springframework.context.event.EventListener;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class JavaParserService {
 
-    private final ApplicationEventPublisher eventPublisher;
     private final JavaParser javaParser;
 
-    // Constructor removed in favor of @RequiredArgsConstructor + @Bean config
-
-    @Async
-    @EventListener
-    public void onFileFound(SourceFileFoundEvent event) {
-        try {
-            log.debug("Parsing file: {}", event.file().getName());
-            ParseResult<CompilationUnit> result = javaParser.parse(event.file());
-            
-            if (result.isSuccessful() && result.getResult().isPresent()) {
-                CompilationUnit cu = result.getResult().get();
-                processCompilationUnit(cu);
-            } else {
-                log.warn("Failed to parse file: {}", event.file().getName());
-            }
-        } catch (IOException e) {
-            log.error("IO Exception parsing file: {}", event.file().getName(), e);
+    // JavaParser instances are not safe to share across threads; the parse stage runs a pool,
+    // so each worker gets its own parser built from the shared configuration.
+    private final ThreadLocal<JavaParser> parsers = ThreadLocal.withInitial(this::newParser);
+
+    // Methods are units of their own; leaving their bodies out of the class unit avoids embedding them twice
+    @Value("${codeintel.ingestion.elide-method-bodies:true}")
+    private boolean elideMethodBodies;
+
+    /**
+     * Parses one source file into its code units. Returns an empty list if the file does not parse.
+     * The file is read once; unit content is sliced from that buffer rather than pretty-printed from the AST.
+     */
+    public List<CodeUnit> parse(Path file) throws IOException {
+        return parse(file, SourceText.read(file));
+    }
+
+    /**
+     * Parses source that is already in memory; {@code file} only names it in logs.
+     */
+    public List<CodeUnit> parse(Path file, String text) {
+        return parse(file, new SourceText(text));
+    }
+
+    private List<CodeUnit> parse(Path file, SourceText source) {
+        log.debug("Parsing file: {}", file.getFileName());
+        ParseResult<CompilationUnit> result = parsers.get().parse(source.text());
+
+        if (result.isSuccessful() && result.getResult().isPresent()) {
+            return processCompilationUnit(result.getResult().get(), source);
         }
+        log.warn("Failed to parse file: {}", file.getFileName());
+        return List.of();
+    }
+
+    private JavaParser newParser() {
+        return new JavaParser(javaParser.getParserConfiguration());
     }
 
-    private void processCompilationUnit(CompilationUnit cu) {
+    private List<CodeUnit> processCompilationUnit(CompilationUnit cu, SourceText source) {
         String packageName = cu.getPackageDeclaration().map(p -> p.getName().asString()).orElse("");
+        List<CodeUnit> units = new ArrayList<>();
 
         cu.findAll(ClassOrInterfaceDeclaration.class).forEach(c -> {
             String className = c.getNameAsString();
             String id = packageName + "." + className; // Simple ID strategy
 
             if (c.isInterface()) {
-                CodeUnit.InterfaceUnit interfaceUnit = new CodeUnit.InterfaceUnit(
-                    id, packageName, className, c.toString(), Collections.emptyMap()
-                );
-                eventPublisher.publishEvent(new CodeParsedEvent(interfaceUnit));
+                units.add(new CodeUnit.InterfaceUnit(
+                    id, packageName, className, source.slice(c), Collections.emptyMap()
+                ));
             } else {
-                CodeUnit.ClassUnit classUnit = new CodeUnit.ClassUnit(
-                    id, packageName, className, c.toString(),
+                units.add(new CodeUnit.ClassUnit(
+                    id, packageName, className, classContent(c, source),
                     c.getAnnotations().stream().map(a -> a.getNameAsString()).toList(),
                     Collections.emptyMap()
-                );
-                eventPublisher.publishEvent(new CodeParsedEvent(classUnit));
+                ));
 
                 // Process methods
                 c.getMethods().forEach(m -> {
                     String methodId = id + "#" + m.getNameAsString();
-                    CodeUnit.MethodUnit methodUnit = new CodeUnit.MethodUnit(
+                    units.add(new CodeUnit.MethodUnit(
                         methodId,
                         id,
                         m.getSignature().asString(),
                         m.getNameAsString(),
-                        m.toString(),
+                        source.slice(m),
                         m.getType().asString(),
                         m.getParameters().stream().map(p -> p.getType().asString() + " " + p.getNameAsString()).toList(),
                         Collections.emptyMap()
-                    );
-                    eventPublisher.publishEvent(new CodeParsedEvent(methodUnit));
+                    ));
                 });
             }
         });
+        return units;
+    }
+
+    /**
+     * The class's own source with method bodies and nested types cut out; both are indexed as separate units.
+     */
+    private String classContent(ClassOrInterfaceDeclaration c, SourceText source) {
+        if (!elideMethodBodies) return source.slice(c);
+        List<Node> omitted = new ArrayList<>();
+        for (MethodDeclaration m : c.getMethods()) {
+            m.getBody().ifPresent(omitted::add);
+        }
+        c.getMembers().stream().filter(TypeDeclaration.class::isInstance).forEach(omitted::add);
+        return source.sliceWithout(c, omitted, n -> n instanceof TypeDeclaration<?> t
+                ? "/* nested type " + t.getNameAsString() + " */"
+                : "{ ... }");
     }
 }
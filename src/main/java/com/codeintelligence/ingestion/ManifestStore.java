@@ -0,0 +1,83 @@
+package com.codeintelligence.ingestion;
+
+import com.codeintelligence.core.Workspace;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Persists one {@link FileManifest} per workspace and source root as JSON under {@code codeintel.manifest.dir}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ManifestStore {
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${codeintel.manifest.dir:${user.home}/.code-intelligence/manifests}")
+    private Path directory;
+
+    public FileManifest load(String workspace, Path root) {
+        Path file = fileFor(workspace, root);
+        if (!Files.exists(file)) return FileManifest.empty();
+        try {
+            return objectMapper.readValue(file.toFile(), FileManifest.class);
+        } catch (IOException e) {
+            // A corrupt manifest only costs a full rebuild
+            log.warn("Ignoring unreadable manifest {}", file, e);
+            return FileManifest.empty();
+        }
+    }
+
+    public void save(String workspace, Path root, FileManifest manifest) throws IOException {
+        Files.createDirectories(directory);
+        Path file = fileFor(workspace, root);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        objectMapper.writeValue(tmp.toFile(), manifest);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public void delete(String workspace, Path root) throws IOException {
+        Files.deleteIfExists(fileFor(workspace, root));
+    }
+
+    static String hash(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // The default workspace keeps the names manifests had before there were workspaces
+    private Path fileFor(String workspace, Path root) {
+        byte[] key = sha256().digest(root.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8));
+        String name = HexFormat.of().formatHex(key, 0, 16) + ".json";
+        return directory.resolve(Workspace.DEFAULT.equals(workspace) ? name : workspace + "-" + name);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
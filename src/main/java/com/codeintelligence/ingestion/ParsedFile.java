@@ -0,0 +1,12 @@
+package com.codeintelligence.ingestion;
+
+import com.codeintelligence.core.CodeUnit;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Output of the parse stage: every code unit found in one source file.
+ */
+public record ParsedFile(Path file, List<CodeUnit> units) {
+}
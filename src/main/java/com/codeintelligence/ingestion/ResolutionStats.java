@@ -0,0 +1,27 @@
+package com.codeintelligence.ingestion;
+
+/**
+ * Outcome of one edge-resolution pass.
+ *
+ * @param symbolsAttempted call sites and type references the pass tried to resolve
+ * @param symbolsUnresolved those it could not; includes references to types outside the project and its jars
+ */
+public record ResolutionStats(
+    long files,
+    long symbolsAttempted,
+    long symbolsUnresolved,
+    long callEdges,
+    long extendsEdges,
+    long implementsEdges,
+    long injectsEdges,
+    long elapsedMillis
+) {
+
+    public double unresolvedRate() {
+        return symbolsAttempted == 0 ? 0 : (double) symbolsUnresolved / symbolsAttempted;
+    }
+
+    public double filesPerSecond() {
+        return elapsedMillis == 0 ? files : files * 1000.0 / elapsedMillis;
+    }
+}
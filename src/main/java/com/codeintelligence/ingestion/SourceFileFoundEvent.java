@@ -1,6 +0,0 @@
-package com.codeintelligence.ingestion;
-
-import java.io.File;
-
-public record SourceFileFoundEvent(File file) {
-}
@@ -0,0 +1,100 @@
+package com.codeintelligence.ingestion;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Which source files ingestion picks up, by path relative to the ingested root.
+ * Include and exclude patterns use {@code .gitignore} syntax, so {@code build/} skips every directory called build
+ * and {@code /build/} only the top-level one. Hidden files and directories are always skipped.
+ */
+@Component
+public class SourceFilter {
+
+    private static final List<String> GENERATED = List.of("generated/", "generated-sources/", "generated-test-sources/");
+    private static final List<String> TESTS = List.of("**/src/test/", "**/src/testFixtures/");
+
+    @Value("${codeintel.discovery.include:*.java}")
+    private List<String> include = List.of("*.java");
+
+    @Value("${codeintel.discovery.exclude:build/,target/,out/,node_modules/}")
+    private List<String> exclude = List.of("build/", "target/", "out/", "node_modules/");
+
+    @Value("${codeintel.discovery.skip-generated:true}")
+    private boolean skipGenerated = true;
+
+    @Value("${codeintel.discovery.skip-tests:false}")
+    private boolean skipTests;
+
+    @Value("${codeintel.discovery.max-file-size:1MB}")
+    private DataSize maxFileSize = DataSize.ofMegabytes(1);
+
+    @Value("${codeintel.discovery.gitignore:true}")
+    private boolean gitignore = true;
+
+    private IgnoreRules includes;
+    private IgnoreRules excludes;
+
+    @PostConstruct
+    void init() {
+        List<String> excluded = new ArrayList<>(exclude);
+        if (skipGenerated) excluded.addAll(GENERATED);
+        if (skipTests) excluded.addAll(TESTS);
+        includes = IgnoreRules.NONE.with("", include);
+        excludes = IgnoreRules.NONE.with("", excluded);
+    }
+
+    /**
+     * Whether {@code .gitignore} files found during the walk should be honoured.
+     */
+    public boolean honoursGitignore() {
+        return gitignore;
+    }
+
+    public long maxFileSize() {
+        return maxFileSize.toBytes();
+    }
+
+    /**
+     * Whether a walk should descend into the directory at {@code path}, judged on its own name and path only.
+     */
+    public boolean acceptsDirectory(String path) {
+        return !isHidden(path) && !excludes.ignores(path, true);
+    }
+
+    /**
+     * Whether the file at {@code path} should be parsed, assuming its directory was accepted; a negative
+     * {@code size} means unknown.
+     */
+    public boolean acceptsFile(String path, long size) {
+        return !isHidden(path) && includes.ignores(path, false) && !excludes.ignores(path, false)
+                && size <= maxFileSize.toBytes();
+    }
+
+    /**
+     * Whether the file at {@code path} should be parsed, checking every directory above it too. For sources that
+     * do not come from a directory walk, such as archive entries.
+     */
+    public boolean accepts(String path, long size) {
+        return acceptsDirectoriesOf(path) && acceptsFile(path, size);
+    }
+
+    /**
+     * Whether a walk would reach {@code path}: every directory above it is accepted.
+     */
+    public boolean acceptsDirectoriesOf(String path) {
+        for (int slash = path.indexOf('/'); slash > 0; slash = path.indexOf('/', slash + 1)) {
+            if (!acceptsDirectory(path.substring(0, slash))) return false;
+        }
+        return true;
+    }
+
+    private static boolean isHidden(String path) {
+        return path.substring(path.lastIndexOf('/') + 1).startsWith(".");
+    }
+}
@@ -0,0 +1,81 @@
+package com.codeintelligence.ingestion;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.resolution.TypeSolver;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.resolution.model.SymbolReference;
+import com.github.javaparser.symbolsolver.javaparsermodel.JavaParserFacade;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Stands in for {@code JavaParserTypeSolver} when the project's sources are held in memory rather than on disk.
+ * Files are found through the type IDs the parse stage gave them and parsed at most once per solver.
+ * Like the other JavaParser solvers it is not thread-safe.
+ */
+final class SourceMapTypeSolver implements TypeSolver {
+
+    private final Map<String, Path> filesByType;
+    private final Map<Path, String> sources;
+    private final JavaParser parser = new JavaParser();
+    private final Map<Path, Optional<CompilationUnit>> parsed = new HashMap<>();
+    private final Map<String, SymbolReference<ResolvedReferenceTypeDeclaration>> solved = new HashMap<>();
+    private TypeSolver parent;
+
+    SourceMapTypeSolver(Map<String, Path> filesByType, Map<Path, String> sources) {
+        this.filesByType = filesByType;
+        this.sources = sources;
+    }
+
+    @Override
+    public TypeSolver getParent() {
+        return parent;
+    }
+
+    @Override
+    public void setParent(TypeSolver parent) {
+        if (this.parent != null) throw new IllegalStateException("Parent already set");
+        this.parent = parent;
+    }
+
+    @Override
+    public SymbolReference<ResolvedReferenceTypeDeclaration> tryToSolveType(String name) {
+        // Not computeIfAbsent: building a declaration may come back here for other types
+        SymbolReference<ResolvedReferenceTypeDeclaration> cached = solved.get(name);
+        if (cached != null) return cached;
+        SymbolReference<ResolvedReferenceTypeDeclaration> reference = solve(name);
+        solved.put(name, reference);
+        return reference;
+    }
+
+    private SymbolReference<ResolvedReferenceTypeDeclaration> solve(String name) {
+        // Nested types are qualified through their enclosing type, whose file is the one to search
+        for (String prefix = name; ; prefix = prefix.substring(0, prefix.lastIndexOf('.'))) {
+            Path file = filesByType.get(prefix);
+            Optional<CompilationUnit> cu = file == null ? Optional.empty() : parse(file);
+            if (cu.isPresent()) {
+                for (TypeDeclaration<?> type : cu.get().findAll(TypeDeclaration.class)) {
+                    if (type.getFullyQualifiedName().filter(name::equals).isPresent()) {
+                        return SymbolReference.solved(JavaParserFacade.get(this).getTypeDeclaration(type));
+                    }
+                }
+            }
+            if (prefix.indexOf('.') < 0) return SymbolReference.unsolved();
+        }
+    }
+
+    private Optional<CompilationUnit> parse(Path file) {
+        return parsed.computeIfAbsent(file, f -> {
+            String text = sources.get(f);
+            if (text == null) return Optional.empty();
+            ParseResult<CompilationUnit> result = parser.parse(text);
+            return result.isSuccessful() ? result.getResult() : Optional.empty();
+        });
+    }
+}
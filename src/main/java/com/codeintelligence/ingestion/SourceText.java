@@ -0,0 +1,109 @@
+package com.codeintelligence.ingestion;
+
+import com.github.javaparser.Position;
+import com.github.javaparser.ast.Node;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * One source file held once in memory, with a line index so AST ranges map to character offsets.
+ * Unit content is cut straight out of this buffer instead of being re-printed from the AST,
+ * which keeps the original formatting and comments and skips the pretty-printer entirely.
+ * <p>
+ * Relies on JavaParser's default tab size of 1, so columns count characters.
+ */
+final class SourceText {
+
+    private final String text;
+    private final int[] lineStarts;
+
+    SourceText(String text) {
+        this.text = text;
+        this.lineStarts = indexLines(text);
+    }
+
+    static SourceText read(Path file) throws IOException {
+        return new SourceText(Files.readString(file, StandardCharsets.UTF_8));
+    }
+
+    String text() {
+        return text;
+    }
+
+    /**
+     * The exact source of {@code node}, starting at its leading comment if it has one.
+     */
+    String slice(Node node) {
+        int begin = begin(node);
+        int end = end(node);
+        return begin < 0 || end < begin ? node.toString() : text.substring(begin, end);
+    }
+
+    /**
+     * The source of {@code node} with each of the given inner nodes replaced by its {@code placeholder}.
+     * Inner nodes must lie inside {@code node}; nodes without a range are left in place.
+     */
+    String sliceWithout(Node node, List<? extends Node> omitted, Function<Node, String> placeholder) {
+        int begin = begin(node);
+        int end = end(node);
+        if (begin < 0 || end < begin) return node.toString();
+
+        List<Node> cuts = omitted.stream()
+                .filter(n -> begin(n) >= begin && end(n) <= end && begin(n) < end(n))
+                .sorted((a, b) -> Integer.compare(begin(a), begin(b)))
+                .map(Node.class::cast)
+                .toList();
+
+        StringBuilder out = new StringBuilder(end - begin);
+        int from = begin;
+        for (Node cut : cuts) {
+            int cutBegin = begin(cut);
+            if (cutBegin < from) continue; // nested inside a previous cut
+            out.append(text, from, cutBegin).append(placeholder.apply(cut));
+            from = end(cut);
+        }
+        return out.append(text, from, end).toString();
+    }
+
+    private int begin(Node node) {
+        int begin = offset(node.getRange().map(r -> r.begin));
+        int commentBegin = node.getComment()
+                .map(c -> offset(c.getRange().map(r -> r.begin)))
+                .orElse(-1);
+        return commentBegin >= 0 && commentBegin < begin ? commentBegin : begin;
+    }
+
+    // Range ends are inclusive
+    private int end(Node node) {
+        int end = offset(node.getRange().map(r -> r.end));
+        return end < 0 ? -1 : Math.min(end + 1, text.length());
+    }
+
+    private int offset(Optional<Position> position) {
+        if (position.isEmpty()) return -1;
+        int line = position.get().line;
+        if (line < 1 || line > lineStarts.length) return -1;
+        return Math.min(lineStarts[line - 1] + position.get().column - 1, text.length());
+    }
+
+    private static int[] indexLines(String text) {
+        int[] starts = new int[16];
+        int lines = 1;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\r' && i + 1 < text.length() && text.charAt(i + 1) == '\n') i++;
+            if (c == '\n' || c == '\r') {
+                if (lines == starts.length) starts = Arrays.copyOf(starts, lines * 2);
+                starts[lines++] = i + 1;
+            }
+        }
+        return Arrays.copyOf(starts, lines);
+    }
+}
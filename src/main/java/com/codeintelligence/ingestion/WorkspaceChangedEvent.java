@@ -0,0 +1,8 @@
+package com.codeintelligence.ingestion;
+
+/**
+ * Published when an ingest starts changing a workspace and again when its job ends, whether it completed, failed or
+ * was cancelled. Anything derived from the workspace's contents may be stale from either point on.
+ */
+public record WorkspaceChangedEvent(String workspace) {
+}
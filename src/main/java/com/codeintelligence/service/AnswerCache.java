@@ -0,0 +1,321 @@
+package com.codeintelligence.service;
+
+import com.codeintelligence.ingestion.WorkspaceChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache of chat answers keyed by workspace, query and workspace version. Queries that differ only in whitespace are
+ * the same question; case is kept, since identifiers are case-sensitive.
+ * <p>
+ * A workspace's version moves when an ingest starts changing it and again when that job ends, however it ends, which
+ * drops that workspace's cached answers: they were grounded on code that may have changed. An answer generated while
+ * the job ran is dropped at its end. Other workspaces keep theirs. Identical queries that arrive while one is being
+ * answered wait up to {@code follower-timeout} for that answer instead of starting their own. An optional second tier
+ * matches near-duplicate questions by the cosine similarity of their query embeddings. It embeds the query exactly as
+ * retrieval does, so with {@link CachingEmbeddingModel} in front of the model the vector search that follows a miss
+ * finds the embedding cached.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AnswerCache {
+
+    /**
+     * A generated answer and the units it was grounded on.
+     */
+    public record Answer(List<String> matchIds, String text) {
+    }
+
+    /**
+     * One generation of a query. Only the leader generates; followers wait on {@link #future()}.
+     */
+    public record Flight(long version, String workspace, String query, boolean leader, CompletableFuture<Answer> future) {
+    }
+
+    private record Entry(long version, String workspace, Answer answer, float[] embedding, long latencyMillis,
+                         long createdMillis) {
+    }
+
+    private record Key(long version, String workspace, String query) {
+    }
+
+    private record Scoped(String workspace, String query) {
+    }
+
+    private final EmbeddingModel embeddingModel;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${codeintel.chat.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${codeintel.chat.cache.max-entries:1000}")
+    private int maxEntries;
+
+    @Value("${codeintel.chat.cache.ttl:24h}")
+    private Duration ttl;
+
+    // How long a request waits for an identical one in flight before answering on its own
+    @Value("${codeintel.chat.cache.follower-timeout:2m}")
+    private Duration followerTimeout = Duration.ofMinutes(2);
+
+    @Value("${codeintel.chat.cache.semantic.enabled:false}")
+    private boolean semanticEnabled;
+
+    @Value("${codeintel.chat.cache.semantic.threshold:0.95}")
+    private double semanticThreshold;
+
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final Map<Key, CompletableFuture<Answer>> inFlight = new ConcurrentHashMap<>();
+
+    // workspace and normalized query -> entry, in access order
+    private final LinkedHashMap<Scoped, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private Counter exactHits;
+    private Counter semanticHits;
+    private Counter misses;
+    private Counter coalesced;
+    private DistributionSummary savedLatency;
+
+    @PostConstruct
+    void init() {
+        exactHits = Counter.builder("codeintel.chat.cache.hits").tag("tier", "exact").register(meterRegistry);
+        semanticHits = Counter.builder("codeintel.chat.cache.hits").tag("tier", "semantic").register(meterRegistry);
+        misses = Counter.builder("codeintel.chat.cache.misses").register(meterRegistry);
+        coalesced = Counter.builder("codeintel.chat.cache.coalesced").register(meterRegistry);
+        savedLatency = DistributionSummary.builder("codeintel.chat.cache.saved")
+                .description("Generation time a cache hit or a coalesced request did not have to spend")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("codeintel.chat.cache.size", this, AnswerCache::size).register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the cached answer for {@code query} in {@code workspace}, or runs {@code generate} on the calling thread
+     * and caches its result. Callers asking the same question meanwhile block on that one generation.
+     */
+    public Answer get(String workspace, String query, Supplier<Answer> generate) {
+        if (!enabled) return generate.get();
+        Optional<Answer> cached = lookup(workspace, query);
+        if (cached.isPresent()) return cached.get();
+
+        Flight flight = begin(workspace, query);
+        if (!flight.leader()) {
+            long start = System.nanoTime();
+            try {
+                Answer answer = follow(flight).join();
+                savedLatency.record((System.nanoTime() - start) / 1_000_000.0);
+                return answer;
+            } catch (CancellationException | CompletionException e) {
+                // The leader failed, gave up or is taking too long; answer this request on its own
+                return generate.get();
+            }
+        }
+
+        long start = System.nanoTime();
+        try {
+            Answer answer = generate.get();
+            complete(flight, answer, (System.nanoTime() - start) / 1_000_000);
+            return answer;
+        } catch (RuntimeException e) {
+            fail(flight, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Joins the generation of {@code query} already in progress, or registers the caller as its leader.
+     * A leader must end the flight with {@link #complete} or {@link #fail}.
+     */
+    public Flight begin(String workspace, String query) {
+        Key key = new Key(version(workspace).get(), workspace, normalize(query));
+        CompletableFuture<Answer> mine = new CompletableFuture<>();
+        CompletableFuture<Answer> running = enabled ? inFlight.putIfAbsent(key, mine) : null;
+        if (running != null) {
+            coalesced.increment();
+            return new Flight(key.version(), workspace, query, false, running);
+        }
+        return new Flight(key.version(), workspace, query, true, mine);
+    }
+
+    /**
+     * The answer a follower is waiting for, failing with a {@link java.util.concurrent.TimeoutException} after
+     * {@code follower-timeout}. Giving up on it leaves the flight and its other followers alone.
+     */
+    public CompletableFuture<Answer> follow(Flight flight) {
+        return flight.future().copy().orTimeout(followerTimeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public void complete(Flight flight, Answer answer, long latencyMillis) {
+        if (!flight.leader()) return;
+        try {
+            put(flight.version(), flight.workspace(), flight.query(), answer, latencyMillis);
+        } catch (RuntimeException e) {
+            // Followers still get the answer; only caching it failed
+            log.warn("Could not cache answer for '{}'", flight.query(), e);
+        }
+        inFlight.remove(key(flight), flight.future());
+        flight.future().complete(answer);
+    }
+
+    public void fail(Flight flight, Throwable error) {
+        if (!flight.leader()) return;
+        inFlight.remove(key(flight), flight.future());
+        flight.future().completeExceptionally(error);
+    }
+
+    /**
+     * Looks {@code query} up in {@code workspace}'s exact tier, then its near-duplicate tier if enabled.
+     * Counts a hit or a miss.
+     */
+    public Optional<Answer> lookup(String workspace, String query) {
+        if (!enabled) return Optional.empty();
+        String normalized = normalize(query);
+        long current = version(workspace).get();
+        long now = System.currentTimeMillis();
+
+        synchronized (entries) {
+            Entry entry = entries.get(new Scoped(workspace, normalized));
+            if (entry != null && isLive(entry, current, now)) {
+                exactHits.increment();
+                savedLatency.record(entry.latencyMillis());
+                return Optional.of(entry.answer());
+            }
+        }
+
+        if (semanticEnabled) {
+            float[] embedding = embeddingModel.embed(query);
+            Entry best = null;
+            double bestScore = semanticThreshold;
+            synchronized (entries) {
+                for (Entry entry : entries.values()) {
+                    if (entry.embedding() == null || !entry.workspace().equals(workspace)
+                            || !isLive(entry, current, now)) continue;
+                    double score = cosine(embedding, entry.embedding());
+                    if (score >= bestScore) {
+                        best = entry;
+                        bestScore = score;
+                    }
+                }
+            }
+            if (best != null) {
+                log.debug("Answering '{}' from a near-duplicate question (similarity {})", query, bestScore);
+                semanticHits.increment();
+                savedLatency.record(best.latencyMillis());
+                return Optional.of(best.answer());
+            }
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * Stores an answer unless ingestion has completed since {@code startedVersion} was read,
+     * since the answer may describe code that no longer exists.
+     */
+    private void put(long startedVersion, String workspace, String query, Answer answer, long latencyMillis) {
+        if (!enabled || answer.matchIds().isEmpty()) return;
+        String normalized = normalize(query);
+        float[] embedding = semanticEnabled ? embeddingModel.embed(query) : null;
+        synchronized (entries) {
+            if (startedVersion != version(workspace).get()) return;
+            entries.put(new Scoped(workspace, normalized), new Entry(startedVersion, workspace, answer, embedding,
+                    latencyMillis, System.currentTimeMillis()));
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (entries.size() > maxEntries && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    @EventListener
+    public void onWorkspaceChanged(WorkspaceChangedEvent event) {
+        invalidate(event.workspace());
+    }
+
+    /**
+     * Drops the cached answers of every workspace.
+     */
+    public void invalidate() {
+        synchronized (entries) {
+            versions.values().forEach(AtomicLong::incrementAndGet);
+            int dropped = entries.size();
+            entries.clear();
+            if (dropped > 0) log.info("Dropped {} cached answers", dropped);
+        }
+    }
+
+    public void invalidate(String workspace) {
+        synchronized (entries) {
+            version(workspace).incrementAndGet();
+            int before = entries.size();
+            entries.keySet().removeIf(scoped -> scoped.workspace().equals(workspace));
+            int dropped = before - entries.size();
+            if (dropped > 0) log.info("Dropped {} cached answers after workspace {} changed", dropped, workspace);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private AtomicLong version(String workspace) {
+        return versions.computeIfAbsent(workspace, id -> new AtomicLong());
+    }
+
+    private static Key key(Flight flight) {
+        return new Key(flight.version(), flight.workspace(), normalize(flight.query()));
+    }
+
+    private boolean isLive(Entry entry, long current, long now) {
+        return entry.version() == current && now - entry.createdMillis() < ttl.toMillis();
+    }
+
+    /**
+     * Surrounding whitespace and runs of whitespace do not change the question; case and punctuation may.
+     */
+    static String normalize(String query) {
+        return query.strip().replaceAll("\\s+", " ");
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        if (a.length != b.length) return 0;
+        double dot = 0, normA = 0, normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return normA == 0 || normB == 0 ? 0 : dot / Math.sqrt(normA * normB);
+    }
+}
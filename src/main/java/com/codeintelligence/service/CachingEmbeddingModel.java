@@ -0,0 +1,74 @@
+package com.codeintelligence.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptionsBuilder;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Embedding model decorator that answers from {@link EmbeddingCache} and only sends misses to the real model.
+ * The vector store batches through {@link #call(EmbeddingRequest)}, so cached texts never reach Ollama.
+ */
+@RequiredArgsConstructor
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+    private final EmbeddingCache cache;
+    private final String modelName;
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<String> texts = request.getInstructions();
+        String model = request.getOptions() != null && request.getOptions().getModel() != null
+                ? request.getOptions().getModel()
+                : modelName;
+
+        float[][] vectors = new float[texts.size()][];
+        String[] keys = new String[texts.size()];
+        List<String> missTexts = new ArrayList<>();
+        List<Integer> missPositions = new ArrayList<>();
+
+        for (int i = 0; i < texts.size(); i++) {
+            keys[i] = cache.key(model, texts.get(i));
+            vectors[i] = cache.get(keys[i]);
+            if (vectors[i] == null) {
+                missTexts.add(texts.get(i));
+                missPositions.add(i);
+            }
+        }
+
+        if (!missTexts.isEmpty()) {
+            EmbeddingResponse computed = delegate.call(new EmbeddingRequest(missTexts, request.getOptions()));
+            List<Embedding> results = computed.getResults();
+            for (int j = 0; j < results.size(); j++) {
+                Integer index = results.get(j).getIndex();
+                int position = missPositions.get(index != null ? index : j);
+                vectors[position] = results.get(j).getOutput();
+                cache.put(keys[position], vectors[position]);
+            }
+        }
+
+        List<Embedding> embeddings = new ArrayList<>(texts.size());
+        for (int i = 0; i < vectors.length; i++) {
+            embeddings.add(new Embedding(vectors[i], i));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return call(new EmbeddingRequest(List.of(document.getText()), EmbeddingOptionsBuilder.builder().build()))
+                .getResult().getOutput();
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+}
@@ -0,0 +1,244 @@
+package com.codeintelligence.service;
+
+import com.codeintelligence.core.DependencyGraph;
+import com.codeintelligence.core.TokenEstimator;
+import com.codeintelligence.core.Workspace;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Builds the user prompt of a chat request within a token budget.
+ * <p>
+ * Candidates are the retrieved matches and what a bounded traversal of the graph reaches from them, by default their
+ * call chains up to two hops out. A candidate's priority is its match's retrieval score, decayed by {@code hop-decay}
+ * per hop away from the match and raised by up to {@code importance-weight} for units many others depend on.
+ * Candidates are added highest priority first while they fit; one whose source overlaps a unit already added is
+ * skipped, and a match that no longer fits whole is cut short rather than dropped. Dependency and caller IDs are
+ * listed up to {@code listed-relations} per match.
+ */
+@Component
+@RequiredArgsConstructor
+public class ContextPacker {
+
+    /**
+     * How big the prompt came out, against what it was allowed, and how many units made it in or were left out.
+     */
+    public record Stats(int tokens, int budget, int units, int omitted) {
+    }
+
+    /**
+     * The prompt and the matches it includes.
+     */
+    public record Packed(List<String> matchIds, String prompt, Stats stats) {
+    }
+
+    private record Candidate(String id, String content, int match, int distance, String via,
+                             DependencyGraph.DependencyType type, double priority) {
+    }
+
+    // Below this, cutting a match short leaves too little of it to be worth including
+    private static final int MIN_TRUNCATED_TOKENS = 128;
+    private static final String TRUNCATED = "\n// ... cut to fit the context budget\n";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${codeintel.context.max-tokens:4000}")
+    private int maxTokens = 4000;
+
+    // What the graph expansion from the matches follows, and how far; see DependencyGraph#traverse
+    @Value("${codeintel.context.expansion.types:CALLS,IMPLEMENTS,EXTENDS,INJECTS}")
+    private Set<DependencyGraph.DependencyType> expansionTypes = EnumSet.of(DependencyGraph.DependencyType.CALLS,
+            DependencyGraph.DependencyType.IMPLEMENTS, DependencyGraph.DependencyType.EXTENDS,
+            DependencyGraph.DependencyType.INJECTS);
+
+    @Value("${codeintel.context.expansion.direction:OUTGOING}")
+    private DependencyGraph.Direction expansionDirection = DependencyGraph.Direction.OUTGOING;
+
+    @Value("${codeintel.context.expansion.max-hops:2}")
+    private int maxHops = 2;
+
+    @Value("${codeintel.context.expansion.fan-out:5}")
+    private int fanOut = 5;
+
+    @Value("${codeintel.context.expansion.max-visited:50}")
+    private int maxVisited = 50;
+
+    @Value("${codeintel.context.listed-relations:20}")
+    private int listedRelations = 20;
+
+    @Value("${codeintel.context.hop-decay:0.5}")
+    private double hopDecay = 0.5;
+
+    @Value("${codeintel.context.importance-weight:0.5}")
+    private double importanceWeight = 0.5;
+
+    private DependencyGraph.Traversal traversal;
+    private DistributionSummary promptTokens;
+    private Counter omittedUnits;
+
+    @PostConstruct
+    void init() {
+        traversal = new DependencyGraph.Traversal(expansionTypes, expansionDirection, maxHops, fanOut, maxVisited);
+        promptTokens = DistributionSummary.builder("codeintel.chat.prompt.tokens")
+                .description("Estimated tokens in the user prompt sent to the chat model")
+                .baseUnit("tokens")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        omittedUnits = Counter.builder("codeintel.chat.context.omitted")
+                .description("Candidate units left out of a prompt because they overlapped another or did not fit")
+                .register(meterRegistry);
+    }
+
+    public Packed pack(Workspace workspace, String query, List<RetrievalService.Match> hits) {
+        DependencyGraph graph = workspace.graph();
+        List<Candidate> ranked = rank(workspace, hits);
+
+        String head = "Question: " + query + "\n\nContext from Source Code:\n";
+        int used = TokenEstimator.count(head);
+        Map<String, String> blocks = new HashMap<>();
+        List<String> included = new ArrayList<>();
+        int omitted = 0;
+        for (Candidate candidate : ranked) {
+            if (overlaps(candidate.content(), included)) {
+                omitted++;
+                continue;
+            }
+            String block = block(graph, candidate, candidate.content());
+            int tokens = TokenEstimator.count(block);
+            if (used + tokens > maxTokens) {
+                int left = maxTokens - used;
+                if (candidate.distance() > 0 || (left < MIN_TRUNCATED_TOKENS && !blocks.isEmpty())) {
+                    omitted++;
+                    continue;
+                }
+                int room = left - TokenEstimator.count(block(graph, candidate, TRUNCATED));
+                block = block(graph, candidate, cut(candidate.content(), room) + TRUNCATED);
+                tokens = TokenEstimator.count(block);
+            }
+            blocks.put(candidate.id(), block);
+            included.add(candidate.content());
+            used += tokens;
+        }
+
+        // Each match is followed by the dependencies it brought in, in priority order
+        StringBuilder prompt = new StringBuilder(head);
+        List<String> matchIds = new ArrayList<>();
+        for (int i = 0; i < hits.size(); i++) {
+            String id = hits.get(i).id();
+            if (blocks.containsKey(id)) {
+                prompt.append(blocks.get(id));
+                matchIds.add(id);
+            }
+            for (Candidate candidate : ranked) {
+                if (candidate.match() == i && candidate.distance() > 0 && blocks.containsKey(candidate.id())) {
+                    prompt.append(blocks.get(candidate.id()));
+                }
+            }
+        }
+
+        promptTokens.record(used);
+        omittedUnits.increment(omitted);
+        return new Packed(matchIds, prompt.toString(), new Stats(used, maxTokens, blocks.size(), omitted));
+    }
+
+    /**
+     * Matches and what the traversal reached from them, each once, highest priority first.
+     */
+    private List<Candidate> rank(Workspace workspace, List<RetrievalService.Match> hits) {
+        DependencyGraph graph = workspace.graph();
+        List<DependencyGraph.Reached> reached = graph.traverse(
+                hits.stream().map(RetrievalService.Match::id).toList(), traversal);
+        Map<String, Integer> callers = new HashMap<>();
+        hits.forEach(hit -> callers.put(hit.id(), graph.getIncoming(hit.id()).size()));
+        reached.forEach(r -> callers.putIfAbsent(r.id(), graph.getIncoming(r.id()).size()));
+        double mostCallers = Math.log1p(callers.values().stream().mapToInt(Integer::intValue).max().orElse(0));
+
+        double top = hits.stream().mapToDouble(RetrievalService.Match::score).max().orElse(0);
+        Map<String, Integer> matches = new HashMap<>();
+        double[] relevance = new double[hits.size()];
+        Map<String, Candidate> candidates = new LinkedHashMap<>();
+        for (int i = 0; i < hits.size(); i++) {
+            RetrievalService.Match hit = hits.get(i);
+            matches.putIfAbsent(hit.id(), i);
+            relevance[i] = top > 0 ? hit.score() / top : 1;
+            candidates.putIfAbsent(hit.id(), new Candidate(hit.id(), hit.content(), i, 0, null, null,
+                    priority(relevance[i], 0, callers.get(hit.id()), mostCallers)));
+        }
+        for (DependencyGraph.Reached r : reached) {
+            if (r.distance() == 0) continue;
+            int match = matches.get(r.seed());
+            // Bodies come from the local content store, not another vector store round trip
+            workspace.contentStore().content(r.id()).ifPresent(content -> candidates.putIfAbsent(r.id(),
+                    new Candidate(r.id(), content, match, r.distance(), r.via(), r.type(),
+                            priority(relevance[match], r.distance(), callers.get(r.id()), mostCallers))));
+        }
+        return candidates.values().stream()
+                .sorted(Comparator.comparingDouble(Candidate::priority).reversed())
+                .toList();
+    }
+
+    private double priority(double relevance, int distance, int callers, double mostCallers) {
+        double importance = mostCallers > 0 ? Math.log1p(callers) / mostCallers : 0;
+        return relevance * Math.pow(hopDecay, distance) * (1 + importanceWeight * importance);
+    }
+
+    private String block(DependencyGraph graph, Candidate candidate, String content) {
+        if (candidate.distance() > 0) {
+            return "\n  --- Dependency: " + candidate.id() + " (" + candidate.type() + " from " + candidate.via()
+                    + ") ---\n" + content + "\n";
+        }
+        return "\n--- Found Match: " + candidate.id() + " ---\n" + content + "\n"
+                + relations("Dependencies", graph.getOutgoing(candidate.id()))
+                + relations("Called By", graph.getIncoming(candidate.id()));
+    }
+
+    private String relations(String label, List<String> ids) {
+        List<String> distinct = ids.stream().distinct().toList();
+        if (distinct.isEmpty()) return "";
+        String listed = distinct.stream().limit(listedRelations).collect(Collectors.joining(", "));
+        int more = distinct.size() - listedRelations;
+        return "\n  [" + label + "]: " + listed + (more > 0 ? " (+" + more + " more)" : "") + "\n";
+    }
+
+    /**
+     * As many whole lines of {@code content} as fit in {@code tokens}, or a prefix of the first line if none do.
+     */
+    private static String cut(String content, int tokens) {
+        if (tokens <= 0) return "";
+        StringBuilder kept = new StringBuilder();
+        int used = 0;
+        for (String line : content.split("(?<=\n)")) {
+            int cost = TokenEstimator.count(line);
+            if (used + cost > tokens) {
+                if (kept.isEmpty()) kept.append(line, 0, Math.min(line.length(), tokens));
+                break;
+            }
+            kept.append(line);
+            used += cost;
+        }
+        return kept.toString();
+    }
+
+    private static boolean overlaps(String content, List<String> included) {
+        if (content.isBlank()) return false;
+        for (String other : included) {
+            if (!other.isBlank() && (other.contains(content) || content.contains(other))) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,183 @@
+package com.codeintelligence.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Gathers documents and writes them to the vector store in batches.
+ * <p>
+ * A batch is flushed when it reaches {@code batch-size} or when its oldest document has waited {@code linger-ms}.
+ * Full batches are flushed on the calling thread, so producers slow down when the store does. Producers that need to
+ * know whether a document was stored, rather than just handed over, pass an {@link Outcome}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class EmbeddingBatchWriter {
+
+    private final VectorStore vectorStore;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${codeintel.embedding.batch-size:64}")
+    private int batchSize;
+
+    @Value("${codeintel.embedding.linger-ms:200}")
+    private long lingerMillis;
+
+    /**
+     * Told once per document whether the batch it went out in was stored. Called on the writing thread.
+     */
+    @FunctionalInterface
+    public interface Outcome {
+        void written(boolean stored);
+    }
+
+    private record Pending(Document document, Outcome outcome) {
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private List<Pending> buffer = new ArrayList<>();
+    private long oldestNanos;
+    // Batches taken from the buffer whose write has not returned yet; registered under the lock
+    private final Set<CompletableFuture<Void>> inFlight = ConcurrentHashMap.newKeySet();
+
+    private ScheduledExecutorService lingerTimer;
+    private DistributionSummary batchSizes;
+    private Timer flushTimer;
+    private Counter failedDocuments;
+
+    @PostConstruct
+    void init() {
+        batchSizes = DistributionSummary.builder("codeintel.embedding.batch.size")
+                .description("Documents per vector store write")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        flushTimer = Timer.builder("codeintel.embedding.flush")
+                .description("Latency of one batched vector store write, embedding included")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        failedDocuments = Counter.builder("codeintel.embedding.failed")
+                .description("Documents dropped because their batch failed to write")
+                .register(meterRegistry);
+
+        lingerTimer = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("embedding-linger").daemon().factory());
+        long period = Math.max(1, lingerMillis / 2);
+        lingerTimer.scheduleWithFixedDelay(this::flushIfLingering, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public void add(Document document, Outcome outcome) {
+        List<Pending> full = null;
+        CompletableFuture<Void> written = null;
+        lock.lock();
+        try {
+            if (buffer.isEmpty()) oldestNanos = System.nanoTime();
+            buffer.add(new Pending(document, outcome));
+            if (buffer.size() >= batchSize) {
+                full = swap();
+                written = started();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (full != null) write(full, written);
+    }
+
+    /**
+     * Writes whatever is buffered, regardless of size or age, and returns once every batch taken before this call,
+     * by other producers or the linger timer included, has been written or has failed.
+     */
+    public void flush() {
+        List<Pending> pending;
+        List<CompletableFuture<Void>> earlier;
+        CompletableFuture<Void> written = null;
+        lock.lock();
+        try {
+            earlier = List.copyOf(inFlight);
+            pending = swap();
+            if (!pending.isEmpty()) written = started();
+        } finally {
+            lock.unlock();
+        }
+        if (written != null) write(pending, written);
+        earlier.forEach(CompletableFuture::join);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        lingerTimer.shutdownNow();
+        flush();
+    }
+
+    private void flushIfLingering() {
+        List<Pending> pending = null;
+        CompletableFuture<Void> written = null;
+        lock.lock();
+        try {
+            if (!buffer.isEmpty() && System.nanoTime() - oldestNanos >= TimeUnit.MILLISECONDS.toNanos(lingerMillis)) {
+                pending = swap();
+                written = started();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (pending != null) write(pending, written);
+    }
+
+    // Caller must hold the lock
+    private List<Pending> swap() {
+        List<Pending> out = buffer;
+        buffer = new ArrayList<>(batchSize);
+        return out;
+    }
+
+    // Caller must hold the lock, so a flush that takes it next sees the batch as in flight
+    private CompletableFuture<Void> started() {
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        inFlight.add(written);
+        return written;
+    }
+
+    private void write(List<Pending> batch, CompletableFuture<Void> written) {
+        batchSizes.record(batch.size());
+        long start = System.nanoTime();
+        boolean stored = false;
+        try {
+            vectorStore.add(batch.stream().map(Pending::document).toList());
+            stored = true;
+        } catch (Exception e) {
+            failedDocuments.increment(batch.size());
+            log.error("Failed to write batch of {} documents to vector store", batch.size(), e);
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            for (Pending pending : batch) {
+                try {
+                    pending.outcome().written(stored);
+                } catch (RuntimeException e) {
+                    log.warn("Embedding outcome callback failed", e);
+                }
+            }
+            inFlight.remove(written);
+            written.complete(null);
+        }
+    }
+}
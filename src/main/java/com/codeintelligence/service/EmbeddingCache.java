@@ -0,0 +1,204 @@
+package com.codeintelligence.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * On-disk LRU cache of embedding vectors keyed by (embedding model, normalized content hash).
+ * <p>
+ * Each vector is one small file under {@code codeintel.embedding.cache.dir}. Only the key index lives on the heap,
+ * kept in access order so the least recently used vectors are deleted once the cache exceeds its size cap.
+ * File mtimes are bumped on hit so the LRU order survives restarts.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class EmbeddingCache {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${codeintel.embedding.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${codeintel.embedding.cache.dir:${user.home}/.code-intelligence/embeddings}")
+    private Path directory;
+
+    @Value("${codeintel.embedding.cache.max-size-mb:512}")
+    private long maxSizeMb;
+
+    // key -> file size in bytes, in access order
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private Counter hits;
+    private Counter misses;
+    private Counter evictions;
+
+    @PostConstruct
+    void init() throws IOException {
+        hits = Counter.builder("codeintel.embedding.cache.hits").register(meterRegistry);
+        misses = Counter.builder("codeintel.embedding.cache.misses").register(meterRegistry);
+        evictions = Counter.builder("codeintel.embedding.cache.evictions").register(meterRegistry);
+        Gauge.builder("codeintel.embedding.cache.size", this, c -> c.sizeBytes())
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        if (!enabled) return;
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.walk(directory, 2)) {
+            List<Path> existing = files.filter(f -> f.toString().endsWith(".vec"))
+                    .sorted(Comparator.comparing(EmbeddingCache::modifiedTime))
+                    .toList();
+            synchronized (index) {
+                for (Path file : existing) {
+                    String name = file.getFileName().toString();
+                    long size = Files.size(file);
+                    index.put(name.substring(0, name.length() - 4), size);
+                    totalBytes += size;
+                }
+            }
+        }
+        log.info("Embedding cache at {} holds {} vectors ({} KB)", directory, index.size(), totalBytes / 1024);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String key(String model, String content) {
+        MessageDigest digest = sha256();
+        digest.update(model.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(normalize(content).getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Returns the cached vector for {@code key}, or null on a miss.
+     */
+    public float[] get(String key) {
+        synchronized (index) {
+            if (index.get(key) == null) {
+                misses.increment();
+                return null;
+            }
+        }
+        Path file = fileFor(key);
+        try {
+            ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+            float[] vector = new float[bytes.remaining() / Float.BYTES];
+            bytes.asFloatBuffer().get(vector);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            hits.increment();
+            return vector;
+        } catch (IOException e) {
+            // Evicted or removed underneath us; treat as a miss
+            forget(key);
+            misses.increment();
+            return null;
+        }
+    }
+
+    public void put(String key, float[] vector) {
+        ByteBuffer bytes = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.asFloatBuffer().put(vector);
+        Path file = fileFor(key);
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + "." + Thread.currentThread().threadId() + ".tmp");
+            Files.write(tmp, bytes.array());
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to cache embedding {}", key, e);
+            return;
+        }
+
+        List<String> evicted = new ArrayList<>();
+        synchronized (index) {
+            Long previous = index.put(key, (long) bytes.capacity());
+            totalBytes += bytes.capacity() - (previous == null ? 0 : previous);
+            Iterator<Map.Entry<String, Long>> eldest = index.entrySet().iterator();
+            while (totalBytes > maxSizeMb * 1024 * 1024 && eldest.hasNext()) {
+                Map.Entry<String, Long> entry = eldest.next();
+                if (entry.getKey().equals(key)) break;
+                totalBytes -= entry.getValue();
+                evicted.add(entry.getKey());
+                eldest.remove();
+            }
+        }
+        for (String gone : evicted) {
+            try {
+                Files.deleteIfExists(fileFor(gone));
+                evictions.increment();
+            } catch (IOException e) {
+                log.warn("Failed to evict cached embedding {}", gone, e);
+            }
+        }
+    }
+
+    public long sizeBytes() {
+        synchronized (index) {
+            return totalBytes;
+        }
+    }
+
+    /**
+     * Collapses whitespace runs so formatting-only differences share a cache entry.
+     */
+    static String normalize(String content) {
+        return content.strip().replaceAll("\\s+", " ");
+    }
+
+    private void forget(String key) {
+        synchronized (index) {
+            Long size = index.remove(key);
+            if (size != null) totalBytes -= size;
+        }
+    }
+
+    private Path fileFor(String key) {
+        // Two-character fan-out keeps directories small
+        return directory.resolve(key.substring(0, 2)).resolve(key + ".vec");
+    }
+
+    private static FileTime modifiedTime(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -2,34 +2,33 @@ package com.codeintelligence.service;
 
 import com.codeintelligence.core.CodeUnit;
 import com.codeintelligence.core.DependencyGraph;
-import com.codeintelligence.ingestion.CodeParsedEvent;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class GraphService {
 
-    private final DependencyGraph dependencyGraph;
-
-    @EventListener
-    public void onCodeParsed(CodeParsedEvent event) {
-        CodeUnit unit = event.codeUnit();
-        log.debug("Adding node to graph: {}", unit.id());
-        
-        // Add the node itself
-        dependencyGraph.addNode(unit.id());
+    /**
+     * Adds the units of one source file and their structural edges in a single graph write.
+     * Edges between files are resolved later by {@link com.codeintelligence.ingestion.EdgeResolver}.
+     */
+    public void index(DependencyGraph dependencyGraph, List<CodeUnit> units) {
+        log.debug("Adding {} nodes to graph", units.size());
+        DependencyGraph.Batch batch = new DependencyGraph.Batch();
+        for (CodeUnit unit : units) {
+            // Add the node itself
+            batch.node(unit.id());
 
-        // Basic Structural Edges (Method -> Class)
-        if (unit instanceof CodeUnit.MethodUnit method) {
-             // Link method to its parent class
-             dependencyGraph.addDependency(method.parentClassId(), method.id(), DependencyGraph.DependencyType.USES);
+            // Basic Structural Edges (Method -> Class)
+            if (unit instanceof CodeUnit.MethodUnit method) {
+                batch.edge(method.parentClassId(), method.id(), DependencyGraph.DependencyType.USES);
+            }
         }
-        
-        // TODO: Advanced edge resolution (scanning imports, types, method calls)
-        // This would require a second pass or richer event data from JavaParserService
+        dependencyGraph.apply(batch);
     }
 }
@@ -0,0 +1,112 @@
+package com.codeintelligence.service;
+
+import com.codeintelligence.core.GraphSnapshot;
+import com.codeintelligence.core.Workspace;
+import com.codeintelligence.core.WorkspaceRegistry;
+import com.codeintelligence.ingestion.IncrementalIngestionService;
+import com.codeintelligence.ingestion.IngestionCompletedEvent;
+import com.codeintelligence.ingestion.IngestionPipeline;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a binary snapshot of each workspace's dependency graph on disk so a restart does not lose it.
+ * Saved after every completed ingestion into that workspace and on shutdown; restored on startup.
+ * The default workspace's snapshot lives at {@code codeintel.graph.snapshot.path}, the others' in their workspace
+ * directories.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class GraphSnapshotService {
+
+    private static final String FILE_NAME = "graph.snapshot";
+
+    private final WorkspaceRegistry workspaceRegistry;
+    private final IngestionPipeline ingestionPipeline;
+    private final IncrementalIngestionService incrementalIngestionService;
+
+    @Value("${codeintel.graph.snapshot.enabled:true}")
+    private boolean enabled;
+
+    @Value("${codeintel.graph.snapshot.path:${user.home}/.code-intelligence/graph.snapshot}")
+    private Path snapshotFile;
+
+    // Per workspace ID: root its graph was last built from, carried in the snapshot so incremental ingestion
+    // survives restarts
+    private final Map<String, String> labels = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void restore() {
+        if (!enabled) return;
+        for (Workspace workspace : workspaceRegistry.all()) {
+            restore(workspace);
+        }
+    }
+
+    private void restore(Workspace workspace) {
+        Path file = snapshotFile(workspace);
+        if (!Files.exists(file)) return;
+        long start = System.nanoTime();
+        try {
+            GraphSnapshot.Header header = workspace.graph().restoreSnapshot(file);
+            labels.put(workspace.id(), header.label());
+            if (!header.label().isEmpty()) {
+                incrementalIngestionService.resume(workspace, Path.of(header.label()));
+            }
+            log.info("Restored graph snapshot {} ({} nodes, {} edges) in {} ms",
+                    file, header.nodes(), header.edges(), (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            // A bad snapshot only costs a re-ingest
+            log.warn("Ignoring unreadable graph snapshot {}", file, e);
+        }
+    }
+
+    @EventListener
+    public void onIngestionCompleted(IngestionCompletedEvent event) {
+        workspaceRegistry.find(event.report().workspace()).ifPresent(workspace -> {
+            labels.put(workspace.id(), event.report().root());
+            save(workspace);
+        });
+    }
+
+    @PreDestroy
+    void saveOnShutdown() {
+        // A half-ingested graph would not match the manifest; keep the last complete snapshot instead
+        if (ingestionPipeline.hasRunningJobs()) {
+            log.info("Ingestion in progress; keeping previous graph snapshots");
+            return;
+        }
+        for (Workspace workspace : workspaceRegistry.all()) {
+            save(workspace);
+        }
+    }
+
+    private void save(Workspace workspace) {
+        if (!enabled) return;
+        Path file = snapshotFile(workspace);
+        long start = System.nanoTime();
+        try {
+            GraphSnapshot.Header header = workspace.graph().saveSnapshot(file, labels.getOrDefault(workspace.id(), ""));
+            log.info("Saved graph snapshot {} ({} nodes, {} edges) in {} ms",
+                    file, header.nodes(), header.edges(), (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            log.error("Failed to save graph snapshot {}", file, e);
+        }
+    }
+
+    private Path snapshotFile(Workspace workspace) {
+        return workspace.isDefault() ? snapshotFile : workspaceRegistry.directory(workspace.id()).resolve(FILE_NAME);
+    }
+}
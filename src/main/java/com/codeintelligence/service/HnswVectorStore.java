@@ -0,0 +1,369 @@
+package com.codeintelligence.service;
+
+import com.codeintelligence.core.HnswIndex;
+import com.codeintelligence.ingestion.IngestionCompletedEvent;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.context.event.EventListener;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process {@link VectorStore} on an {@link HnswIndex}, selected with {@code codeintel.vector.store=hnsw}.
+ * <p>
+ * Saves the vector store's network hop and JSON round trip on every search and batch write. Vectors are kept in a
+ * memory-mapped file in {@code codeintel.vector.hnsw.dir}; links, document text and metadata are written next to
+ * it after every completed ingestion and on shutdown. Searches never block, and inserts run alongside them;
+ * only saving pauses writers. Filter expressions are evaluated against document metadata
+ * (EQ, NE, IN, NIN, comparisons, AND, OR, NOT).
+ */
+@Slf4j
+public class HnswVectorStore implements VectorStore {
+
+    private static final String VECTORS = "vectors.f32";
+    private static final String INDEX = "index.bin";
+
+    private record Stored(String id, String content, Map<String, Object> metadata) {
+    }
+
+    private final EmbeddingModel embeddingModel;
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+
+    // Inserts and deletes share the read side; saving and rebuilding take the write side
+    private final ReadWriteLock writers = new ReentrantReadWriteLock();
+    private volatile HnswIndex index;
+    private volatile Map<String, Integer> nodesById = new ConcurrentHashMap<>();
+    private volatile Map<Integer, Stored> documents = new ConcurrentHashMap<>();
+
+    public HnswVectorStore(EmbeddingModel embeddingModel, ObjectMapper objectMapper, Path directory,
+                           int m, int efConstruction, int efSearch) {
+        this.embeddingModel = embeddingModel;
+        this.objectMapper = objectMapper;
+        this.directory = directory;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+    }
+
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+        Path indexFile = directory.resolve(INDEX);
+        if (!Files.exists(indexFile)) return;
+        long start = System.nanoTime();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile), 1 << 16))) {
+            HnswIndex restored = HnswIndex.read(in, directory.resolve(VECTORS));
+            int docs = in.readInt();
+            for (int i = 0; i < docs; i++) {
+                int node = in.readInt();
+                Stored stored = new Stored(in.readUTF(), readText(in),
+                        objectMapper.readValue(readText(in), new TypeReference<Map<String, Object>>() { }));
+                documents.put(node, stored);
+                nodesById.put(stored.id(), node);
+            }
+            index = restored;
+            log.info("Restored HNSW index {} ({} documents) in {} ms", directory, docs, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            // Vectors are derived data; a re-ingest rebuilds them
+            log.warn("Ignoring unreadable HNSW index in {}", directory, e);
+            nodesById.clear();
+            documents.clear();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "HnswVectorStore";
+    }
+
+    @Override
+    public void add(List<Document> batch) {
+        if (batch.isEmpty()) return;
+        List<float[]> embeddings = embeddingModel.embed(batch.stream().map(Document::getText).toList());
+        writers.readLock().lock();
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                Document document = batch.get(i);
+                HnswIndex target = indexFor(embeddings.get(i).length);
+                int node = target.add(embeddings.get(i));
+                documents.put(node, new Stored(document.getId(), document.getText(), Map.copyOf(document.getMetadata())));
+                // Same ID again replaces the old vector, as Chroma's upsert does
+                Integer previous = nodesById.put(document.getId(), node);
+                if (previous != null) {
+                    target.markDeleted(previous);
+                    documents.remove(previous);
+                }
+            }
+        } finally {
+            writers.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Boolean> delete(List<String> ids) {
+        writers.readLock().lock();
+        try {
+            for (String id : ids) {
+                Integer node = nodesById.remove(id);
+                if (node != null) {
+                    index.markDeleted(node);
+                    documents.remove(node);
+                }
+            }
+            return Optional.of(true);
+        } finally {
+            writers.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        HnswIndex current = index;
+        if (current == null) return List.of();
+        float[] query = embeddingModel.embed(request.getQuery());
+        Filter.Expression filter = request.getFilterExpression();
+        Map<Integer, Stored> docs = documents;
+
+        List<HnswIndex.Hit> hits = current.search(query, request.getTopK(), Math.max(efSearch, request.getTopK()),
+                node -> {
+                    Stored stored = docs.get(node);
+                    return stored != null && (filter == null || matches(filter, stored.metadata()));
+                });
+
+        List<Document> results = new ArrayList<>(hits.size());
+        for (HnswIndex.Hit hit : hits) {
+            if (hit.score() < request.getSimilarityThreshold()) continue;
+            Stored stored = docs.get(hit.node());
+            if (stored == null) continue;
+            Map<String, Object> metadata = new HashMap<>(stored.metadata());
+            metadata.put("distance", 1 - hit.score());
+            results.add(Document.builder()
+                    .id(stored.id())
+                    .text(stored.content())
+                    .metadata(metadata)
+                    .score((double) hit.score())
+                    .build());
+        }
+        return results;
+    }
+
+    /**
+     * Recall@k and mean latency of the approximate search against an exact scan of the same vectors,
+     * using stored vectors as queries.
+     */
+    public record Evaluation(int documents, int queries, int k, double recall, double approximateMicros, double exactMicros) {
+    }
+
+    public Evaluation evaluate(int queries, int k) {
+        HnswIndex current = index;
+        if (current == null || current.size() == 0) return new Evaluation(0, 0, k, 1, 0, 0);
+        int found = 0;
+        int expected = 0;
+        int asked = 0;
+        long approximateNanos = 0;
+        long exactNanos = 0;
+        int step = Math.max(1, current.size() / queries);
+        for (int node = 0; node < current.size() && asked < queries; node += step) {
+            if (current.isDeleted(node)) continue;
+            float[] query = current.vector(node);
+            long t0 = System.nanoTime();
+            List<HnswIndex.Hit> approximate = current.search(query, k, Math.max(efSearch, k), n -> true);
+            long t1 = System.nanoTime();
+            List<Integer> exact = current.exactSearch(query, k, n -> true).stream().map(HnswIndex.Hit::node).toList();
+            long t2 = System.nanoTime();
+            approximateNanos += t1 - t0;
+            exactNanos += t2 - t1;
+            found += (int) approximate.stream().filter(hit -> exact.contains(hit.node())).count();
+            expected += exact.size();
+            asked++;
+        }
+        return new Evaluation(size(), asked, k, expected == 0 ? 1 : (double) found / expected,
+                asked == 0 ? 0 : approximateNanos / 1000.0 / asked,
+                asked == 0 ? 0 : exactNanos / 1000.0 / asked);
+    }
+
+    public int size() {
+        return nodesById.size();
+    }
+
+    @EventListener
+    public void onIngestionCompleted(IngestionCompletedEvent event) {
+        save();
+    }
+
+    /**
+     * Rebuilds the index if more than half of it is deleted, then writes links and documents atomically.
+     */
+    public void save() {
+        writers.writeLock().lock();
+        try {
+            if (index == null) return;
+            if (index.deletedCount() * 2 > index.size()) rebuild();
+            long start = System.nanoTime();
+            Path tmp = directory.resolve(INDEX + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+                index.write(out);
+                out.writeInt(documents.size());
+                for (Map.Entry<Integer, Stored> e : documents.entrySet()) {
+                    out.writeInt(e.getKey());
+                    out.writeUTF(e.getValue().id());
+                    writeText(out, e.getValue().content());
+                    writeText(out, objectMapper.writeValueAsString(e.getValue().metadata()));
+                }
+            }
+            Files.move(tmp, directory.resolve(INDEX), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Saved HNSW index ({} documents) in {} ms", documents.size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            log.error("Failed to save HNSW index in {}", directory, e);
+        } finally {
+            writers.writeLock().unlock();
+        }
+    }
+
+    public void close() throws IOException {
+        save();
+        if (index != null) index.close();
+    }
+
+    /**
+     * Re-inserts live vectors into a fresh index over a new vector file. Searches keep using the old index
+     * until the swap.
+     */
+    private void rebuild() throws IOException {
+        long start = System.nanoTime();
+        HnswIndex old = index;
+        Path tmpVectors = directory.resolve(VECTORS + ".tmp");
+        Files.deleteIfExists(tmpVectors);
+        HnswIndex fresh = new HnswIndex(tmpVectors, old.dimensions(), m, efConstruction);
+        Map<String, Integer> freshIds = new ConcurrentHashMap<>();
+        Map<Integer, Stored> freshDocs = new ConcurrentHashMap<>();
+        for (Map.Entry<Integer, Stored> e : documents.entrySet()) {
+            int node = fresh.add(old.vector(e.getKey()));
+            freshDocs.put(node, e.getValue());
+            freshIds.put(e.getValue().id(), node);
+        }
+        // Any search still running holds the old index; its mapping stays valid after the file is replaced
+        Files.move(tmpVectors, directory.resolve(VECTORS), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        index = fresh;
+        documents = freshDocs;
+        nodesById = freshIds;
+        old.close();
+        log.info("Rebuilt HNSW index without deleted vectors ({} -> {}) in {} ms",
+                old.size(), fresh.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private HnswIndex indexFor(int dimensions) {
+        HnswIndex current = index;
+        if (current != null) {
+            if (current.dimensions() != dimensions) {
+                throw new IllegalStateException("Embedding has " + dimensions + " dimensions but the index holds "
+                        + current.dimensions() + "; delete " + directory + " after changing the embedding model");
+            }
+            return current;
+        }
+        synchronized (this) {
+            if (index == null) {
+                try {
+                    index = new HnswIndex(directory.resolve(VECTORS), dimensions, m, efConstruction);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return index;
+        }
+    }
+
+    static boolean matches(Filter.Operand operand, Map<String, Object> metadata) {
+        if (operand instanceof Filter.Group group) return matches(group.content(), metadata);
+        if (!(operand instanceof Filter.Expression expression)) {
+            throw new IllegalArgumentException("Unsupported filter operand: " + operand);
+        }
+        return switch (expression.type()) {
+            case AND -> matches(expression.left(), metadata) && matches(expression.right(), metadata);
+            case OR -> matches(expression.left(), metadata) || matches(expression.right(), metadata);
+            case NOT -> !matches(expression.left(), metadata);
+            case EQ -> Objects.equals(normalize(metadata.get(key(expression))), normalize(value(expression)));
+            case NE -> !Objects.equals(normalize(metadata.get(key(expression))), normalize(value(expression)));
+            case IN -> values(expression).contains(normalize(metadata.get(key(expression))));
+            case NIN -> !values(expression).contains(normalize(metadata.get(key(expression))));
+            case GT, GTE, LT, LTE -> compare(expression, metadata.get(key(expression)));
+        };
+    }
+
+    private static boolean compare(Filter.Expression expression, Object actual) {
+        if (actual == null) return false;
+        Object expected = value(expression);
+        int c = actual instanceof Number a && expected instanceof Number e
+                ? Double.compare(a.doubleValue(), e.doubleValue())
+                : actual.toString().compareTo(String.valueOf(expected));
+        return switch (expression.type()) {
+            case GT -> c > 0;
+            case GTE -> c >= 0;
+            case LT -> c < 0;
+            default -> c <= 0;
+        };
+    }
+
+    private static String key(Filter.Expression expression) {
+        String key = ((Filter.Key) expression.left()).key();
+        // The filter parser keeps quotes around keys written as 'key' or "key"
+        return key.length() > 1 && (key.startsWith("'") || key.startsWith("\"")) ? key.substring(1, key.length() - 1) : key;
+    }
+
+    private static Object value(Filter.Expression expression) {
+        return ((Filter.Value) expression.right()).value();
+    }
+
+    private static Collection<Object> values(Filter.Expression expression) {
+        Object value = value(expression);
+        List<Object> values = new ArrayList<>();
+        if (value instanceof Collection<?> collection) collection.forEach(v -> values.add(normalize(v)));
+        else values.add(normalize(value));
+        return values;
+    }
+
+    // Metadata read back from JSON has Integer where the filter may carry Long, and vice versa
+    private static Object normalize(Object value) {
+        return value instanceof Number n && !(value instanceof Double || value instanceof Float) ? n.longValue() : value;
+    }
+
+    private static void writeText(DataOutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readText(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,130 @@
+package com.codeintelligence.service;
+
+import com.codeintelligence.core.ContentStore;
+import com.codeintelligence.core.IdentifierTokenizer;
+import com.codeintelligence.core.LexicalIndex;
+import com.codeintelligence.core.Workspace;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the entry-point units for a question by fusing the {@link LexicalIndex} ranking with the vector store's.
+ * <p>
+ * Both rankings are merged with reciprocal-rank fusion, which needs no score calibration between BM25 and cosine
+ * similarity. When the question names an identifier and the best lexical hit is a unit of exactly that name, the
+ * vector search and its query embedding are skipped: the lexical ranking already has the answer.
+ * Both searches only see the asked workspace: its own lexical index, and vectors filtered on its ID.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RetrievalService {
+
+    /**
+     * A retrieved unit with the content to ground the answer on and its fused score.
+     */
+    public record Match(String id, String content, double score) {
+    }
+
+    private final VectorStore vectorStore;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${codeintel.retrieval.top-k:3}")
+    private int topK;
+
+    // Candidates taken from each ranking before fusion
+    @Value("${codeintel.retrieval.candidates:20}")
+    private int candidates;
+
+    // The usual RRF constant; larger values flatten the advantage of the first ranks
+    @Value("${codeintel.retrieval.rrf-k:60}")
+    private int rrfK;
+
+    private Counter lexicalOnly;
+    private Counter hybrid;
+
+    @PostConstruct
+    void init() {
+        lexicalOnly = Counter.builder("codeintel.retrieval.queries").tag("path", "lexical").register(meterRegistry);
+        hybrid = Counter.builder("codeintel.retrieval.queries").tag("path", "hybrid").register(meterRegistry);
+    }
+
+    public List<Match> retrieve(Workspace workspace, String query) {
+        ContentStore contentStore = workspace.contentStore();
+        List<LexicalIndex.Hit> lexical = workspace.lexicalIndex().search(query, candidates);
+
+        if (namesIdentifier(query, lexical)) {
+            lexicalOnly.increment();
+            log.debug("'{}' names {}; skipping vector search", query, lexical.getFirst().id());
+            List<Match> matches = new ArrayList<>();
+            for (LexicalIndex.Hit hit : lexical) {
+                if (matches.size() == topK) break;
+                contentStore.content(hit.id()).ifPresent(content -> matches.add(new Match(hit.id(), content, hit.score())));
+            }
+            if (!matches.isEmpty()) return matches;
+        }
+
+        hybrid.increment();
+        List<Document> semantic = vectorStore.similaritySearch(SearchRequest.builder()
+                .query(query)
+                .topK(candidates)
+                .filterExpression(VectorService.inWorkspace(workspace.id()))
+                .build());
+        return fuse(contentStore, lexical, semantic);
+    }
+
+    private List<Match> fuse(ContentStore contentStore, List<LexicalIndex.Hit> lexical, List<Document> semantic) {
+        Map<String, Double> scores = new HashMap<>();
+        Map<String, String> contents = new LinkedHashMap<>();
+        for (int rank = 0; rank < semantic.size(); rank++) {
+            Document doc = semantic.get(rank);
+            String id = (String) doc.getMetadata().get("id");
+            if (id == null || contents.containsKey(id)) continue;
+            // A chunk of a longer unit stands in for all of it
+            boolean partial = doc.getMetadata().get(VectorService.CHUNKS) instanceof Number n && n.intValue() > 1;
+            contents.put(id, partial ? contentStore.content(id).orElse(doc.getText()) : doc.getText());
+            scores.merge(id, 1.0 / (rrfK + rank + 1), Double::sum);
+        }
+        for (int rank = 0; rank < lexical.size(); rank++) {
+            scores.merge(lexical.get(rank).id(), 1.0 / (rrfK + rank + 1), Double::sum);
+        }
+
+        List<Map.Entry<String, Double>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort(Map.Entry.<String, Double>comparingByValue(Comparator.reverseOrder()));
+        List<Match> matches = new ArrayList<>();
+        for (Map.Entry<String, Double> e : ranked) {
+            if (matches.size() >= topK) break;
+            // Lexical-only hits read their body from the content store
+            String content = contents.containsKey(e.getKey())
+                    ? contents.get(e.getKey())
+                    : contentStore.content(e.getKey()).orElse(null);
+            if (content != null) matches.add(new Match(e.getKey(), content, e.getValue()));
+        }
+        return matches;
+    }
+
+    /**
+     * Whether the question is about a specific identifier the index knows, e.g. "where is scanDirectory used".
+     */
+    private static boolean namesIdentifier(String query, List<LexicalIndex.Hit> lexical) {
+        if (lexical.isEmpty()) return false;
+        String best = lexical.getFirst().name();
+        return best != null && IdentifierTokenizer.words(query).stream()
+                .anyMatch(word -> IdentifierTokenizer.looksLikeIdentifier(word) && word.equalsIgnoreCase(best));
+    }
+}
@@ -1,47 +1,141 @@
 package com.codeintelligence.service;
 
 import com.codeintelligence.core.CodeUnit;
-import com.codeintelligence.ingestion.CodeParsedEvent;
+import com.codeintelligence.core.Workspace;
+import com.codeintelligence.ingestion.CodeChunker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.vectorstore.VectorStore;
-import org.springframework.context.event.EventListener;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class VectorService {
 
+    /**
+     * Metadata key holding the workspace a vector belongs to; searches filter on it.
+     */
+    public static final String WORKSPACE = "workspace";
+
+    /**
+     * Metadata keys holding a vector's position among its unit's chunks, and how many chunks the unit has.
+     */
+    public static final String CHUNK = "chunk";
+    public static final String CHUNKS = "chunks";
+
+    private static final int DELETE_BATCH = 4096;
+
+    private final EmbeddingBatchWriter batchWriter;
     private final VectorStore vectorStore;
+    private final CodeChunker codeChunker;
+    private final MeterRegistry meterRegistry;
+
+    private Counter embeddedTokens;
+
+    @PostConstruct
+    void init() {
+        embeddedTokens = Counter.builder("codeintel.embedding.tokens")
+                .description("Estimated tokens sent for embedding, before the embedding cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues one document per chunk of {@code unit} and returns the estimated tokens they add up to. Each carries the
+     * unit's ID, so a hit on any chunk retrieves the unit. {@code outcome} is told once, when the last chunk's batch
+     * has been written, whether every chunk was stored.
+     */
+    public int embed(String workspace, CodeUnit unit, List<CodeChunker.Chunk> chunks,
+                     EmbeddingBatchWriter.Outcome outcome) {
+        log.debug("Vectorizing code unit: {} in {} chunks", unit.id(), chunks.size());
+
+        AtomicInteger remaining = new AtomicInteger(chunks.size());
+        AtomicBoolean failed = new AtomicBoolean();
+        EmbeddingBatchWriter.Outcome perChunk = stored -> {
+            if (!stored) failed.set(true);
+            if (remaining.decrementAndGet() == 0) outcome.written(!failed.get());
+        };
+        int tokens = 0;
+        for (CodeChunker.Chunk chunk : chunks) {
+            // Metadata is crucial for filtering and context reconstruction
+            Document document = new Document(
+                    documentId(workspace, unit.id(), chunk.index()),
+                    chunk.text(),
+                    Map.of(
+                            "id", unit.id(),
+                            "name", unit.name(),
+                            "type", unit.getClass().getSimpleName(),
+                            WORKSPACE, workspace,
+                            CHUNK, chunk.index(),
+                            CHUNKS, chunks.size()
+                    )
+            );
+            // Embedding and storing happen per batch, not per unit
+            batchWriter.add(document, perChunk);
+            tokens += chunk.tokens();
+        }
+        embeddedTokens.increment(tokens);
+        return tokens;
+    }
 
-    @Async
-    @EventListener
-    public void onCodeParsed(CodeParsedEvent event) {
-        CodeUnit unit = event.codeUnit();
-        log.debug("Vectorizing code unit: {}", unit.id());
-
-        // Create a Document from the CodeUnit
-        // Metadata is crucial for filtering and context reconstruction
-        Document document = new Document(
-                unit.content(),
-                Map.of(
-                        "id", unit.id(),
-                        "name", unit.name(),
-                        "type", unit.getClass().getSimpleName()
-                )
-        );
-
-        try {
-            // Embed and Store
-            vectorStore.add(List.of(document));
-        } catch (Exception e) {
-            log.error("Failed to vectorize unit: {}", unit.id(), e);
+    /**
+     * Deletes the vectors of the given units, e.g. when their source file changed or disappeared, each mapped to
+     * how many chunks it was embedded as. For a count that is not positive, i.e. not recorded, every chunk ID the
+     * unit could have is deleted.
+     */
+    public void remove(String workspace, Map<String, Integer> chunksByUnit) {
+        if (chunksByUnit.isEmpty()) return;
+        List<String> ids = new ArrayList<>(DELETE_BATCH);
+        for (Map.Entry<String, Integer> unit : chunksByUnit.entrySet()) {
+            int chunks = unit.getValue() > 0 ? unit.getValue() : codeChunker.maxChunks();
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                ids.add(documentId(workspace, unit.getKey(), chunk));
+            }
+            if (ids.size() >= DELETE_BATCH) {
+                vectorStore.delete(ids);
+                ids = new ArrayList<>(DELETE_BATCH);
+            }
         }
+        if (!ids.isEmpty()) vectorStore.delete(ids);
+    }
+
+    /**
+     * Vector store IDs are derived from the workspace and unit ID, so re-ingesting a unit overwrites its old vector
+     * and a unit's vectors can be deleted without looking them up first. The first chunk of a unit in the default
+     * workspace keeps the ID the whole unit had before there were workspaces or chunks.
+     */
+    public static String documentId(String workspace, String unitId, int chunk) {
+        String key = (Workspace.DEFAULT.equals(workspace) ? unitId : workspace + "/" + unitId)
+                + (chunk == 0 ? "" : "@" + chunk);
+        return UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /**
+     * Restricts a similarity search to one workspace's vectors.
+     */
+    public static Filter.Expression inWorkspace(String workspace) {
+        return new FilterExpressionBuilder().eq(WORKSPACE, workspace).build();
+    }
+
+    /**
+     * Pushes any partially filled batch to the store and waits for batches already on their way. Called when an
+     * ingestion run drains, so every outcome of the run has been reported by the time this returns.
+     */
+    public void flush() {
+        batchWriter.flush();
     }
 }
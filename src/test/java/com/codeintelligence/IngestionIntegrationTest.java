@@ -1,17 +1,48 @@
 package com.codeintelligence;
 
+import com.codeintelligence.api.IngestionController;
 import com.codeintelligence.core.DependencyGraph;
-import com.codeintelligence.ingestion.FileDiscoveryService;
+import com.codeintelligence.core.Workspace;
+import com.codeintelligence.core.WorkspaceRegistry;
+import com.codeintelligence.ingestion.ChangeSet;
+import com.codeintelligence.ingestion.IncrementalIngestionService;
+import com.codeintelligence.ingestion.IngestionInProgressException;
+import com.codeintelligence.ingestion.IngestionJob;
+import com.codeintelligence.ingestion.IngestionPipeline;
+import com.codeintelligence.ingestion.IngestionReport;
+import com.codeintelligence.service.AnswerCache;
+import com.codeintelligence.service.VectorService;
+import com.github.javaparser.symbolsolver.javaparsermodel.JavaParserFacade;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
 
-import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
@@ -19,16 +50,40 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 class IngestionIntegrationTest {
 
     @Autowired
-    private FileDiscoveryService fileDiscoveryService;
+    private IngestionPipeline ingestionPipeline;
+
+    @Autowired
+    private IncrementalIngestionService incrementalIngestionService;
 
     @Autowired
     private DependencyGraph dependencyGraph;
+
+    @Autowired
+    private WorkspaceRegistry workspaceRegistry;
+
+    @Autowired
+    private IngestionController ingestionController;
+
+    @Autowired
+    private AnswerCache answerCache;
+
+    @TempDir
+    static Path dataDir;
+
+    @DynamicPropertySource
+    static void localStorage(DynamicPropertyRegistry registry) {
+        registry.add("codeintel.manifest.dir", () -> dataDir.resolve("manifests").toString());
+        registry.add("codeintel.embedding.cache.dir", () -> dataDir.resolve("embeddings").toString());
+        registry.add("codeintel.graph.snapshot.path", () -> dataDir.resolve("graph.snapshot").toString());
+        registry.add("codeintel.content.path", () -> dataDir.resolve("content.seg").toString());
+        registry.add("codeintel.workspace.dir", () -> dataDir.resolve("workspaces").toString());
+    }
     
     @org.springframework.boot.test.mock.mockito.MockBean
     private org.springframework.ai.vectorstore.VectorStore vectorStore;
 
     @Test
-    void testIngestionFlow() throws IOException, InterruptedException {
+    void testIngestionFlow() throws Exception {
         // 1. Create a dummy Java file
         Path tempDir = Files.createTempDirectory("code-intel-test");
         String javaCode = """
@@ -42,21 +97,227 @@ class IngestionIntegrationTest {
             """;
         Files.writeString(tempDir.resolve("HelloWorld.java"), javaCode);
 
-        // 2. Trigger Scan
-        int count = fileDiscoveryService.scanDirectory(tempDir);
-        
-        // 3. Wait for Async Processing (Simple sleep for MVP test)
-        Thread.sleep(2000);
+        // 2. Trigger Ingestion and wait for every stage to drain
+        IngestionReport report = ingestionPipeline.submit(tempDir).completion().get(30, TimeUnit.SECONDS);
 
-        // 4. Assertions
-        // Graph should contain the Class node
+        // 3. Assertions
         // Warning: This assertion depends on the exact ID format "com.example.HelloWorld"
         // and "com.example.HelloWorld#sayHello"
-        
-        // Cannot easily assert private fields of Graph without exposed methods, 
-        // effectively testing that no exception occurred and beans are wired.
-        // For a real test, one would inspect the graph state.
-        
-        assertTrue(count > 0);
+        assertTrue(report.filesDiscovered() > 0);
+        assertEquals(1, report.filesParsed());
+        assertEquals(2, report.unitsIndexed());
+        assertEquals(List.of("com.example.HelloWorld#sayHello"), dependencyGraph.getOutgoing("com.example.HelloWorld"));
+    }
+
+    @Test
+    void testIncrementalReingestion() throws Exception {
+        Path tempDir = Files.createTempDirectory("code-intel-incremental");
+        Files.writeString(tempDir.resolve("Kept.java"), "package com.example; public class Kept { void a() {} }");
+        Files.writeString(tempDir.resolve("Edited.java"), "package com.example; public class Edited { void before() {} }");
+        Files.writeString(tempDir.resolve("Deleted.java"), "package com.example; public class Deleted { }");
+
+        IngestionReport first = incrementalIngestionService.ingest(tempDir, false).completion().get(30, TimeUnit.SECONDS);
+        assertEquals(new ChangeSet.Summary(3, 0, 0, 0), first.changes());
+
+        // Content change, deletion and addition; Kept.java is untouched
+        Files.writeString(tempDir.resolve("Edited.java"), "package com.example; public class Edited { void after() {} }");
+        Files.delete(tempDir.resolve("Deleted.java"));
+        Files.writeString(tempDir.resolve("Added.java"), "package com.example; public class Added { }");
+
+        Mockito.clearInvocations(vectorStore);
+        IngestionReport second = incrementalIngestionService.ingest(tempDir, false).completion().get(30, TimeUnit.SECONDS);
+        assertEquals(new ChangeSet.Summary(1, 1, 1, 1), second.changes());
+        assertEquals(2, second.filesParsed());
+
+        // Each unit was a single chunk, so only that one vector ID is deleted for it: the changed file's units before
+        // re-embedding, then the deleted file's unit and the method that vanished from the changed file
+        ArgumentCaptor<List<String>> deleted = ArgumentCaptor.captor();
+        Mockito.verify(vectorStore, Mockito.atLeastOnce()).delete(deleted.capture());
+        assertEquals(Stream.of("com.example.Edited", "com.example.Edited#before", "com.example.Deleted",
+                        "com.example.Edited#before")
+                        .map(id -> VectorService.documentId(Workspace.DEFAULT, id, 0)).sorted().toList(),
+                deleted.getAllValues().stream().flatMap(List::stream).sorted().toList());
+
+        assertEquals(List.of("com.example.Edited#after"), dependencyGraph.getOutgoing("com.example.Edited"));
+        assertEquals(List.of(), dependencyGraph.getIncoming("com.example.Edited#before"));
+        assertEquals(List.of("com.example.Kept#a"), dependencyGraph.getOutgoing("com.example.Kept"));
+        assertEquals(5, dependencyGraph.nodeCount()); // Kept, Kept#a, Edited, Edited#after, Added
+    }
+
+    @Test
+    void testEdgeResolution() throws Exception {
+        Path tempDir = Files.createTempDirectory("code-intel-resolution");
+        Path pkg = Files.createDirectories(tempDir.resolve("src/main/java/com/example/edges"));
+        Files.writeString(pkg.resolve("Greeter.java"), "package com.example.edges; public interface Greeter { String greet(); }");
+        Files.writeString(pkg.resolve("Base.java"), "package com.example.edges; public class Base { protected String name() { return \"x\"; } }");
+        Files.writeString(pkg.resolve("Repo.java"), "package com.example.edges; public class Repo { public String load() { return \"y\"; } }");
+        Files.writeString(pkg.resolve("Impl.java"), """
+            package com.example.edges;
+
+            @Service
+            @RequiredArgsConstructor
+            public class Impl extends Base implements Greeter {
+                private final Repo repo;
+
+                public String greet() {
+                    return name() + repo.load() + String.valueOf(1);
+                }
+            }
+            """);
+
+        IngestionReport report = ingestionPipeline.submit(tempDir).completion().get(30, TimeUnit.SECONDS);
+
+        assertEquals(4, report.resolution().files());
+        List<String> implOut = dependencyGraph.getOutgoing("com.example.edges.Impl");
+        assertTrue(implOut.containsAll(List.of("com.example.edges.Base", "com.example.edges.Greeter", "com.example.edges.Repo")));
+        assertTrue(dependencyGraph.getOutgoing("com.example.edges.Impl#greet")
+                .containsAll(List.of("com.example.edges.Base#name", "com.example.edges.Repo#load")));
+        // The run's solvers, with their jars and parsed sources, are not kept in JavaParser's static cache
+        assertEquals(Map.of(), ReflectionTestUtils.getField(JavaParserFacade.class, "instances"));
+    }
+
+    @Test
+    void testImportsShadowSimpleNameMatches() throws Exception {
+        Path tempDir = Files.createTempDirectory("code-intel-imports");
+        Path model = Files.createDirectories(tempDir.resolve("src/main/java/com/example/model"));
+        Path app = Files.createDirectories(tempDir.resolve("src/main/java/com/example/app"));
+        Files.writeString(model.resolve("List.java"), "package com.example.model; public class List { }");
+        Files.writeString(model.resolve("Outer.java"),
+                "package com.example.model; public class Outer { public static class Inner { } }");
+        Files.writeString(app.resolve("Holder.java"), """
+            package com.example.app;
+
+            import java.util.List;
+import java.util.Map;
+            import com.example.model.Outer.Inner;
+
+            @Service
+            @RequiredArgsConstructor
+            public class Holder {
+                private final List items;
+                private final Inner inner;
+            }
+            """);
+
+        ingestionPipeline.submit(tempDir).completion().get(30, TimeUnit.SECONDS);
+
+        List<String> holderOut = dependencyGraph.getOutgoing("com.example.app.Holder");
+        assertTrue(holderOut.contains("com.example.model.Inner"), holderOut.toString());
+        assertFalse(holderOut.contains("com.example.model.List"), holderOut.toString());
+    }
+
+    @Test
+    void testConcurrentIngestIntoSameWorkspaceIsRejected() throws Exception {
+        Path tempDir = Files.createTempDirectory("code-intel-concurrent");
+        for (int i = 0; i < 200; i++) {
+            Files.writeString(tempDir.resolve("Busy" + i + ".java"),
+                    "package com.example.busy; public class Busy" + i + " { void run() { new Busy" + (i + 1) + "().run(); } }");
+        }
+        Workspace workspace = workspaceRegistry.get("busy");
+
+        IngestionJob first = incrementalIngestionService.ingest(workspace, tempDir, false);
+        IngestionInProgressException rejected = assertThrows(IngestionInProgressException.class,
+                () -> incrementalIngestionService.ingest(workspace, tempDir, true));
+        assertEquals(first.id(), rejected.jobId());
+
+        // The rejected full rebuild did not clear what the first job is writing
+        IngestionReport report = first.completion().get(30, TimeUnit.SECONDS);
+        assertEquals(200, report.filesParsed());
+        assertEquals(400, workspace.graph().nodeCount());
+
+        IngestionReport next = incrementalIngestionService.ingest(workspace, tempDir, false).completion().get(30, TimeUnit.SECONDS);
+        assertEquals(new ChangeSet.Summary(0, 0, 0, 200), next.changes());
+    }
+
+    @Test
+    void testRootSwitchDeletesVectorsOfPreviousRoot() throws Exception {
+        Path first = Files.createTempDirectory("code-intel-first-root");
+        Path second = Files.createTempDirectory("code-intel-second-root");
+        Files.writeString(first.resolve("Old.java"), "package com.example.old; public class Old { void run() {} }");
+        Files.writeString(second.resolve("New.java"), "package com.example.fresh; public class New { }");
+        Workspace workspace = workspaceRegistry.get("switching");
+        incrementalIngestionService.ingest(workspace, first, false).completion().get(30, TimeUnit.SECONDS);
+
+        Mockito.clearInvocations(vectorStore);
+        incrementalIngestionService.ingest(workspace, second, false).completion().get(30, TimeUnit.SECONDS);
+
+        // The new root has no manifest yet; the old root's units are deleted, each as the one chunk it was embedded as
+        ArgumentCaptor<List<String>> deleted = ArgumentCaptor.captor();
+        Mockito.verify(vectorStore, Mockito.atLeastOnce()).delete(deleted.capture());
+        assertEquals(Stream.of("com.example.old.Old", "com.example.old.Old#run")
+                        .map(id -> VectorService.documentId("switching", id, 0)).sorted().toList(),
+                deleted.getAllValues().stream().flatMap(List::stream).sorted().toList());
+        assertEquals(List.of("com.example.fresh.New"), workspace.graph().nodeIds());
+    }
+
+    @Test
+    void testUploadLeavesNoManifestBehind() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("files", "up/Uploaded.java", "text/x-java",
+                "package com.example.up; public class Uploaded { }".getBytes(StandardCharsets.UTF_8));
+
+        ResponseEntity<String> response = ingestionController
+                .ingestUploadedProject(new MockMultipartFile[]{file}, "uploads").get(30, TimeUnit.SECONDS);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(List.of("com.example.up.Uploaded"), workspaceRegistry.get("uploads").graph().nodeIds());
+        try (Stream<Path> manifests = Files.list(dataDir.resolve("manifests"))) {
+            assertEquals(List.of(), manifests.filter(f -> f.getFileName().toString().startsWith("uploads-")).toList());
+        }
+    }
+
+    @Test
+    void testFailedIngestDropsAnswersCachedWhileItRan() throws Exception {
+        Workspace workspace = workspaceRegistry.get("failing");
+        AnswerCache.Answer answer = new AnswerCache.Answer(List.of("com.example.gone.Gone"), "It is gone.");
+        answerCache.get(workspace.id(), "What is Gone?", () -> answer);
+        assertTrue(answerCache.lookup(workspace.id(), "What is Gone?").isPresent());
+
+        IngestionJob job = incrementalIngestionService.ingest(workspace, Path.of("archive", "broken"), sink -> {
+            // Cleared when the ingest started; cached again from the half-written workspace
+            assertTrue(answerCache.lookup(workspace.id(), "What is Gone?").isEmpty());
+            answerCache.get(workspace.id(), "What is Gone?", () -> answer);
+            throw new IOException("truncated archive");
+        });
+
+        assertEquals(IngestionJob.State.FAILED, job.state());
+        assertTrue(answerCache.lookup(workspace.id(), "What is Gone?").isEmpty());
+    }
+
+    @Test
+    void testArchiveFeedRunsOutsideWorkspaceLock() throws Exception {
+        Workspace workspace = workspaceRegistry.get("streaming");
+        CountDownLatch fed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<IngestionJob> archive = CompletableFuture.supplyAsync(() ->
+                incrementalIngestionService.ingest(workspace, Path.of("archive", "slow"), sink -> {
+                    sink.accept(Path.of("archive/slow/Slow.java"), "package com.example.slow; public class Slow { }");
+                    fed.countDown();
+                    release.await();
+                }));
+        assertTrue(fed.await(10, TimeUnit.SECONDS));
+
+        // While the upload is still being read, others are turned away at once instead of queueing on the lock
+        Path tempDir = Files.createTempDirectory("code-intel-streaming");
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertThrows(IngestionInProgressException.class,
+                () -> incrementalIngestionService.ingest(workspace, tempDir, false)));
+
+        release.countDown();
+        IngestionReport report = archive.get(10, TimeUnit.SECONDS).completion().get(30, TimeUnit.SECONDS);
+        assertEquals(1, report.filesParsed());
+    }
+
+    @Test
+    void testWorkspaceIsolation() throws Exception {
+        Path tempDir = Files.createTempDirectory("code-intel-workspace");
+        Files.writeString(tempDir.resolve("Isolated.java"), "package com.example.ws; public class Isolated { void run() {} }");
+
+        Workspace workspace = workspaceRegistry.get("isolated");
+        IngestionReport report = incrementalIngestionService.ingest(workspace, tempDir, false).completion().get(30, TimeUnit.SECONDS);
+
+        assertEquals("isolated", report.workspace());
+        assertEquals(List.of("com.example.ws.Isolated#run"), workspace.graph().getOutgoing("com.example.ws.Isolated"));
+        assertTrue(workspace.contentStore().content("com.example.ws.Isolated#run").isPresent());
+        assertFalse(dependencyGraph.nodeIds().contains("com.example.ws.Isolated"));
+        assertTrue(workspaceRegistry.find("missing").isEmpty());
     }
 }
@@ -0,0 +1,103 @@
+package com.codeintelligence.api;
+
+import com.codeintelligence.core.DependencyGraph;
+import com.codeintelligence.core.Workspace;
+import com.codeintelligence.core.WorkspaceRegistry;
+import com.codeintelligence.service.AnswerCache;
+import com.codeintelligence.service.ContextPacker;
+import com.codeintelligence.service.RetrievalService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Answers;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ChatControllerTest {
+
+    private static final String QUERY = "What does A do?";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void followerGetsAnAnswerWhenTheLeaderDisconnectsAfterTheContext() throws Exception {
+        ChatClient.Builder builder = mock(ChatClient.Builder.class, Answers.RETURNS_DEEP_STUBS);
+        when(builder.build().prompt().system(anyString()).user(anyString()).stream().content())
+                .thenReturn(Flux.just("It ", "works."));
+        ChatController controller = newController(builder);
+
+        // The leader takes the context event and disconnects before the model's tokens are ever subscribed
+        CountDownLatch context = new CountDownLatch(1);
+        BaseSubscriber<ServerSentEvent<Object>> leader = new BaseSubscriber<>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(1);
+            }
+
+            @Override
+            protected void hookOnNext(ServerSentEvent<Object> event) {
+                context.countDown();
+            }
+        };
+        controller.stream(QUERY, Workspace.DEFAULT).subscribe(leader);
+        assertTrue(context.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<List<ServerSentEvent<Object>>> follower =
+                controller.stream(QUERY, Workspace.DEFAULT).collectList().toFuture();
+        awaitCoalesced();
+        leader.dispose();
+
+        List<ServerSentEvent<Object>> events = follower.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("context", "prompt", "token", "token", "done"),
+                events.stream().map(ServerSentEvent::event).toList());
+        assertEquals("works.", events.get(3).data());
+    }
+
+    private ChatController newController(ChatClient.Builder builder) {
+        Workspace workspace = new Workspace(Workspace.DEFAULT, new DependencyGraph(), null, null);
+        WorkspaceRegistry workspaces = mock(WorkspaceRegistry.class);
+        when(workspaces.find(Workspace.DEFAULT)).thenReturn(Optional.of(workspace));
+        RetrievalService retrieval = mock(RetrievalService.class);
+        when(retrieval.retrieve(any(), anyString())).thenReturn(
+                List.of(new RetrievalService.Match("com.example.A#run", "void run() { }", 1.0)));
+
+        AnswerCache cache = new AnswerCache(null, meterRegistry);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxEntries", 10);
+        ReflectionTestUtils.setField(cache, "ttl", Duration.ofHours(1));
+        ReflectionTestUtils.invokeMethod(cache, "init");
+        ContextPacker packer = new ContextPacker(meterRegistry);
+        ReflectionTestUtils.invokeMethod(packer, "init");
+
+        ChatController controller = new ChatController(builder, retrieval, workspaces, cache, meterRegistry,
+                ObservationRegistry.NOOP, packer);
+        controller.init();
+        return controller;
+    }
+
+    private void awaitCoalesced() throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (meterRegistry.get("codeintel.chat.cache.coalesced").counter().count() < 1) {
+            assertTrue(System.nanoTime() < deadline, "follower never joined the flight");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.codeintelligence.aspect;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlowRequestLogTest {
+
+    @Test
+    void keepsOnlyTheSlowestCallsSlowestFirst() {
+        SlowRequestLog log = new SlowRequestLog(3);
+        for (int millis : new int[]{5, 40, 10, 30, 1, 20}) {
+            log.offer("ChatController.chat", "success", millis * 1_000_000L, new Object[]{"x".repeat(millis), null});
+        }
+
+        List<SlowRequestLog.SlowRequest> slowest = log.slowest();
+        assertEquals(List.of(40.0, 30.0, 20.0), slowest.stream().map(SlowRequestLog.SlowRequest::durationMillis).toList());
+        assertEquals(List.of(new SlowRequestLog.Argument("String", 40L), new SlowRequestLog.Argument("null", null)),
+                slowest.getFirst().arguments());
+
+        log.reset();
+        assertTrue(log.slowest().isEmpty());
+        log.offer("ChatController.chat", "error", 1_000_000L, new Object[0]);
+        assertEquals(1, log.slowest().size());
+    }
+}
@@ -0,0 +1,77 @@
+package com.codeintelligence.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompactGraphEngineTest {
+
+    private static final DependencyGraph.DependencyType[] TYPES = DependencyGraph.DependencyType.values();
+
+    @Test
+    void matchesJGraphTEngineAcrossCompactionsAndRemovals() {
+        JGraphTEngine expected = new JGraphTEngine();
+        CompactGraphEngine actual = new CompactGraphEngine();
+        Random random = new Random(42);
+        int nodes = 2_000;
+
+        // Enough edges to force several delta -> CSR merges
+        for (int i = 0; i < 20_000; i++) {
+            String from = "com.example.C" + random.nextInt(nodes);
+            String to = "com.example.C" + random.nextInt(nodes) + "#m";
+            DependencyGraph.DependencyType type = TYPES[random.nextInt(TYPES.length)];
+            expected.addEdge(from, to, type);
+            actual.addEdge(from, to, type);
+        }
+        assertSameGraph(expected, actual, nodes);
+
+        List<String> removed = new ArrayList<>();
+        List<String> pruned = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            removed.add("com.example.C" + random.nextInt(nodes) + "#m");
+            pruned.add("com.example.C" + random.nextInt(nodes));
+        }
+        expected.removeNodes(removed);
+        actual.removeNodes(removed);
+        expected.removeOutgoing(pruned);
+        actual.removeOutgoing(pruned);
+
+        // Re-adding a removed node must not resurrect its old edges
+        expected.addEdge("com.example.C1", removed.get(0), TYPES[0]);
+        actual.addEdge("com.example.C1", removed.get(0), TYPES[0]);
+        assertSameGraph(expected, actual, nodes);
+    }
+
+    @Test
+    void usesLessMemoryPerNodeThanJGraphT() {
+        CompactGraphEngine engine = new CompactGraphEngine();
+        for (int i = 0; i < 50_000; i++) {
+            engine.addEdge("com.example.pkg.Service" + (i / 10), "com.example.pkg.Service" + (i / 10) + "#method" + i,
+                    DependencyGraph.DependencyType.USES);
+        }
+        long compact = engine.estimatedBytes();
+        long jgrapht = JGraphTEngine.estimate(engine.nodeCount(), engine.edgeCount(), engine.idBytes());
+        assertTrue(compact * 2 < jgrapht, () -> "compact=" + compact + " jgrapht=" + jgrapht);
+    }
+
+    private static void assertSameGraph(GraphEngine expected, GraphEngine actual, int nodes) {
+        assertEquals(expected.nodeCount(), actual.nodeCount());
+        assertEquals(expected.edgeCount(), actual.edgeCount());
+        for (int i = 0; i < nodes; i++) {
+            for (String id : List.of("com.example.C" + i, "com.example.C" + i + "#m")) {
+                assertEquals(expected.containsNode(id), actual.containsNode(id), id);
+                assertEquals(sorted(expected.outgoing(id)), sorted(actual.outgoing(id)), id);
+                assertEquals(sorted(expected.incoming(id)), sorted(actual.incoming(id)), id);
+            }
+        }
+    }
+
+    private static List<String> sorted(List<String> ids) {
+        return ids.stream().sorted().toList();
+    }
+}
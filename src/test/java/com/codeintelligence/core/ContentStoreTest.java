@@ -0,0 +1,77 @@
+package com.codeintelligence.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContentStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void survivesReopenWithLatestVersionOfEachUnit() throws IOException {
+        Path file = dir.resolve("content.seg");
+        ContentStore store = open(file);
+        store.put(new CodeUnit.ClassUnit("com.example.A", "com.example", "A", "class A { }", List.of(), Map.of()));
+        store.put(new CodeUnit.MethodUnit("com.example.A#run", "com.example.A", "run()", "run",
+                "void run() { /* v1 */ }", "void", List.of(), Map.of()));
+        store.put(new CodeUnit.MethodUnit("com.example.A#run", "com.example.A", "run()", "run",
+                "void run() { /* v2 – ünïcode */ }", "void", List.of(), Map.of()));
+        store.put(new CodeUnit.InterfaceUnit("com.example.B", "com.example", "B", "interface B { }", Map.of()));
+        store.remove(List.of("com.example.B"));
+        assertEquals(Optional.of("void run() { /* v2 – ünïcode */ }"), store.content("com.example.A#run"));
+        store.close();
+
+        // A torn append at the tail is dropped on open
+        Files.write(file, new byte[]{0, 0, 1, 0, 7}, StandardOpenOption.APPEND);
+
+        ContentStore reopened = open(file);
+        assertEquals(2, reopened.size());
+        assertEquals(Optional.empty(), reopened.content("com.example.B"));
+        ContentStore.StoredUnit run = reopened.get("com.example.A#run").orElseThrow();
+        assertEquals(ContentStore.Kind.METHOD, run.kind());
+        assertEquals("com.example", run.packageName());
+        assertEquals("void run() { /* v2 – ünïcode */ }", run.content());
+        assertEquals(Optional.of("class A { }"), reopened.content("com.example.A"));
+        reopened.close();
+    }
+
+    @Test
+    void compactionKeepsOnlyLiveRecords() throws IOException {
+        Path file = dir.resolve("content.seg");
+        ContentStore store = open(file);
+        String big = "x".repeat(1 << 20);
+        for (int i = 0; i < 20; i++) {
+            store.put(new CodeUnit.ClassUnit("com.example.Big", "com.example", "Big", big + i, List.of(), Map.of()));
+        }
+        store.put(new CodeUnit.ClassUnit("com.example.Small", "com.example", "Small", "class Small { }", List.of(), Map.of()));
+
+        store.compactIfNeeded();
+
+        assertTrue(Files.size(file) < 2L << 20);
+        assertEquals(Optional.of(big + 19), store.content("com.example.Big"));
+        assertEquals(Optional.of("class Small { }"), store.content("com.example.Small"));
+        store.close();
+        assertEquals(Optional.of("class Small { }"), open(file).content("com.example.Small"));
+    }
+
+    private static ContentStore open(Path file) throws IOException {
+        ContentStore store = new ContentStore();
+        ReflectionTestUtils.setField(store, "enabled", true);
+        ReflectionTestUtils.setField(store, "file", file);
+        store.open();
+        return store;
+    }
+}
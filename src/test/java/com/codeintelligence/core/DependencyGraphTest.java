@@ -0,0 +1,169 @@
+package com.codeintelligence.core;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DependencyGraphTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsSeeLastPublishedViewWhileAnUpdateIsOpen() {
+        DependencyGraph graph = new DependencyGraph();
+        graph.addDependency("com.example.A", "com.example.A#run", DependencyGraph.DependencyType.USES);
+        assertEquals(List.of("com.example.A#run"), graph.getOutgoing("com.example.A"));
+        long before = graph.version();
+
+        graph.beginUpdate();
+        graph.addDependency("com.example.A", "com.example.B", DependencyGraph.DependencyType.CALLS);
+        graph.removeNodes(List.of("com.example.A#run"));
+        assertEquals(List.of("com.example.A#run"), graph.getOutgoing("com.example.A"));
+        assertEquals(before, graph.version());
+
+        graph.publish();
+        assertEquals(List.of("com.example.B"), graph.getOutgoing("com.example.A"));
+        assertEquals(List.of("com.example.A"), graph.getIncoming("com.example.B"));
+
+        graph.addNode("com.example.C");
+        graph.endUpdate();
+        assertEquals(3, graph.nodeCount());
+        assertTrue(graph.version() > before + 1);
+        assertEquals(List.of(), graph.getOutgoing("com.example.Missing"));
+    }
+
+    @Test
+    void appliesBatchOnceWithoutDuplicateEdges() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        DependencyGraph graph = new DependencyGraph("compact", meterRegistry);
+
+        graph.apply(new DependencyGraph.Batch()
+                .node("com.example.A")
+                .node("com.example.A")
+                .edge("com.example.A", "com.example.A#run", DependencyGraph.DependencyType.USES)
+                .edge("com.example.A#run", "com.example.B#call", DependencyGraph.DependencyType.CALLS)
+                .edge("com.example.A#run", "com.example.B#call", DependencyGraph.DependencyType.CALLS));
+
+        assertEquals(1, meterRegistry.get("codeintel.graph.lock.wait").timer().count());
+        assertEquals(3, graph.nodeCount());
+        assertEquals(List.of("com.example.B#call"), graph.getOutgoing("com.example.A#run"));
+        assertEquals(2, graph.stats().edges());
+    }
+
+    @Test
+    void siblingKeepsEngineAndPublishInterval() {
+        DependencyGraph graph = new DependencyGraph("compact");
+        ReflectionTestUtils.setField(graph, "publishInterval", Duration.ofMillis(250));
+        graph.addNode("com.example.A");
+
+        DependencyGraph sibling = graph.sibling();
+
+        assertEquals(Duration.ofMillis(250), ReflectionTestUtils.getField(sibling, "publishInterval"));
+        assertEquals("compact", sibling.stats().engine());
+        assertEquals(0, sibling.nodeCount());
+    }
+
+    @Test
+    void traversesTypedEdgesWithinBounds() {
+        for (String engine : List.of("jgrapht", "compact")) {
+            DependencyGraph graph = new DependencyGraph(engine);
+            graph.addDependency("A", "B", DependencyGraph.DependencyType.CALLS);
+            graph.addDependency("A", "X", DependencyGraph.DependencyType.USES);
+            for (int i = 1; i <= 10; i++) {
+                graph.addDependency("B", "C" + i, DependencyGraph.DependencyType.CALLS);
+            }
+            graph.addDependency("C1", "D", DependencyGraph.DependencyType.CALLS);
+            graph.addDependency("E", "A", DependencyGraph.DependencyType.CALLS);
+            Set<DependencyGraph.DependencyType> calls = Set.of(DependencyGraph.DependencyType.CALLS);
+
+            List<DependencyGraph.Reached> reached = graph.traverse(List.of("A"),
+                    new DependencyGraph.Traversal(calls, DependencyGraph.Direction.OUTGOING, 2, 3, 100));
+            assertEquals(List.of("A", "B", "C1", "C2", "C3"), reached.stream().map(DependencyGraph.Reached::id).toList(),
+                    engine);
+            assertEquals(new DependencyGraph.Reached("C2", "A", 2, "B", DependencyGraph.DependencyType.CALLS),
+                    reached.get(3));
+
+            assertEquals(List.of("A", "B", "C1"), graph.traverse(List.of("A"),
+                    new DependencyGraph.Traversal(calls, DependencyGraph.Direction.OUTGOING, 2, 3, 3))
+                    .stream().map(DependencyGraph.Reached::id).toList());
+            assertEquals(List.of("A", "C1", "B", "E", "D"), graph.traverse(List.of("A", "C1"),
+                    new DependencyGraph.Traversal(calls, DependencyGraph.Direction.BOTH, 1, 3, 100))
+                    .stream().map(DependencyGraph.Reached::id).toList());
+        }
+    }
+
+    @Test
+    void publishesChangedNodesOnlyAndNeverFromReads() throws Exception {
+        for (String engine : List.of("jgrapht", "compact")) {
+            SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+            DependencyGraph graph = new DependencyGraph(engine, meterRegistry);
+            SplittableRandom random = new SplittableRandom(7);
+            for (int round = 0; round < 2000; round++) {
+                String from = "N" + random.nextInt(200);
+                String to = "N" + random.nextInt(200);
+                switch (random.nextInt(10)) {
+                    case 0 -> graph.removeNodes(List.of(from));
+                    case 1 -> graph.removeOutgoing(List.of(from));
+                    default -> {
+                        if (!from.equals(to)) graph.addDependency(from, to, DependencyGraph.DependencyType.CALLS);
+                    }
+                }
+                // Every write outside an update is visible as soon as it returns
+                if (round % 100 == 0 && !from.equals(to) && graph.getOutgoing(from).contains(to)) {
+                    assertTrue(graph.getIncoming(to).contains(from));
+                }
+            }
+
+            long published = meterRegistry.get("codeintel.graph.publish").timer().count();
+            graph.addDependency("N1", "N2", DependencyGraph.DependencyType.USES);
+            assertEquals(published + 1, meterRegistry.get("codeintel.graph.publish").timer().count());
+            graph.getOutgoing("N1");
+            graph.nodeIds();
+            assertEquals(published + 1, meterRegistry.get("codeintel.graph.publish").timer().count());
+
+            // Matches a view built from scratch out of the same engine state
+            Path file = dir.resolve(engine + ".graph");
+            graph.saveSnapshot(file, engine);
+            DependencyGraph rebuilt = new DependencyGraph(engine);
+            rebuilt.restoreSnapshot(file);
+            assertEquals(rebuilt.nodeCount(), graph.nodeCount(), engine);
+            assertEquals(new HashSet<>(rebuilt.nodeIds()), new HashSet<>(graph.nodeIds()), engine);
+            assertEquals(graph.nodeCount(), graph.nodeIds().size(), engine);
+            // A snapshot keeps the edges but not necessarily their order
+            for (String id : rebuilt.nodeIds()) {
+                assertEquals(sorted(rebuilt.getOutgoing(id)), sorted(graph.getOutgoing(id)), id);
+                assertEquals(sorted(rebuilt.getIncoming(id)), sorted(graph.getIncoming(id)), id);
+            }
+            assertTrue(graph.stats().viewBytes() > 0);
+
+            graph.beginUpdate();
+            published = meterRegistry.get("codeintel.graph.publish").timer().count();
+            List<String> before = new ArrayList<>(graph.nodeIds());
+            graph.removeNodes(before);
+            for (int i = 0; i < 100; i++) graph.getOutgoing(before.get(i % before.size()));
+            assertEquals(before.size(), graph.nodeCount());
+            assertEquals(published, meterRegistry.get("codeintel.graph.publish").timer().count());
+            graph.endUpdate();
+            assertEquals(0, graph.nodeCount());
+            assertEquals(List.of(), graph.nodeIds());
+            assertEquals(List.of(), graph.getIncoming(before.getFirst()));
+        }
+    }
+
+    private static List<String> sorted(List<String> ids) {
+        return ids.stream().sorted().toList();
+    }
+}
@@ -0,0 +1,55 @@
+package com.codeintelligence.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GraphSnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripsAcrossEngines() throws IOException {
+        DependencyGraph source = new DependencyGraph("compact");
+        source.addNode("com.example.Lonely");
+        source.addDependency("com.example.A", "com.example.A#run", DependencyGraph.DependencyType.USES);
+        source.addDependency("com.example.A#run", "com.example.B#call", DependencyGraph.DependencyType.CALLS);
+        source.addDependency("com.example.A", "com.example.Base", DependencyGraph.DependencyType.EXTENDS);
+        source.addDependency("com.example.Ä", "com.example.A", DependencyGraph.DependencyType.INJECTS);
+
+        Path file = dir.resolve("graph.snapshot");
+        GraphSnapshot.Header written = source.saveSnapshot(file, "/work/project");
+
+        DependencyGraph restored = new DependencyGraph("jgrapht");
+        GraphSnapshot.Header read = restored.restoreSnapshot(file);
+
+        assertEquals(written, read);
+        assertEquals("/work/project", read.label());
+        assertEquals(6, restored.nodeCount());
+        assertEquals(source.getOutgoing("com.example.A"), restored.getOutgoing("com.example.A"));
+        assertEquals(source.getIncoming("com.example.A"), restored.getIncoming("com.example.A"));
+        assertEquals(source.getOutgoing("com.example.A#run"), restored.getOutgoing("com.example.A#run"));
+    }
+
+    @Test
+    void rejectsCorruptSnapshot() throws IOException {
+        DependencyGraph source = new DependencyGraph();
+        source.addDependency("com.example.A", "com.example.B", DependencyGraph.DependencyType.CALLS);
+        Path file = dir.resolve("graph.snapshot");
+        source.saveSnapshot(file, "");
+
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 0x1;
+        Files.write(file, bytes, StandardOpenOption.TRUNCATE_EXISTING);
+
+        assertThrows(IOException.class, () -> new DependencyGraph().restoreSnapshot(file));
+    }
+}
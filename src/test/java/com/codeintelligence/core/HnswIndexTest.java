@@ -0,0 +1,86 @@
+package com.codeintelligence.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HnswIndexTest {
+
+    private static final int DIMENSIONS = 32;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void concurrentInsertsKeepHighRecallAndSurviveRestore() throws Exception {
+        HnswIndex index = new HnswIndex(dir.resolve("vectors.f32"), DIMENSIONS, 16, 100);
+        Random random = new Random(42);
+        float[][] vectors = new float[5000][];
+        for (int i = 0; i < vectors.length; i++) vectors[i] = randomVector(random);
+
+        // Insert from several threads while searching
+        try (ExecutorService pool = Executors.newFixedThreadPool(4)) {
+            List<Future<?>> inserts = IntStream.range(0, 4).<Future<?>>mapToObj(t -> pool.submit(() -> {
+                for (int i = t; i < vectors.length; i += 4) index.add(vectors[i]);
+            })).toList();
+            while (inserts.stream().anyMatch(f -> !f.isDone())) {
+                index.search(vectors[0], 10, 32, n -> true);
+            }
+            for (Future<?> insert : inserts) insert.get();
+        }
+        assertEquals(vectors.length, index.size());
+        assertTrue(recall(index, random) > 0.9, "recall@10");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.write(new DataOutputStream(bytes));
+        index.close();
+        HnswIndex restored = HnswIndex.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), dir.resolve("vectors.f32"));
+        assertTrue(recall(restored, random) > 0.9, "recall@10 after restore");
+        restored.close();
+    }
+
+    @Test
+    void filtersAndDeletionsAreHonoured() throws IOException {
+        HnswIndex index = new HnswIndex(dir.resolve("vectors.f32"), DIMENSIONS, 8, 50);
+        Random random = new Random(7);
+        for (int i = 0; i < 500; i++) index.add(randomVector(random));
+        float[] query = index.vector(10);
+
+        assertEquals(10, index.search(query, 1, 32, n -> true).get(0).node());
+        index.markDeleted(10);
+        assertTrue(index.search(query, 5, 32, n -> true).stream().noneMatch(hit -> hit.node() == 10));
+        assertTrue(index.search(query, 5, 32, n -> n % 7 == 0).stream().allMatch(hit -> hit.node() % 7 == 0));
+        index.close();
+    }
+
+    private static double recall(HnswIndex index, Random random) {
+        int found = 0;
+        for (int q = 0; q < 50; q++) {
+            float[] query = randomVector(random);
+            List<Integer> exact = index.exactSearch(query, 10, n -> true).stream().map(HnswIndex.Hit::node).toList();
+            found += (int) index.search(query, 10, 64, n -> true).stream().filter(hit -> exact.contains(hit.node())).count();
+        }
+        return found / 500.0;
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] v = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) v[i] = (float) random.nextGaussian();
+        return v;
+    }
+}
@@ -0,0 +1,72 @@
+package com.codeintelligence.core;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LexicalIndexTest {
+
+    @Test
+    void splitsIdentifiersAndDropsStopwords() {
+        List<String> terms = new ArrayList<>();
+        IdentifierTokenizer.tokenize("parseHTTPRequest(MAX_RETRY_COUNT, v2)", terms::add);
+        assertEquals(List.of("parsehttprequest", "parse", "http", "request",
+                "max_retry_count", "max", "retry", "count", "v2", "v", "2"), terms);
+
+        assertEquals(List.of("scandirectory", "scan", "directory"), IdentifierTokenizer.queryTerms("Where is scanDirectory used?"));
+        assertTrue(IdentifierTokenizer.looksLikeIdentifier("scanDirectory"));
+        assertTrue(IdentifierTokenizer.looksLikeIdentifier("MAX_SIZE"));
+        assertFalse(IdentifierTokenizer.looksLikeIdentifier("Parser"));
+    }
+
+    @Test
+    void ranksNameMatchesAboveBodyMentions() {
+        LexicalIndex index = index();
+        index.add("com.example.FileDiscoveryService#scanDirectory(Path)", "scanDirectory",
+                "public void scanDirectory(Path root) { Files.walk(root); }");
+        index.add("com.example.IngestionPipeline#submit(Path)", "submit",
+                "public IngestionJob submit(Path root) { return submit(root, sink -> discovery.scanDirectory(root, sink)); }");
+        index.add("com.example.ChatController#chat(String)", "chat", "public String chat(String query) { return answer(query); }");
+
+        List<LexicalIndex.Hit> hits = index.search("where is scanDirectory used", 10);
+        assertEquals(2, hits.size());
+        assertEquals("scanDirectory", hits.get(0).name());
+        assertEquals("com.example.IngestionPipeline#submit(Path)", hits.get(1).id());
+        assertTrue(hits.get(0).score() > hits.get(1).score());
+
+        // Split parts match too
+        assertEquals("scanDirectory", index.search("scan the directory", 1).getFirst().name());
+    }
+
+    @Test
+    void replacedAndRemovedUnitsDisappearAcrossCompaction() {
+        LexicalIndex index = index();
+        index.add("com.example.A#run()", "run", "void run() { legacyCall(); }");
+        index.add("com.example.A#run()", "run", "void run() { modernCall(); }");
+        assertTrue(index.search("legacyCall", 5).isEmpty());
+        assertEquals(1, index.search("modernCall", 5).size());
+
+        // Enough removals to trigger a compaction, which renumbers the survivors
+        List<String> doomed = IntStream.range(0, 2000).mapToObj(i -> "com.example.Gen" + i).toList();
+        doomed.forEach(id -> index.add(id, "Gen", "class Gen { int generated; }"));
+        index.add("com.example.Z", "Z", "class Z { int generated; }");
+        index.remove(doomed);
+
+        assertEquals(2, index.size());
+        assertEquals(List.of("com.example.Z"), index.search("generated", 5).stream().map(LexicalIndex.Hit::id).toList());
+        assertEquals("com.example.A#run()", index.search("modernCall", 5).getFirst().id());
+    }
+
+    private static LexicalIndex index() {
+        LexicalIndex index = new LexicalIndex(new ContentStore());
+        ReflectionTestUtils.setField(index, "enabled", true);
+        return index;
+    }
+}
@@ -0,0 +1,98 @@
+package com.codeintelligence.ingestion;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ArchiveReaderTest {
+
+    private static final Path ROOT = Path.of("archive", "demo");
+
+    private final ArchiveReader reader = new ArchiveReader(FileDiscoveryServiceTest.defaultFilter());
+
+    @Test
+    void readsJavaEntriesFromZip() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            entry(zip, "demo/src/main/java/a/A.java", "package a; class A {}");
+            entry(zip, "demo/lib/big.jar", "not source");
+            entry(zip, "demo/.git/B.java", "package b; class B {}");
+            entry(zip, "demo/build/generated/G.java", "class G {}");
+            entry(zip, "demo/src/main/java/c/C.java", "package c; class C {}");
+        }
+
+        Map<Path, String> read = read(bytes.toByteArray());
+
+        assertEquals(Map.of(
+                ROOT.resolve("demo/src/main/java/a/A.java"), "package a; class A {}",
+                ROOT.resolve("demo/src/main/java/c/C.java"), "package c; class C {}"), read);
+    }
+
+    @Test
+    void readsJavaEntriesFromTarGzIncludingLongNames() throws Exception {
+        String longName = "demo/src/main/java/" + "deep/".repeat(30) + "D.java";
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            tarEntry(gzip, "demo/README.md", '0', "x".repeat(700));
+            tarEntry(gzip, "././@LongLink", 'L', longName + "\0");
+            tarEntry(gzip, longName.substring(0, 99), '0', "package deep; class D {}");
+            tarEntry(gzip, "demo/src/main/java/", '5', "");
+            tarEntry(gzip, "demo/src/main/java/E.java", '0', "class E {}");
+            gzip.write(new byte[1024]);
+        }
+
+        Map<Path, String> read = read(bytes.toByteArray());
+
+        assertEquals(Map.of(
+                ROOT.resolve(longName), "package deep; class D {}",
+                ROOT.resolve("demo/src/main/java/E.java"), "class E {}"), read);
+    }
+
+    @Test
+    void rejectsOtherFormats() {
+        assertThrows(IllegalArgumentException.class,
+                () -> reader.open(ROOT, new ByteArrayInputStream("plain text".getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private Map<Path, String> read(byte[] archive) throws Exception {
+        Map<Path, String> read = new LinkedHashMap<>();
+        reader.open(ROOT, new ByteArrayInputStream(archive)).feed(read::put);
+        return read;
+    }
+
+    private static void entry(ZipOutputStream zip, String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+
+    // Minimal ustar header: name, octal size, type and magic; the reader does not check the checksum
+    private static void tarEntry(GZIPOutputStream out, String name, char type, String content) throws IOException {
+        byte[] data = content.getBytes(StandardCharsets.UTF_8);
+        byte[] header = new byte[512];
+        put(header, 0, name);
+        put(header, 124, String.format("%011o", data.length));
+        header[156] = (byte) type;
+        put(header, 257, "ustar");
+        out.write(header);
+        out.write(data);
+        out.write(new byte[(512 - data.length % 512) % 512]);
+    }
+
+    private static void put(byte[] header, int offset, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(bytes, 0, header, offset, bytes.length);
+    }
+}
@@ -0,0 +1,49 @@
+package com.codeintelligence.ingestion;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoundedStageTest {
+
+    @Test
+    void abortReleasesCallersWaitingOnFullQueue() throws Exception {
+        CountDownLatch handling = new CountDownLatch(1);
+        BoundedStage<Integer> stage = new BoundedStage<>("test", 1, 1, Executors.newSingleThreadExecutor(), item -> {
+            handling.countDown();
+            new CountDownLatch(1).await();
+        });
+        stage.start();
+        stage.put(1);
+        assertTrue(handling.await(5, TimeUnit.SECONDS));
+        stage.put(2);
+
+        // The only worker is stuck and the queue is full, so this waits until the stage is aborted
+        CompletableFuture<Void> feeder = CompletableFuture.runAsync(() -> {
+            try {
+                stage.put(3);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Thread.sleep(200);
+        assertFalse(feeder.isDone());
+
+        stage.abort();
+        ExecutionException failed = assertThrows(ExecutionException.class, () -> feeder.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(CancellationException.class, failed.getCause());
+        assertTimeoutPreemptively(Duration.ofSeconds(5), stage::close);
+    }
+}
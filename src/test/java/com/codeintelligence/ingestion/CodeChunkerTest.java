@@ -0,0 +1,67 @@
+package com.codeintelligence.ingestion;
+
+import com.codeintelligence.config.ParserConfig;
+import com.codeintelligence.core.CodeUnit;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CodeChunkerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CodeChunker chunker = new CodeChunker(new ParserConfig().javaParser(), meterRegistry);
+
+    @BeforeEach
+    void setUp() {
+        chunker.init();
+    }
+
+    @Test
+    void keepsShortUnitWhole() {
+        CodeUnit unit = method("int run() {\n    return 1;\n}");
+
+        List<CodeChunker.Chunk> chunks = chunker.chunk(unit);
+
+        assertEquals(1, chunks.size());
+        assertEquals(unit.content(), chunks.getFirst().text());
+        assertEquals(0.0, meterRegistry.get("codeintel.chunking.split").counter().count());
+    }
+
+    @Test
+    void splitsLongMethodBetweenStatementsInsideItsLoop() {
+        StringBuilder body = new StringBuilder("void run(int[] values) {\n    int total = 0;\n    for (int v : values) {\n");
+        for (int i = 0; i < 150; i++) {
+            body.append("        total += compute(v, \"value").append(i).append("\", total);\n");
+        }
+        body.append("    }\n    System.out.println(total);\n}");
+        CodeUnit unit = method(body.toString());
+
+        List<CodeChunker.Chunk> chunks = chunker.chunk(unit);
+
+        assertTrue(chunks.size() > 1, "expected several chunks, got " + chunks.size());
+        for (CodeChunker.Chunk chunk : chunks) {
+            assertTrue(chunk.tokens() <= 512, chunk.index() + ": " + chunk.tokens() + " tokens");
+            if (chunk.index() > 0) assertTrue(chunk.text().startsWith("// com.example.Big#run(int[])\n"));
+            assertTrue(chunk.text().endsWith(";\n") || chunk.text().endsWith("}"), chunk.text());
+        }
+        for (int i = 0; i < 150; i++) {
+            String statement = "\"value" + i + "\"";
+            assertTrue(chunks.stream().anyMatch(c -> c.text().contains(statement)), statement);
+        }
+        // The start of the next chunk repeats the end of the previous one
+        String[] first = chunks.get(0).text().split("\n");
+        assertTrue(chunks.get(1).text().contains(first[first.length - 1]));
+        assertEquals(1.0, meterRegistry.get("codeintel.chunking.split").counter().count());
+    }
+
+    private static CodeUnit method(String content) {
+        return new CodeUnit.MethodUnit("com.example.Big#run", "com.example.Big", "run(int[])", "run",
+                content, "void", List.of("int[] values"), Map.of());
+    }
+}
@@ -0,0 +1,85 @@
+package com.codeintelligence.ingestion;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileDiscoveryServiceTest {
+
+    @TempDir
+    Path root;
+
+    static SourceFilter defaultFilter() {
+        SourceFilter filter = new SourceFilter();
+        filter.init();
+        return filter;
+    }
+
+    @Test
+    void skipsBuildOutputGeneratedSourcesAndGitignoredPaths() throws IOException {
+        write(".gitignore", "/legacy/\n*Old.java\n");
+        write("app/.gitignore", "tmp/\n!KeepOld.java\n");
+        write("app/src/main/java/a/A.java", "");
+        write("app/src/main/java/a/AOld.java", "");
+        write("app/src/main/java/a/KeepOld.java", "");
+        write("app/src/main/java/a/notes.txt", "");
+        write("app/src/test/java/a/ATest.java", "");
+        write("app/tmp/T.java", "");
+        write("app/build/generated/B.java", "");
+        write("app/target/generated-sources/annotations/C.java", "");
+        write("lib/generated/D.java", "");
+        write("lib/legacy/L.java", "");
+        write("legacy/Gone.java", "");
+        write("node_modules/pkg/N.java", "");
+        write(".idea/I.java", "");
+        write("big/Big.java", "x".repeat(2 * 1024 * 1024));
+
+        FileDiscoveryService discovery = new FileDiscoveryService(defaultFilter());
+        discovery.init();
+        Set<String> found = ConcurrentHashMap.newKeySet();
+        int count = discovery.scanDirectory(root, file -> found.add(root.relativize(file).toString().replace('\\', '/')));
+        discovery.shutdown();
+
+        assertEquals(Set.of(
+                "app/src/main/java/a/A.java",
+                "app/src/main/java/a/KeepOld.java",
+                "app/src/test/java/a/ATest.java",
+                "lib/legacy/L.java"), found);
+        assertEquals(4, count);
+    }
+
+    @Test
+    void ignoreRulesFollowGitignoreSemantics() {
+        IgnoreRules rules = IgnoreRules.NONE.with("", List.of("# comment", "*.log", "/dist", "docs/**/*.md", "out/", "!keep.log"))
+                .with("sub", List.of("local.txt", "!/dist"));
+
+        assertTrue(rules.ignores("server.log", false));
+        assertTrue(rules.ignores("a/b/server.log", false));
+        assertFalse(rules.ignores("keep.log", false));
+        assertTrue(rules.ignores("dist", true));
+        assertFalse(rules.ignores("a/dist", true));
+        assertTrue(rules.ignores("docs/x/y/readme.md", false));
+        assertTrue(rules.ignores("docs/readme.md", false));
+        assertTrue(rules.ignores("a/out", true));
+        assertFalse(rules.ignores("a/out", false));
+        assertTrue(rules.ignores("sub/x/local.txt", false));
+        assertFalse(rules.ignores("local.txt", false));
+        assertFalse(rules.ignores("sub/dist", true));
+    }
+
+    private void write(String path, String content) throws IOException {
+        Path file = root.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+}
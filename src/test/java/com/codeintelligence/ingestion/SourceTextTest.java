@@ -0,0 +1,57 @@
+package com.codeintelligence.ingestion;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SourceTextTest {
+
+    private static final String SOURCE = String.join("\r\n",
+        "package com.example;",
+        "",
+        "public class Greeter {",
+        "\tprivate final String name;   // kept verbatim",
+        "",
+        "    /** Says hello. */",
+        "    public String greet(String who) {",
+        "        return \"Hello, \"   + who;",
+        "    }",
+        "}",
+        "");
+
+    @Test
+    void slicesOriginalSourceIncludingCommentsAndFormatting() {
+        SourceText source = new SourceText(SOURCE);
+        CompilationUnit cu = StaticJavaParser.parse(source.text());
+        MethodDeclaration greet = cu.findFirst(MethodDeclaration.class).orElseThrow();
+
+        assertEquals(String.join("\r\n",
+            "/** Says hello. */",
+            "    public String greet(String who) {",
+            "        return \"Hello, \"   + who;",
+            "    }"), source.slice(greet));
+    }
+
+    @Test
+    void cutsMethodBodiesOutOfTheClass() {
+        SourceText source = new SourceText(SOURCE);
+        CompilationUnit cu = StaticJavaParser.parse(source.text());
+        ClassOrInterfaceDeclaration greeter = cu.findFirst(ClassOrInterfaceDeclaration.class).orElseThrow();
+        List<BlockStmt> bodies = greeter.getMethods().stream().map(m -> m.getBody().orElseThrow()).toList();
+
+        assertEquals(String.join("\r\n",
+            "public class Greeter {",
+            "\tprivate final String name;   // kept verbatim",
+            "",
+            "    /** Says hello. */",
+            "    public String greet(String who) { ... }",
+            "}"), source.sliceWithout(greeter, bodies, n -> "{ ... }"));
+    }
+}
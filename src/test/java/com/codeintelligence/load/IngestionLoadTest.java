@@ -0,0 +1,171 @@
+package com.codeintelligence.load;
+
+import com.codeintelligence.ingestion.IngestionJob;
+import com.codeintelligence.ingestion.IngestionReport;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Ingests a generated project through {@code POST /api/ingest} against in-process stub models and reports
+ * files/s, units/s, peak heap and time to completion. Excluded from {@code test}; run it with
+ * <pre>
+ * ./gradlew loadTest -Pload.packages=50 -Pload.classes=40 -Pload.methods=10 -Pload.calls=2.5
+ * </pre>
+ * Other knobs: {@code load.embed-call-ms}, {@code load.embed-text-ms}, {@code load.store-write-ms},
+ * {@code load.timeout-minutes} and {@code load.heap}. The report is also written to {@code build/reports/load/}.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.autoconfigure.exclude=org.springframework.ai.autoconfigure.vectorstore.chroma.ChromaVectorStoreAutoConfiguration",
+        "logging.level.com.codeintelligence=INFO",
+        "logging.level.org.springframework.ai=INFO"
+})
+@ActiveProfiles("test")
+class IngestionLoadTest {
+
+    @TempDir
+    static Path dataDir;
+
+    @DynamicPropertySource
+    static void localStorage(DynamicPropertyRegistry registry) {
+        registry.add("codeintel.manifest.dir", () -> dataDir.resolve("manifests").toString());
+        registry.add("codeintel.embedding.cache.dir", () -> dataDir.resolve("embeddings").toString());
+        registry.add("codeintel.graph.snapshot.path", () -> dataDir.resolve("graph.snapshot").toString());
+        registry.add("codeintel.content.path", () -> dataDir.resolve("content.seg").toString());
+        registry.add("codeintel.workspace.dir", () -> dataDir.resolve("workspaces").toString());
+    }
+
+    @TestConfiguration
+    static class StubModels {
+
+        @Bean
+        StubVectorStore stubVectorStore() {
+            StubEmbeddingModel embeddingModel = new StubEmbeddingModel(768,
+                    Duration.ofMillis(longProperty("load.embed-call-ms", 20)),
+                    Duration.ofMillis(longProperty("load.embed-text-ms", 1)));
+            return new StubVectorStore(embeddingModel, Duration.ofMillis(longProperty("load.store-write-ms", 5)));
+        }
+    }
+
+    @Autowired
+    private TestRestTemplate rest;
+
+    @Autowired
+    private StubVectorStore vectorStore;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void ingestSyntheticProject() throws Exception {
+        SyntheticProject.Shape shape = new SyntheticProject.Shape(
+                (int) longProperty("load.packages", 20),
+                (int) longProperty("load.classes", 25),
+                (int) longProperty("load.methods", 8),
+                Double.parseDouble(System.getProperty("load.calls", "2.0")),
+                42);
+        Path project = Files.createTempDirectory("load-project");
+        int files = SyntheticProject.generate(project, shape);
+        System.out.printf("Generated %d files (%d units) under %s%n", files, shape.units(), project);
+
+        System.gc();
+        HeapSampler heap = new HeapSampler();
+        heap.start();
+        long start = System.nanoTime();
+
+        ResponseEntity<IngestionReport> accepted = rest.postForEntity("/api/ingest?full=true", project.toString(), IngestionReport.class);
+        assertEquals(HttpStatus.ACCEPTED, accepted.getStatusCode());
+        String jobId = accepted.getBody().jobId();
+
+        long deadline = System.nanoTime() + Duration.ofMinutes(longProperty("load.timeout-minutes", 30)).toNanos();
+        IngestionReport report = accepted.getBody();
+        while (report.state() == IngestionJob.State.RUNNING && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+            report = rest.getForObject("/api/ingest/jobs/" + jobId, IngestionReport.class);
+        }
+        long completionMillis = (System.nanoTime() - start) / 1_000_000;
+        heap.interrupt();
+        heap.join();
+
+        assertEquals(IngestionJob.State.COMPLETED, report.state());
+        assertEquals(files, report.filesParsed());
+        assertEquals(shape.units(), report.unitsIndexed());
+
+        double seconds = Math.max(completionMillis, 1) / 1000.0;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("shape", shape);
+        result.put("files", files);
+        result.put("units", report.unitsIndexed());
+        result.put("unitsEmbedded", report.unitsEmbedded());
+        result.put("vectorsStored", vectorStore.size());
+        result.put("completionMillis", completionMillis);
+        result.put("filesPerSecond", files / seconds);
+        result.put("unitsPerSecond", report.unitsIndexed() / seconds);
+        result.put("peakHeapMb", heap.peak() >> 20);
+        result.put("resolution", report.resolution());
+
+        System.out.println("Ingestion load result: " + objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(result));
+        Path out = Path.of("build/reports/load");
+        Files.createDirectories(out);
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(out.resolve("ingestion-%dx%dx%d.json"
+                .formatted(shape.packages(), shape.classesPerPackage(), shape.methodsPerClass())).toFile(), result);
+    }
+
+    private static long longProperty(String name, long defaultValue) {
+        return Long.parseLong(System.getProperty(name, String.valueOf(defaultValue)));
+    }
+
+    /**
+     * Polls used heap every 20 ms until interrupted. Sampling can miss short spikes between polls, but unlike
+     * per-pool peak counters it does not add up peaks that happened at different times.
+     */
+    private static final class HeapSampler extends Thread {
+
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private final AtomicLong peak = new AtomicLong();
+
+        HeapSampler() {
+            super("heap-sampler");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (!isInterrupted()) {
+                peak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        long peak() {
+            return Math.max(peak.get(), memory.getHeapMemoryUsage().getUsed());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.codeintelligence.load;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embedding model that sleeps like a remote one would and returns deterministic pseudo-random unit vectors.
+ * Latency is {@code perCall} plus {@code perText} for each text in the request, so batching pays off as it would
+ * against Ollama.
+ */
+public class StubEmbeddingModel implements EmbeddingModel {
+
+    private final int dimensions;
+    private final Duration perCall;
+    private final Duration perText;
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong texts = new AtomicLong();
+
+    public StubEmbeddingModel(int dimensions, Duration perCall, Duration perText) {
+        this.dimensions = dimensions;
+        this.perCall = perCall;
+        this.perText = perText;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<String> instructions = request.getInstructions();
+        calls.incrementAndGet();
+        texts.addAndGet(instructions.size());
+        sleep(perCall.plus(perText.multipliedBy(instructions.size())));
+
+        List<Embedding> embeddings = new ArrayList<>(instructions.size());
+        for (String text : instructions) {
+            embeddings.add(new Embedding(vector(text), embeddings.size()));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return call(new EmbeddingRequest(List.of(document.getText()), null)).getResult().getOutput();
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    public long calls() {
+        return calls.get();
+    }
+
+    public long texts() {
+        return texts.get();
+    }
+
+    private float[] vector(String text) {
+        float[] v = new float[dimensions];
+        long state = text.hashCode();
+        double norm = 0;
+        for (int i = 0; i < dimensions; i++) {
+            // xorshift keeps this cheap next to the simulated latency
+            state ^= state << 13;
+            state ^= state >>> 7;
+            state ^= state << 17;
+            v[i] = (state & 0xFFFF) / 65536f - 0.5f;
+            norm += v[i] * v[i];
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < dimensions; i++) v[i] *= scale;
+        return v;
+    }
+
+    static void sleep(Duration duration) {
+        if (duration.isZero()) return;
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
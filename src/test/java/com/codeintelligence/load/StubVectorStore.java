@@ -0,0 +1,51 @@
+package com.codeintelligence.load;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Vector store that keeps documents in a map and sleeps {@code perWrite} on every add, standing in for a
+ * Chroma round trip. Documents are embedded in one batch per add, as the real stores do.
+ */
+public class StubVectorStore implements VectorStore {
+
+    private final EmbeddingModel embeddingModel;
+    private final Duration perWrite;
+    private final Map<String, Document> documents = new ConcurrentHashMap<>();
+
+    public StubVectorStore(EmbeddingModel embeddingModel, Duration perWrite) {
+        this.embeddingModel = embeddingModel;
+        this.perWrite = perWrite;
+    }
+
+    @Override
+    public void add(List<Document> batch) {
+        embeddingModel.call(new EmbeddingRequest(batch.stream().map(Document::getText).toList(), null));
+        StubEmbeddingModel.sleep(perWrite);
+        batch.forEach(document -> documents.put(document.getId(), document));
+    }
+
+    @Override
+    public Optional<Boolean> delete(List<String> ids) {
+        ids.forEach(documents::remove);
+        return Optional.of(true);
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        return documents.values().stream().limit(request.getTopK()).toList();
+    }
+
+    public int size() {
+        return documents.size();
+    }
+}
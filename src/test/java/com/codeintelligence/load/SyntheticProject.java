@@ -0,0 +1,114 @@
+package com.codeintelligence.load;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Writes a synthetic Spring-style Java project: {@code packages} packages of {@code classesPerPackage} services,
+ * each with {@code methodsPerClass} methods. Every service injects a few others through its constructor and each
+ * method makes on average {@code callsPerMethod} calls into them, so edge resolution has real work to do.
+ * The same shape and seed always produce the same sources.
+ */
+public final class SyntheticProject {
+
+    public record Shape(int packages, int classesPerPackage, int methodsPerClass, double callsPerMethod, long seed) {
+
+        public int classes() {
+            return packages * classesPerPackage;
+        }
+
+        public int units() {
+            return classes() * (1 + methodsPerClass);
+        }
+    }
+
+    // Constructor-injected collaborators per service
+    private static final int DEPENDENCIES = 3;
+
+    private SyntheticProject() {
+    }
+
+    /**
+     * Generates the project under {@code root} and returns the number of files written.
+     */
+    public static int generate(Path root, Shape shape) throws IOException {
+        SplittableRandom random = new SplittableRandom(shape.seed());
+        int written = 0;
+        for (int p = 0; p < shape.packages(); p++) {
+            Path dir = root.resolve("src/main/java/gen/p" + p);
+            Files.createDirectories(dir);
+            for (int c = 0; c < shape.classesPerPackage(); c++) {
+                Files.writeString(dir.resolve(className(p, c) + ".java"), source(shape, p, c, random));
+                written++;
+            }
+        }
+        return written;
+    }
+
+    private static String source(Shape shape, int p, int c, SplittableRandom random) {
+        List<int[]> dependencies = new ArrayList<>();
+        int count = shape.classes() > 1 ? Math.min(DEPENDENCIES, shape.classes() - 1) : 0;
+        while (dependencies.size() < count) {
+            int[] dependency = {random.nextInt(shape.packages()), random.nextInt(shape.classesPerPackage())};
+            boolean self = dependency[0] == p && dependency[1] == c;
+            boolean duplicate = dependencies.stream().anyMatch(d -> d[0] == dependency[0] && d[1] == dependency[1]);
+            if (!self && !duplicate) dependencies.add(dependency);
+        }
+
+        StringBuilder out = new StringBuilder();
+        out.append("package gen.p").append(p).append(";\n\n");
+        for (int[] d : dependencies) {
+            if (d[0] != p) out.append("import gen.p").append(d[0]).append('.').append(className(d[0], d[1])).append(";\n");
+        }
+        out.append("import org.springframework.stereotype.Service;\n\n");
+        out.append("/**\n * Generated service ").append(p).append('.').append(c).append(".\n */\n");
+        out.append("@Service\npublic class ").append(className(p, c)).append(" {\n\n");
+        for (int i = 0; i < dependencies.size(); i++) {
+            out.append("    private final ").append(className(dependencies.get(i))).append(" dependency").append(i).append(";\n");
+        }
+        out.append("\n    public ").append(className(p, c)).append('(');
+        for (int i = 0; i < dependencies.size(); i++) {
+            if (i > 0) out.append(", ");
+            out.append(className(dependencies.get(i))).append(" dependency").append(i);
+        }
+        out.append(") {\n");
+        for (int i = 0; i < dependencies.size(); i++) {
+            out.append("        this.dependency").append(i).append(" = dependency").append(i).append(";\n");
+        }
+        out.append("    }\n");
+
+        for (int m = 0; m < shape.methodsPerClass(); m++) {
+            out.append("\n    /**\n     * Step ").append(m).append(" of the generated workflow.\n     */\n");
+            out.append("    public int step").append(m).append("(int input) {\n");
+            out.append("        int total = input * ").append(m + 1).append(";\n");
+            int calls = dependencies.isEmpty() ? 0 : calls(shape.callsPerMethod(), random);
+            for (int k = 0; k < calls; k++) {
+                int target = random.nextInt(dependencies.size());
+                out.append("        total += dependency").append(target).append(".step")
+                        .append(random.nextInt(shape.methodsPerClass())).append("(total);\n");
+            }
+            out.append("        if (total > 1000) {\n            total = total % 1000;\n        }\n");
+            out.append("        return total;\n    }\n");
+        }
+        out.append("}\n");
+        return out.toString();
+    }
+
+    // Whole part always, plus one more with probability equal to the fraction
+    private static int calls(double perMethod, SplittableRandom random) {
+        int whole = (int) perMethod;
+        return whole + (random.nextDouble() < perMethod - whole ? 1 : 0);
+    }
+
+    private static String className(int[] dependency) {
+        return className(dependency[0], dependency[1]);
+    }
+
+    private static String className(int p, int c) {
+        return "Service" + p + "x" + c;
+    }
+}
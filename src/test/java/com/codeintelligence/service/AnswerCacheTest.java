@@ -0,0 +1,119 @@
+package com.codeintelligence.service;
+
+import com.codeintelligence.core.Workspace;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AnswerCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void coalescesConcurrentIdenticalQueriesAndInvalidatesOnIngestion() throws Exception {
+        AnswerCache cache = newCache();
+        AtomicInteger generations = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        AnswerCache.Answer answer = new AnswerCache.Answer(List.of("com.example.A"), "It does things.");
+
+        CountDownLatch started = new CountDownLatch(1);
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<AnswerCache.Answer> leader = pool.submit(() -> cache.get(Workspace.DEFAULT, "What does A do?", () -> {
+                generations.incrementAndGet();
+                started.countDown();
+                await(release);
+                return answer;
+            }));
+            started.await();
+            Future<AnswerCache.Answer> follower = pool.submit(() -> cache.get(Workspace.DEFAULT, "  What does A\tdo? ", () -> {
+                generations.incrementAndGet();
+                return answer;
+            }));
+            // Only release the leader once the follower has joined its flight, not found the answer cached
+            awaitCoalesced(1);
+            release.countDown();
+            assertEquals(answer, leader.get());
+            assertEquals(answer, follower.get());
+        }
+        assertEquals(1, generations.get());
+        assertTrue(cache.lookup(Workspace.DEFAULT, "What does A do?").isPresent());
+        assertTrue(cache.lookup("other", "What does A do?").isEmpty());
+
+        // Ingesting into another workspace leaves this one's answers alone
+        cache.invalidate("other");
+        assertTrue(cache.lookup(Workspace.DEFAULT, "What does A do?").isPresent());
+
+        cache.invalidate();
+        assertTrue(cache.lookup(Workspace.DEFAULT, "What does A do?").isEmpty());
+        assertEquals(2.0, meterRegistry.get("codeintel.chat.cache.hits").tag("tier", "exact").counter().count());
+    }
+
+    @Test
+    void keepsIdentifierCase() {
+        AnswerCache cache = newCache();
+        AnswerCache.Answer answer = new AnswerCache.Answer(List.of("com.example.UserId"), "The user's ID.");
+        cache.get(Workspace.DEFAULT, "What is UserId?", () -> answer);
+
+        assertTrue(cache.lookup(Workspace.DEFAULT, " What  is UserId? ").isPresent());
+        assertTrue(cache.lookup(Workspace.DEFAULT, "What is userId?").isEmpty());
+    }
+
+    @Test
+    void followerStopsWaitingForStuckLeader() throws Exception {
+        AnswerCache cache = newCache();
+        ReflectionTestUtils.setField(cache, "followerTimeout", Duration.ofMillis(100));
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        AnswerCache.Answer own = new AnswerCache.Answer(List.of("com.example.A"), "Answered on its own.");
+
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<AnswerCache.Answer> leader = pool.submit(() -> cache.get(Workspace.DEFAULT, "What does A do?", () -> {
+                started.countDown();
+                await(release);
+                return new AnswerCache.Answer(List.of("com.example.A"), "Late.");
+            }));
+            started.await();
+
+            assertEquals(own, cache.get(Workspace.DEFAULT, "What does A do?", () -> own));
+            assertEquals(1.0, meterRegistry.get("codeintel.chat.cache.coalesced").counter().count());
+            release.countDown();
+            leader.get();
+        }
+    }
+
+    private void awaitCoalesced(int followers) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (meterRegistry.get("codeintel.chat.cache.coalesced").counter().count() < followers) {
+            assertTrue(System.nanoTime() < deadline, "follower never joined the flight");
+            Thread.sleep(5);
+        }
+    }
+
+    private AnswerCache newCache() {
+        AnswerCache cache = new AnswerCache(null, meterRegistry);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxEntries", 10);
+        ReflectionTestUtils.setField(cache, "ttl", Duration.ofHours(1));
+        cache.init();
+        return cache;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.codeintelligence.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CachingEmbeddingModelTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void sendsOnlyMissesToTheModelAndKeepsPositions() throws IOException {
+        EmbeddingCache cache = new EmbeddingCache(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "directory", dir);
+        ReflectionTestUtils.setField(cache, "maxSizeMb", 512L);
+        cache.init();
+        RecordingModel model = new RecordingModel();
+        CachingEmbeddingModel caching = new CachingEmbeddingModel(model, cache, "nomic");
+        caching.call(new EmbeddingRequest(List.of("beta"), null));
+
+        EmbeddingResponse response = caching.call(new EmbeddingRequest(List.of("alpha", "beta ", "gamma!"), null));
+
+        assertEquals(List.of(List.of("beta"), List.of("alpha", "gamma!")), model.requests);
+        assertEquals(3, response.getResults().size());
+        assertArrayEquals(new float[]{5}, response.getResults().get(0).getOutput());
+        assertArrayEquals(new float[]{4}, response.getResults().get(1).getOutput());
+        assertArrayEquals(new float[]{6}, response.getResults().get(2).getOutput());
+        assertEquals(List.of(0, 1, 2), response.getResults().stream().map(Embedding::getIndex).toList());
+    }
+
+    /**
+     * Embeds a text as its length, and remembers what it was asked for.
+     */
+    private static final class RecordingModel implements EmbeddingModel {
+
+        private final List<List<String>> requests = new ArrayList<>();
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<String> texts = request.getInstructions();
+            requests.add(List.copyOf(texts));
+            return new EmbeddingResponse(IntStream.range(0, texts.size())
+                    .mapToObj(i -> new Embedding(new float[]{texts.get(i).length()}, i))
+                    .toList());
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return new float[]{document.getText().length()};
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.codeintelligence.service;
+
+import com.codeintelligence.core.CodeUnit;
+import com.codeintelligence.core.ContentStore;
+import com.codeintelligence.core.DependencyGraph;
+import com.codeintelligence.core.TokenEstimator;
+import com.codeintelligence.core.Workspace;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContextPackerTest {
+
+    @TempDir
+    Path dir;
+
+    private ContentStore contentStore;
+
+    @AfterEach
+    void tearDown() {
+        if (contentStore != null) ReflectionTestUtils.invokeMethod(contentStore, "close");
+    }
+
+    @Test
+    void packsByPriorityWithinBudget() {
+        contentStore = new ContentStore();
+        ReflectionTestUtils.setField(contentStore, "enabled", true);
+        ReflectionTestUtils.setField(contentStore, "file", dir.resolve("content.seg"));
+        ReflectionTestUtils.invokeMethod(contentStore, "open");
+        DependencyGraph graph = new DependencyGraph();
+        Workspace workspace = new Workspace(Workspace.DEFAULT, graph, contentStore, null);
+
+        String a = "void a() {\n    hub();\n    b();\n}";
+        String x = "void x() {\n" + "    int v = 1;\n".repeat(500) + "}";
+        put("com.example.H#hub", "void hub() { }");
+        put("com.example.B#b", "void b() { }");
+        // Overlaps the match that depends on it
+        put("com.example.D#d", "    b();\n");
+        for (String dependency : List.of("com.example.H#hub", "com.example.B#b", "com.example.D#d")) {
+            graph.addDependency("com.example.A#a", dependency, DependencyGraph.DependencyType.CALLS);
+        }
+        for (int i = 0; i < 50; i++) {
+            graph.addDependency("com.example.C" + i + "#c", "com.example.H#hub", DependencyGraph.DependencyType.CALLS);
+        }
+        for (int i = 0; i < 30; i++) {
+            graph.addDependency("com.example.C" + i + "#c", "com.example.A#a", DependencyGraph.DependencyType.CALLS);
+        }
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ContextPacker packer = new ContextPacker(meterRegistry);
+        ReflectionTestUtils.setField(packer, "maxTokens", 600);
+        packer.init();
+
+        ContextPacker.Packed packed = packer.pack(workspace, "what does a do", List.of(
+                new RetrievalService.Match("com.example.A#a", a, 0.03),
+                new RetrievalService.Match("com.example.X#x", x, 0.01)));
+
+        String prompt = packed.prompt();
+        assertEquals(List.of("com.example.A#a", "com.example.X#x"), packed.matchIds());
+        assertTrue(TokenEstimator.count(prompt) <= 600, prompt);
+        assertEquals(TokenEstimator.count(prompt), packed.stats().tokens());
+        assertTrue(prompt.contains("(+10 more)"), prompt);
+        assertTrue(prompt.indexOf("Dependency: com.example.H#hub") < prompt.indexOf("Dependency: com.example.B#b"));
+        assertFalse(prompt.contains("Dependency: com.example.D#d"));
+        assertTrue(prompt.contains("cut to fit the context budget"));
+        assertEquals(4, packed.stats().units());
+        assertEquals(1, packed.stats().omitted());
+    }
+
+    private void put(String id, String content) {
+        contentStore.put(new CodeUnit.MethodUnit(id, id.substring(0, id.indexOf('#')), "m()", "m", content, "void",
+                List.of(), Map.of()));
+    }
+}
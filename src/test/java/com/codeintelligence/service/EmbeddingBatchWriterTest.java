@@ -0,0 +1,144 @@
+package com.codeintelligence.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmbeddingBatchWriterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RecordingStore store = new RecordingStore();
+    private EmbeddingBatchWriter writer;
+
+    @AfterEach
+    void tearDown() {
+        store.release.countDown();
+        if (writer != null) writer.shutdown();
+    }
+
+    @Test
+    void writesFullBatchesAndFlushesTheRest() {
+        writer = newWriter(2, 60_000);
+        AtomicInteger stored = new AtomicInteger();
+        for (int i = 0; i < 5; i++) {
+            writer.add(document(i), ok -> stored.incrementAndGet());
+        }
+        assertEquals(List.of(2, 2), store.batchSizes());
+
+        writer.flush();
+        assertEquals(List.of(2, 2, 1), store.batchSizes());
+        assertEquals(5, stored.get());
+    }
+
+    @Test
+    void flushesLingeringBatch() throws Exception {
+        writer = newWriter(64, 50);
+        CountDownLatch written = new CountDownLatch(1);
+        writer.add(document(0), ok -> written.countDown());
+
+        assertTrue(written.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(1), store.batchSizes());
+    }
+
+    @Test
+    void flushWaitsForBatchesAlreadyBeingWritten() throws Exception {
+        writer = newWriter(1, 60_000);
+        store.blockWrites();
+        CompletableFuture<Void> producer = CompletableFuture.runAsync(() -> writer.add(document(0), ok -> { }));
+        assertTrue(store.entered.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Void> flush = CompletableFuture.runAsync(writer::flush);
+        Thread.sleep(200);
+        assertFalse(flush.isDone());
+
+        store.release.countDown();
+        flush.get(5, TimeUnit.SECONDS);
+        producer.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void reportsFailedBatchToItsDocuments() {
+        writer = newWriter(2, 60_000);
+        store.failWrites();
+        ConcurrentLinkedQueue<Boolean> outcomes = new ConcurrentLinkedQueue<>();
+        writer.add(document(0), outcomes::add);
+        writer.add(document(1), outcomes::add);
+
+        assertEquals(List.of(false, false), List.copyOf(outcomes));
+        assertEquals(2.0, meterRegistry.get("codeintel.embedding.failed").counter().count());
+    }
+
+    private EmbeddingBatchWriter newWriter(int batchSize, long lingerMillis) {
+        EmbeddingBatchWriter created = new EmbeddingBatchWriter(store, meterRegistry);
+        ReflectionTestUtils.setField(created, "batchSize", batchSize);
+        ReflectionTestUtils.setField(created, "lingerMillis", lingerMillis);
+        created.init();
+        return created;
+    }
+
+    private static Document document(int i) {
+        return new Document("doc-" + i, "content " + i, Map.of());
+    }
+
+    private static final class RecordingStore implements VectorStore {
+
+        private final ConcurrentLinkedQueue<Integer> batches = new ConcurrentLinkedQueue<>();
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile boolean block;
+        private volatile boolean fail;
+
+        void blockWrites() {
+            block = true;
+        }
+
+        void failWrites() {
+            fail = true;
+        }
+
+        List<Integer> batchSizes() {
+            return List.copyOf(batches);
+        }
+
+        @Override
+        public void add(List<Document> documents) {
+            if (fail) throw new IllegalStateException("store down");
+            if (block) {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            batches.add(documents.size());
+        }
+
+        @Override
+        public Optional<Boolean> delete(List<String> ids) {
+            return Optional.of(true);
+        }
+
+        @Override
+        public List<Document> similaritySearch(SearchRequest request) {
+            return List.of();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.codeintelligence.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class EmbeddingCacheTest {
+
+    // 400 KB per vector, so three of them overflow a 1 MB cache
+    private static final int LARGE = 100_000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void keysIgnoreWhitespaceButNotModel() throws IOException {
+        EmbeddingCache cache = open(512);
+
+        assertEquals(cache.key("nomic", "int  a =\n\t1;"), cache.key("nomic", " int a = 1; "));
+        assertNotEquals(cache.key("nomic", "int a = 1;"), cache.key("other", "int a = 1;"));
+        assertNotEquals(cache.key("nomic", "int a = 1;"), cache.key("nomic", "int b = 1;"));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedBeyondMaxSize() throws IOException {
+        EmbeddingCache cache = open(1);
+        cache.put("aa", vector(LARGE, 1));
+        cache.put("bb", vector(LARGE, 2));
+        assertNotNull(cache.get("aa"));
+        cache.put("cc", vector(LARGE, 3));
+
+        assertNull(cache.get("bb"));
+        assertArrayEquals(vector(LARGE, 1), cache.get("aa"));
+        assertArrayEquals(vector(LARGE, 3), cache.get("cc"));
+        assertEquals(2 * LARGE * Float.BYTES, cache.sizeBytes());
+        assertEquals(List.of("aa.vec", "cc.vec"), files());
+    }
+
+    @Test
+    void rebuildsLruOrderFromFileTimesOnRestart() throws IOException {
+        EmbeddingCache first = open(1);
+        first.put("aa", vector(LARGE, 1));
+        first.put("bb", vector(LARGE, 2));
+        // bb was used long ago, aa recently
+        Files.setLastModifiedTime(dir.resolve("bb").resolve("bb.vec"), FileTime.fromMillis(1_000));
+        Files.setLastModifiedTime(dir.resolve("aa").resolve("aa.vec"), FileTime.fromMillis(2_000));
+
+        EmbeddingCache reopened = open(1);
+        assertEquals(2 * LARGE * Float.BYTES, reopened.sizeBytes());
+        reopened.put("cc", vector(LARGE, 3));
+
+        assertNull(reopened.get("bb"));
+        assertNotNull(reopened.get("aa"));
+        assertEquals(List.of("aa.vec", "cc.vec"), files());
+    }
+
+    private EmbeddingCache open(long maxSizeMb) throws IOException {
+        EmbeddingCache cache = new EmbeddingCache(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "directory", dir);
+        ReflectionTestUtils.setField(cache, "maxSizeMb", maxSizeMb);
+        cache.init();
+        return cache;
+    }
+
+    private List<String> files() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile).map(f -> f.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    private static float[] vector(int length, float value) {
+        float[] vector = new float[length];
+        Arrays.fill(vector, value);
+        return vector;
+    }
+}
@@ -0,0 +1,86 @@
+package com.codeintelligence.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.vectorstore.SearchRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HnswVectorStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void searchesWithMetadataFiltersAndSurvivesRestart() throws Exception {
+        HnswVectorStore store = new HnswVectorStore(new LetterEmbeddingModel(), new ObjectMapper(), dir, 8, 50, 32);
+        store.open();
+        store.add(List.of(
+            new Document("a", "alpha service", Map.of("id", "com.example.Alpha", "type", "ClassUnit")),
+            new Document("b", "alpha method", Map.of("id", "com.example.Alpha#run", "type", "MethodUnit")),
+            new Document("c", "zulu service", Map.of("id", "com.example.Zulu", "type", "ClassUnit"))));
+        // Same ID replaces the earlier document
+        store.add(List.of(new Document("c", "yankee service", Map.of("id", "com.example.Yankee", "type", "ClassUnit"))));
+
+        assertEquals(List.of("a", "c"), ids(store.similaritySearch(
+            SearchRequest.builder().query("alpha").topK(5).filterExpression("type == 'ClassUnit'").build())));
+        assertEquals(List.of("b"), ids(store.similaritySearch(
+            SearchRequest.builder().query("alpha").topK(5).filterExpression("id in ['com.example.Alpha#run', 'com.example.Gone']").build())));
+
+        store.delete(List.of("a"));
+        store.close();
+
+        HnswVectorStore reopened = new HnswVectorStore(new LetterEmbeddingModel(), new ObjectMapper(), dir, 8, 50, 32);
+        reopened.open();
+        assertEquals(2, reopened.size());
+        List<Document> hits = reopened.similaritySearch(SearchRequest.builder().query("yankee").topK(1).build());
+        assertEquals("yankee service", hits.get(0).getText());
+        assertEquals("com.example.Yankee", hits.get(0).getMetadata().get("id"));
+        reopened.close();
+    }
+
+    private static List<String> ids(List<Document> documents) {
+        return documents.stream().map(Document::getId).sorted().toList();
+    }
+
+    /**
+     * Letter histogram of the text; similar words land close together.
+     */
+    private static final class LetterEmbeddingModel implements EmbeddingModel {
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> embeddings = new ArrayList<>();
+            for (String text : request.getInstructions()) {
+                embeddings.add(new Embedding(embed(text), embeddings.size()));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return embed(document.getText());
+        }
+
+        @Override
+        public float[] embed(String text) {
+            float[] v = new float[26];
+            for (byte b : text.toLowerCase().getBytes(StandardCharsets.US_ASCII)) {
+                if (b >= 'a' && b <= 'z') v[b - 'a']++;
+            }
+            return v;
+        }
+    }
+}